@@ -0,0 +1,82 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import dna.DNAUnit;
+import point.Point2D;
+
+/**
+ * Synthetic data of the benchmarks. Every generator takes a seed, so each run
+ * measures the kernels on exactly the same data.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class BenchmarkData {
+	private static final String BASES = "ACGT";
+
+	/**
+	 * @return n points around k gaussian blobs of unit spread in a 100 x 100 square
+	 */
+	public static List<Point2D> points(int n, int k, long seed) {
+		Random random = new Random(seed);
+		Point2D[] centers = centroids(k, seed + 1);
+		List<Point2D> points = new ArrayList<Point2D>(n);
+		for (int i = 0; i < n; ++i) {
+			Point2D center = centers[random.nextInt(k)];
+			points.add(new Point2D(center.getX() + random.nextGaussian(),
+					center.getY() + random.nextGaussian()));
+		}
+		return points;
+	}
+
+	/**
+	 * @return k points spread uniformly over the 100 x 100 square
+	 */
+	public static Point2D[] centroids(int k, long seed) {
+		Random random = new Random(seed);
+		Point2D[] centroids = new Point2D[k];
+		for (int i = 0; i < k; ++i) {
+			centroids[i] = new Point2D(random.nextDouble() * 100, random.nextDouble() * 100);
+		}
+		return centroids;
+	}
+
+	/**
+	 * @return n DNAs of the given length, each a copy of one of k random centers
+	 * 		with 10% of its bases replaced by random ones
+	 */
+	public static DNAUnit[] dnas(int n, int k, int length, long seed) {
+		Random random = new Random(seed);
+		DNAUnit[] centers = randomDNAs(k, length, seed + 1);
+		DNAUnit[] dnas = new DNAUnit[n];
+		for (int i = 0; i < n; ++i) {
+			char[] value = centers[random.nextInt(k)].getValue().toCharArray();
+			for (int j = 0; j < length; ++j) {
+				if (random.nextInt(10) == 0) {
+					value[j] = BASES.charAt(random.nextInt(BASES.length()));
+				}
+			}
+			dnas[i] = new DNAUnit(new String(value));
+		}
+		return dnas;
+	}
+
+	/**
+	 * @return k DNAs of random bases
+	 */
+	public static DNAUnit[] randomDNAs(int k, int length, long seed) {
+		Random random = new Random(seed);
+		DNAUnit[] dnas = new DNAUnit[k];
+		for (int i = 0; i < k; ++i) {
+			char[] value = new char[length];
+			for (int j = 0; j < length; ++j) {
+				value[j] = BASES.charAt(random.nextInt(BASES.length()));
+			}
+			dnas[i] = new DNAUnit(new String(value));
+		}
+		return dnas;
+	}
+}
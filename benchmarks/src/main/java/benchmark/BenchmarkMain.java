@@ -0,0 +1,35 @@
+package benchmark;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks with the usual JMH command line (e.g. -p k=16 PointKernel),
+ * writing the results as JSON to jmh-result-yyyyMMdd-HHmmss.json unless -rf or
+ * -rff say otherwise, so runs can be kept and compared over time.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class BenchmarkMain {
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(commandLine);
+		if (!commandLine.getResultFormat().hasValue()) {
+			builder.resultFormat(ResultFormatType.JSON);
+		}
+		if (!commandLine.getResult().hasValue()) {
+			String time = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+			builder.result("jmh-result-" + time + ".json");
+		}
+		new Runner(builder.build()).run();
+	}
+}
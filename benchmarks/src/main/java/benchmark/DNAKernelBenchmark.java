@@ -0,0 +1,109 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dna.DNACluster;
+import dna.DNAUnit;
+
+/**
+ * Kernels of one K Means iteration on DNAs, each over all n DNAs:
+ * 		distance: DNAUnit.getDistance() to one centroid
+ * 		nearest: nearest of the k centroids, the loop of the DNA drivers
+ * 		consensus: counting the DNAs in their clusters' profiles, then the
+ * 			consensus of each cluster (DNACluster.updateCentroid())
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DNAKernelBenchmark {
+	@Param({"4", "16", "64"})
+	public int k;
+
+	@Param({"20", "100", "1000"})
+	public int length;
+
+	@Param({"1000", "100000"})
+	public int n;
+
+	private DNAUnit[] dnas;
+	private DNAUnit[] centroids;
+	// nearest centroid of each DNA
+	private int[] labels;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		dnas = BenchmarkData.dnas(n, k, length, 42);
+		centroids = BenchmarkData.randomDNAs(k, length, 43);
+		labels = new int[n];
+		for (int i = 0; i < n; ++i) {
+			labels[i] = nearest(dnas[i]);
+		}
+	}
+
+	private int nearest(DNAUnit dna) {
+		int minDistance = Integer.MAX_VALUE;
+		int minIndex = 0;
+		for (int i = 0; i < k; ++i) {
+			int distance = dna.getDistance(centroids[i]);
+			if (distance < minDistance) {
+				minDistance = distance;
+				minIndex = i;
+			}
+		}
+		return minIndex;
+	}
+
+	@Benchmark
+	public long distance() {
+		DNAUnit centroid = centroids[0];
+		long sum = 0;
+		for (DNAUnit dna: dnas) {
+			sum += dna.getDistance(centroid);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int nearest() {
+		int checksum = 0;
+		for (DNAUnit dna: dnas) {
+			checksum += nearest(dna);
+		}
+		return checksum;
+	}
+
+	@Benchmark
+	public DNAUnit[] consensus() {
+		DNACluster[] clusters = new DNACluster[k];
+		for (int i = 0; i < k; ++i) {
+			clusters[i] = new DNACluster();
+		}
+		for (int i = 0; i < n; ++i) {
+			clusters[labels[i]].countDNA(dnas[i]);
+		}
+		DNAUnit[] consensus = new DNAUnit[k];
+		for (int i = 0; i < k; ++i) {
+			consensus[i] = clusters[i].updateCentroid();
+		}
+		return consensus;
+	}
+}
@@ -0,0 +1,130 @@
+package benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import point.CompactPoints;
+import point.LloydAssignment;
+import point.Point2D;
+import point.PointCluster;
+
+/**
+ * Kernels of one K Means iteration on 2D points, each over all n points:
+ * 		distance: Point2D.distanceTo() to one centroid
+ * 		nearest: nearest of the k centroids with LloydAssignment
+ * 		accumulate: adding the points to their clusters with
+ * 			addPointAndIncreaseSum, as the drivers do
+ * The compact variants run the same kernels on CompactPoints.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PointKernelBenchmark {
+	@State(Scope.Benchmark)
+	public static class Data {
+		@Param({"4", "16", "64"})
+		public int k;
+
+		@Param({"10000", "1000000"})
+		public int n;
+
+		List<Point2D> points;
+		Point2D[] centroids;
+		LloydAssignment lloyd;
+		// nearest centroid of each point
+		int[] labels;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			points = BenchmarkData.points(n, k, 42);
+			centroids = BenchmarkData.centroids(k, 43);
+			lloyd = new LloydAssignment(k);
+			lloyd.setCentroids(centroids);
+			labels = new int[n];
+			for (int i = 0; i < n; ++i) {
+				labels[i] = lloyd.assign(i, points.get(i));
+			}
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Compact {
+		@Param({"float", "int16", "int32"})
+		public String precision;
+
+		CompactPoints points;
+
+		@Setup(Level.Trial)
+		public void setUp(Data data) {
+			points = CompactPoints.create(precision, data.points, data.k);
+			points.setCentroids(data.centroids);
+		}
+	}
+
+	@Benchmark
+	public double distance(Data data) {
+		Point2D centroid = data.centroids[0];
+		double sum = 0;
+		for (int i = 0; i < data.n; ++i) {
+			sum += data.points.get(i).distanceTo(centroid);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int nearest(Data data) {
+		int checksum = 0;
+		for (int i = 0; i < data.n; ++i) {
+			checksum += data.lloyd.assign(i, data.points.get(i));
+		}
+		return checksum;
+	}
+
+	@Benchmark
+	public int nearestCompact(Data data, Compact compact) {
+		int checksum = 0;
+		for (int i = 0; i < data.n; ++i) {
+			checksum += compact.points.nearest(i);
+		}
+		return checksum;
+	}
+
+	@Benchmark
+	public double accumulate(Data data) {
+		PointCluster[] clusters = new PointCluster[data.k];
+		for (int i = 0; i < data.k; ++i) {
+			clusters[i] = new PointCluster();
+		}
+		for (int i = 0; i < data.n; ++i) {
+			clusters[data.labels[i]].addPointAndIncreaseSum(data.points.get(i));
+		}
+		return clusters[0].getSumX();
+	}
+
+	@Benchmark
+	public double accumulateCompact(Data data, Compact compact) {
+		compact.points.startSums();
+		for (int i = 0; i < data.n; ++i) {
+			compact.points.add(i, data.labels[i]);
+		}
+		return compact.points.getSumX(0);
+	}
+}
@@ -0,0 +1,392 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import comm.Communicator;
+import comm.LocalCommunicator;
+import comm.TimedCommunicator;
+import dna.DNAUnit;
+import dna.ParallelKMeansOnDNA;
+import dna.SequentialKMeansOnDNA;
+import point.ParallelKMeansOnPoint;
+import point.Point2D;
+import point.SequentialKMeansOnPoint;
+import util.KMeansModel;
+import util.Options;
+
+/**
+ * Strong and weak scaling runs of the parallel drivers, against the sequential
+ * drivers on the same data. The ranks are threads of this JVM (LocalCommunicator),
+ * rank 0 being the master that does not compute, so a run on r ranks has r - 1
+ * computing ranks.
+ *
+ * For each k, DNA length (DNA only) and rank number, the harness generates a
+ * dataset with a fixed seed, picks the initial centroids from it with the same
+ * seed, and runs each driver for the given number of trials from them:
+ * 		strong: n records whatever the rank number
+ * 		weak: n records per computing rank
+ * Each trial is a CSV line of the driver, its load time (constructor, slowest
+ * rank), clustering time, iterations to converge, time per iteration, and
+ * communication time (mean of the computing ranks, waiting for messages included).
+ *
+ * The summary table has the median of the trials. Speedup compares the time per
+ * iteration, which does not depend on how many iterations a dataset takes:
+ * 		strong: sequential time / parallel time, on the same n
+ * 		weak: computing ranks * sequential time on n / parallel time on n * computing ranks
+ * and efficiency is speedup / computing ranks. Each configuration first runs
+ * warm-up trials that are not recorded, so the JIT has compiled the kernels.
+ *
+ * Usage: ScalingHarness [--driver point|dna] [--mode strong|weak] [--ranks 2,3,5,9]
+ * 		[--n 100000] [--k 5,20] [--length 20,100] [--trials 3] [--warmup 1]
+ * 		[--max-iter 100]
+ * 		[--seed 1] [--dir scaling-data] [--out scaling.csv]
+ * 		[--driver-options reduce=binomial,pipeline=4]
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class ScalingHarness {
+	private boolean dna;
+	private boolean weak;
+	private int trials;
+	// runs before the trials of each configuration that are not recorded, for the JIT
+	private int warmups;
+	private int maxIter;
+	private long seed;
+	private File dir;
+	// options passed on to the parallel drivers, name=value or a bare name separated by commas
+	private String driverOptions;
+	private PrintStream console;
+	// median time per iteration of the sequential driver on each dataset
+	private Map<String, Double> sequentialTimes;
+
+	/**
+	 * Times of one trial
+	 */
+	private static class Trial {
+		double load;
+		double cluster;
+		int iterations;
+		double comm;
+	}
+
+	public ScalingHarness(Options options) {
+		this.dna = options.get("driver", "point").equals("dna");
+		this.weak = options.get("mode", "strong").equals("weak");
+		this.trials = options.getInt("trials", 3);
+		this.warmups = options.getInt("warmup", 1);
+		this.maxIter = options.getInt("max-iter", 100);
+		this.seed = options.getInt("seed", 1);
+		this.dir = new File(options.get("dir", "scaling-data"));
+		dir.mkdirs();
+		this.driverOptions = options.get("driver-options", "");
+		this.console = System.out;
+		this.sequentialTimes = new HashMap<String, Double>();
+	}
+
+	/**
+	 * Generate the dataset and its initial centroids unless an earlier run did
+	 * @return name of the data file, the model is the same name + ".model"
+	 */
+	private String prepareData(int n, int k, int length) throws IOException {
+		String name = (dna ? "dna-" + n + "-" + k + "-" + length : "point-" + n + "-" + k)
+				+ "-" + seed;
+		File file = new File(dir, name + ".txt");
+		File model = new File(dir, name + ".txt.model");
+		if (file.exists() && model.exists()) {
+			return file.getPath();
+		}
+		console.println("Generate " + file);
+		// the initial centroids are k distinct records
+		Random random = new Random(seed);
+		Set<Integer> chosen = new HashSet<Integer>();
+		while (chosen.size() < Math.min(k, n)) {
+			chosen.add(random.nextInt(n));
+		}
+		Integer[] centerIndexes = chosen.toArray(new Integer[0]);
+		Arrays.sort(centerIndexes);
+		BufferedWriter bw = new BufferedWriter(new FileWriter(file));
+		try {
+			if (dna) {
+				DNAUnit[] dnas = BenchmarkData.dnas(n, k, length, seed);
+				for (DNAUnit unit: dnas) {
+					bw.write(unit.getValue() + "\n");
+				}
+				String[] centroids = new String[k];
+				for (int i = 0; i < k; ++i) {
+					centroids[i] = dnas[centerIndexes[i]].getValue();
+				}
+				new KMeansModel(centroids, new long[k], Double.NaN).write(model.getPath());
+			} else {
+				List<Point2D> points = BenchmarkData.points(n, k, seed);
+				for (Point2D point: points) {
+					bw.write(point.getX() + "," + point.getY() + "\n");
+				}
+				double[][] centroids = new double[k][];
+				for (int i = 0; i < k; ++i) {
+					Point2D point = points.get(centerIndexes[i]);
+					centroids[i] = new double[] {point.getX(), point.getY()};
+				}
+				new KMeansModel(centroids, new long[k], Double.NaN).write(model.getPath());
+			}
+		} finally {
+			bw.close();
+		}
+		return file.getPath();
+	}
+
+	private Trial runSequential(String fileName, int k) {
+		Options options = new Options();
+		options.set("init-model", fileName + ".model");
+		Trial trial = new Trial();
+		long start = System.nanoTime();
+		if (dna) {
+			SequentialKMeansOnDNA driver = new SequentialKMeansOnDNA(fileName, k, maxIter, options);
+			trial.load = (System.nanoTime() - start) / 1e9;
+			start = System.nanoTime();
+			driver.doClustering();
+			trial.iterations = driver.getIterationNum();
+		} else {
+			SequentialKMeansOnPoint driver = new SequentialKMeansOnPoint(fileName, k, maxIter, options);
+			trial.load = (System.nanoTime() - start) / 1e9;
+			start = System.nanoTime();
+			driver.doClustering();
+			trial.iterations = driver.getIterationNum();
+		}
+		trial.cluster = (System.nanoTime() - start) / 1e9;
+		return trial;
+	}
+
+	private Trial runParallel(final String fileName, final int k, final int ranks) throws Exception {
+		final Options options = new Options();
+		for (String option: driverOptions.split(",")) {
+			if (option.trim().isEmpty()) {
+				continue;
+			}
+			String[] pair = option.trim().split("=", 2);
+			options.set(pair[0], pair.length == 2 ? pair[1] : "true");
+		}
+		options.set("init-model", fileName + ".model");
+		final double[] load = new double[ranks];
+		final double[] cluster = new double[ranks];
+		final double[] commTime = new double[ranks];
+		final int[] iterations = new int[1];
+		LocalCommunicator.run(ranks, new LocalCommunicator.Task() {
+			@Override
+			public void run(Communicator comm) {
+				TimedCommunicator timed = new TimedCommunicator(comm);
+				int rank = comm.rank();
+				long start = System.nanoTime();
+				if (dna) {
+					ParallelKMeansOnDNA driver = new ParallelKMeansOnDNA(timed, fileName, k, maxIter, options);
+					load[rank] = (System.nanoTime() - start) / 1e9;
+					timed.reset();
+					start = System.nanoTime();
+					driver.doClustering();
+					if (rank == 0) {
+						iterations[0] = driver.getIterationNum();
+					}
+				} else {
+					ParallelKMeansOnPoint driver = new ParallelKMeansOnPoint(timed, fileName, k, maxIter, options);
+					load[rank] = (System.nanoTime() - start) / 1e9;
+					timed.reset();
+					start = System.nanoTime();
+					driver.doClustering();
+					if (rank == 0) {
+						iterations[0] = driver.getIterationNum();
+					}
+				}
+				cluster[rank] = (System.nanoTime() - start) / 1e9;
+				commTime[rank] = timed.getSeconds();
+			}
+		});
+		Trial trial = new Trial();
+		for (int rank = 0; rank < ranks; ++rank) {
+			trial.load = Math.max(trial.load, load[rank]);
+			trial.cluster = Math.max(trial.cluster, cluster[rank]);
+			if (rank > 0) {
+				trial.comm += commTime[rank] / (ranks - 1);
+			}
+		}
+		trial.iterations = iterations[0];
+		return trial;
+	}
+
+	/**
+	 * Run the matrix, writing a CSV line per trial and a summary line per configuration
+	 */
+	public void run(int[] rankNums, int n, int[] ks, int[] lengths, String outFileName) throws Exception {
+		BufferedWriter csv = new BufferedWriter(new FileWriter(outFileName));
+		List<String> summary = new ArrayList<String>();
+		summary.add(String.format("%-24s %6s %10s %4s %6s %9s %10s %6s %12s %9s %8s %10s",
+				"driver", "ranks", "n", "k", "length", "load_s", "cluster_s", "iter",
+				"iteration_ms", "comm_s", "speedup", "efficiency"));
+		try {
+			csv.write("driver,mode,ranks,n,k,length,trial,load_s,cluster_s,iterations,iteration_s,comm_s\n");
+			for (int k: ks) {
+				for (int length: dna ? lengths : new int[] {2}) {
+					for (int ranks: rankNums) {
+						int computeRanks = ranks - 1;
+						int dataNum = weak ? n * computeRanks : n;
+						// baseline on the same n for strong scaling, on n for weak scaling
+						int baseNum = weak ? n : dataNum;
+						double sequential = getSequentialTime(csv, summary, baseNum, k, length);
+						String fileName = prepareData(dataNum, k, length);
+						for (int t = 0; t < warmups; ++t) {
+							quiet(fileName, k, ranks);
+						}
+						Trial[] results = new Trial[trials];
+						for (int t = 0; t < trials; ++t) {
+							console.println("Run " + ranks + " ranks, n " + dataNum + ", k " + k
+									+ (dna ? ", length " + length : "") + ", trial " + (t + 1));
+							results[t] = quiet(fileName, k, ranks);
+							writeTrial(csv, dna ? "ParallelKMeansOnDNA" : "ParallelKMeansOnPoint",
+									ranks, dataNum, k, length, t + 1, results[t]);
+						}
+						double iterationTime = medianIterationTime(results);
+						double speedup = (weak ? computeRanks : 1) * sequential / iterationTime;
+						summary.add(summarize(dna ? "ParallelKMeansOnDNA" : "ParallelKMeansOnPoint",
+								ranks, dataNum, k, length, results, speedup, speedup / computeRanks));
+					}
+				}
+			}
+		} finally {
+			csv.close();
+		}
+		console.println();
+		console.println((weak ? "Weak" : "Strong") + " scaling, medians of " + trials + " trials:");
+		for (String line: summary) {
+			console.println(line);
+		}
+	}
+
+	/**
+	 * @return median time per iteration of the sequential driver, run the first time it is needed
+	 */
+	private double getSequentialTime(BufferedWriter csv, List<String> summary, int n, int k, int length)
+			throws IOException {
+		String key = n + "-" + k + "-" + length;
+		Double time = sequentialTimes.get(key);
+		if (time != null) {
+			return time;
+		}
+		String fileName = prepareData(n, k, length);
+		Trial[] results = new Trial[trials];
+		String driver = dna ? "SequentialKMeansOnDNA" : "SequentialKMeansOnPoint";
+		for (int t = -warmups; t < trials; ++t) {
+			console.println("Run sequential, n " + n + ", k " + k
+					+ (dna ? ", length " + length : "") + (t < 0 ? ", warm-up" : ", trial " + (t + 1)));
+			System.setOut(new PrintStream(new NullOutputStream()));
+			Trial result;
+			try {
+				result = runSequential(fileName, k);
+			} finally {
+				System.setOut(console);
+			}
+			if (t < 0) {  // warm-up
+				continue;
+			}
+			results[t] = result;
+			writeTrial(csv, driver, 1, n, k, length, t + 1, result);
+		}
+		time = medianIterationTime(results);
+		sequentialTimes.put(key, time);
+		summary.add(summarize(driver, 1, n, k, length, results, 1, 1));
+		return time;
+	}
+
+	/**
+	 * Run the parallel driver with the progress messages of the ranks discarded
+	 */
+	private Trial quiet(String fileName, int k, int ranks) throws Exception {
+		System.setOut(new PrintStream(new NullOutputStream()));
+		try {
+			return runParallel(fileName, k, ranks);
+		} finally {
+			System.setOut(console);
+		}
+	}
+
+	private void writeTrial(BufferedWriter csv, String driver, int ranks, int n, int k, int length,
+			int trial, Trial result) throws IOException {
+		csv.write(String.format("%s,%s,%d,%d,%d,%d,%d,%.6f,%.6f,%d,%.6f,%.6f\n", driver,
+				weak ? "weak" : "strong", ranks, n, k, length, trial, result.load, result.cluster,
+				result.iterations, result.cluster / Math.max(1, result.iterations), result.comm));
+		csv.flush();
+	}
+
+	private String summarize(String driver, int ranks, int n, int k, int length, Trial[] results,
+			double speedup, double efficiency) {
+		double[] load = new double[results.length];
+		double[] cluster = new double[results.length];
+		double[] iterations = new double[results.length];
+		double[] comm = new double[results.length];
+		for (int t = 0; t < results.length; ++t) {
+			load[t] = results[t].load;
+			cluster[t] = results[t].cluster;
+			iterations[t] = results[t].iterations;
+			comm[t] = results[t].comm;
+		}
+		return String.format("%-24s %6d %10d %4d %6d %9.3f %10.3f %6.0f %12.3f %9.3f %8.2f %10.2f",
+				driver, ranks, n, k, length, median(load), median(cluster), median(iterations),
+				medianIterationTime(results) * 1e3, median(comm), speedup, efficiency);
+	}
+
+	private static double medianIterationTime(Trial[] results) {
+		double[] times = new double[results.length];
+		for (int t = 0; t < results.length; ++t) {
+			times[t] = results[t].cluster / Math.max(1, results[t].iterations);
+		}
+		return median(times);
+	}
+
+	private static double median(double[] values) {
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int middle = sorted.length / 2;
+		return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+	}
+
+	private static int[] parseInts(String list) {
+		String[] values = list.split(",");
+		int[] ints = new int[values.length];
+		for (int i = 0; i < values.length; ++i) {
+			ints[i] = Integer.parseInt(values[i].trim());
+		}
+		return ints;
+	}
+
+	/**
+	 * Sink of the drivers' progress messages
+	 */
+	private static class NullOutputStream extends OutputStream {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new Options(args, 0);
+		ScalingHarness harness = new ScalingHarness(options);
+		harness.run(parseInts(options.get("ranks", "2,3,5,9")), options.getInt("n", 100000),
+				parseInts(options.get("k", "5,20")), parseInts(options.get("length", "20,100")),
+				options.get("out", "scaling.csv"));
+	}
+}
@@ -0,0 +1,86 @@
+package comm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tree reductions on thread ranks against the plain sum of the partials, for
+ * rank numbers that are and are not powers of 2.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class TreeReducerTest {
+	private static final int MAX_SIZE = 9;
+
+	/**
+	 * partial of a rank: exact integers, and a fraction whose sum depends on the order
+	 */
+	private static double[] partial(int rank) {
+		return new double[] {1, rank, rank * rank, 0.1 * rank + 1.0 / 3};
+	}
+
+	/**
+	 * @return the result of the reduction on each rank
+	 */
+	private static double[][] reduce(final String topology, int size) throws Exception {
+		final double[][] results = new double[size][];
+		LocalCommunicator.run(size, new LocalCommunicator.Task() {
+			@Override
+			public void run(Communicator comm) {
+				TreeReducer reducer = new TreeReducer(comm, topology, 10);
+				results[comm.rank()] = reducer.reduce(partial(comm.rank()));
+			}
+		});
+		return results;
+	}
+
+	private static double[] sum(int size) {
+		double[] sum = new double[partial(0).length];
+		for (int rank = 0; rank < size; ++rank) {
+			double[] partial = partial(rank);
+			for (int i = 0; i < sum.length; ++i) {
+				sum[i] += partial[i];
+			}
+		}
+		return sum;
+	}
+
+	@Test
+	public void binomialSumsOnRankZero() throws Exception {
+		for (int size = 1; size <= MAX_SIZE; ++size) {
+			double[][] results = reduce(TreeReducer.BINOMIAL, size);
+			assertArrayEquals("size " + size, sum(size), results[0], 1e-12);
+		}
+	}
+
+	@Test
+	public void doublingGivesTheSameTotalEverywhere() throws Exception {
+		for (int size = 1; size <= MAX_SIZE; ++size) {
+			double[][] results = reduce(TreeReducer.DOUBLING, size);
+			assertArrayEquals("size " + size, sum(size), results[0], 1e-12);
+			for (int rank = 1; rank < size; ++rank) {
+				// the extra ranks get the total of their partner, bit for bit
+				assertArrayEquals("size " + size + ", rank " + rank, results[0], results[rank], 0);
+			}
+		}
+	}
+
+	@Test
+	public void binomialTreeIsConsistent() {
+		for (int size = 1; size <= 2 * MAX_SIZE; ++size) {
+			int edges = 0;
+			for (int rank = 0; rank < size; ++rank) {
+				for (int child: TreeReducer.getChildren(rank, size)) {
+					assertTrue(child < size);
+					assertEquals("parent of " + child, rank, TreeReducer.getParent(child, size));
+					++edges;
+				}
+			}
+			assertEquals("every rank but 0 has a parent, size " + size, size - 1, edges);
+		}
+	}
+}
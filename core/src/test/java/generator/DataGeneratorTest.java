@@ -0,0 +1,112 @@
+package generator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import point.PointChunkReader;
+import util.Options;
+
+/**
+ * Generated files only depend on the seed and the block size
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class DataGeneratorTest {
+	private static final int RECORD_NUM = 5000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Options options(String... args) {
+		return new Options(args, 0);
+	}
+
+	private byte[] generate(DataGenerator generator, String name) throws IOException {
+		File file = new File(folder.getRoot(), name);
+		generator.generate(file.getPath(), file.getPath() + ".labels");
+		return Files.readAllBytes(file.toPath());
+	}
+
+	@Test
+	public void sameOutputWithAnyThreadNumber() throws IOException {
+		for (String format: new String[] {"text", "binary"}) {
+			byte[] one = generate(new GaussianPointGenerator(RECORD_NUM, 5,
+					options("--threads", "1", "--block", "300", "--format", format)), "one");
+			byte[] four = generate(new GaussianPointGenerator(RECORD_NUM, 5,
+					options("--threads", "4", "--block", "300", "--format", format)), "four");
+			assertArrayEquals(format, one, four);
+			byte[] otherSeed = generate(new GaussianPointGenerator(RECORD_NUM, 5,
+					options("--threads", "4", "--block", "300", "--format", format, "--seed", "2")), "other");
+			assertNotEquals(format, new String(one, "US-ASCII"), new String(otherSeed, "US-ASCII"));
+
+			one = generate(new MutatedDNAGenerator(RECORD_NUM, 5,
+					options("--threads", "1", "--block", "300", "--format", format)), "one");
+			four = generate(new MutatedDNAGenerator(RECORD_NUM, 5,
+					options("--threads", "4", "--block", "300", "--format", format)), "four");
+			assertArrayEquals(format, one, four);
+		}
+	}
+
+	@Test
+	public void binaryPointsAreReadAsTheText() throws IOException {
+		File text = new File(folder.getRoot(), "points.csv");
+		File binary = new File(folder.getRoot(), "points.bin");
+		new GaussianPointGenerator(RECORD_NUM, 5, options("--block", "300")).generate(text.getPath(), null);
+		new GaussianPointGenerator(RECORD_NUM, 5, options("--block", "300", "--format", "binary"))
+				.generate(binary.getPath(), null);
+
+		PointChunkReader reader = new PointChunkReader(binary.getPath(), 1000);
+		BufferedReader br = new BufferedReader(new FileReader(text));
+		int num = 0;
+		PointChunkReader.Chunk chunk;
+		while ((chunk = reader.next()) != null) {
+			for (int i = 0; i < chunk.size; ++i, ++num) {
+				String[] coordinates = br.readLine().split(",");
+				// the text has 6 decimals
+				assertEquals(Double.parseDouble(coordinates[0]), chunk.x[i], 6e-7);
+				assertEquals(Double.parseDouble(coordinates[1]), chunk.y[i], 6e-7);
+			}
+		}
+		br.close();
+		assertEquals(RECORD_NUM, num);
+	}
+
+	@Test
+	public void dnaCentersAreApart() throws IOException {
+		int length = 30;
+		int k = 6;
+		MutatedDNAGenerator generator = new MutatedDNAGenerator(100, k,
+				options("--length", String.valueOf(length), "--min-distance", "18"));
+		generator.generate(new File(folder.getRoot(), "dnas.txt").getPath(), null);
+		for (int c = 0; c < k; ++c) {
+			for (int other = 0; other < c; ++other) {
+				int distance = 0;
+				for (int i = 0; i < length; ++i) {
+					if (generator.getCenter(c).charAt(i) != generator.getCenter(other).charAt(i)) {
+						++distance;
+					}
+				}
+				assertTrue(c + " and " + other + " differ in " + distance, distance >= 18);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void impossibleDistanceIsRejected() throws IOException {
+		new MutatedDNAGenerator(100, 6, options("--length", "30", "--min-distance", "29"))
+				.generate(new File(folder.getRoot(), "dnas.txt").getPath(), null);
+	}
+}
@@ -0,0 +1,124 @@
+package point;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The Yinyang and active set strategies only skip work: iteration after
+ * iteration of Lloyd's algorithm, they must give every point exactly the label
+ * of the plain nearest centroid search.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class AssignmentTest {
+	private static final int POINT_NUM = 4000;
+	private static final int MAX_ITER = 40;
+
+	/**
+	 * Gaussian blobs of sigma 3 around random centers in [0, 100)
+	 */
+	static List<Point2D> blobs(int pointNum, int centerNum, long seed) {
+		Random random = new Random(seed);
+		double[][] centers = new double[centerNum][2];
+		for (double[] center: centers) {
+			center[0] = random.nextDouble() * 100;
+			center[1] = random.nextDouble() * 100;
+		}
+		List<Point2D> points = new ArrayList<Point2D>(pointNum);
+		for (int i = 0; i < pointNum; ++i) {
+			double[] center = centers[random.nextInt(centerNum)];
+			points.add(new Point2D(center[0] + random.nextGaussian() * 3,
+					center[1] + random.nextGaussian() * 3));
+		}
+		return points;
+	}
+
+	/**
+	 * @return mean of the points of each cluster, the old centroid for an empty one
+	 */
+	static Point2D[] means(List<Point2D> points, int[] labels, Point2D[] centroids) {
+		int k = centroids.length;
+		double[] sumX = new double[k];
+		double[] sumY = new double[k];
+		int[] count = new int[k];
+		for (int i = 0; i < points.size(); ++i) {
+			sumX[labels[i]] += points.get(i).getX();
+			sumY[labels[i]] += points.get(i).getY();
+			++count[labels[i]];
+		}
+		Point2D[] means = new Point2D[k];
+		for (int c = 0; c < k; ++c) {
+			means[c] = count[c] == 0 ? centroids[c] : new Point2D(sumX[c] / count[c], sumY[c] / count[c]);
+		}
+		return means;
+	}
+
+	/**
+	 * Run Lloyd's algorithm from the first k points, checking the labels of the
+	 * strategy against those of LloydAssignment in every iteration
+	 * @return number of iterations until no label changed
+	 */
+	private int checkAgainstLloyd(PointAssignment strategy, List<Point2D> points, int k) {
+		Point2D[] centroids = new Point2D[k];
+		for (int c = 0; c < k; ++c) {
+			centroids[c] = new Point2D(points.get(c));
+		}
+		LloydAssignment lloyd = new LloydAssignment(k);
+		int[] labels = new int[points.size()];
+		Arrays.fill(labels, -1);
+		int[] previous = null;
+		for (int iter = 1; iter <= MAX_ITER; ++iter) {
+			lloyd.setCentroids(centroids);
+			strategy.setCentroids(centroids);
+			if (strategy instanceof ActiveSetAssignment) {
+				// as in the driver, only the active points are assigned again
+				ActiveSetAssignment activeSet = (ActiveSetAssignment) strategy;
+				for (int i = 0; i < activeSet.getActiveNum(); ++i) {
+					int index = activeSet.getActive(i);
+					labels[index] = activeSet.assign(index, points.get(index));
+				}
+			} else {
+				for (int i = 0; i < points.size(); ++i) {
+					labels[i] = strategy.assign(i, points.get(i));
+				}
+			}
+			int[] expected = new int[points.size()];
+			for (int i = 0; i < points.size(); ++i) {
+				expected[i] = lloyd.assign(i, points.get(i));
+			}
+			assertArrayEquals("labels of iteration " + iter, expected, labels);
+			if (Arrays.equals(expected, previous)) {
+				return iter;
+			}
+			previous = expected;
+			centroids = means(points, expected, centroids);
+		}
+		return MAX_ITER;
+	}
+
+	@Test
+	public void yinyangMatchesLloyd() {
+		List<Point2D> points = blobs(POINT_NUM, 30, 1);
+		for (int k: new int[] {3, 16, 64}) {
+			int iterations = checkAgainstLloyd(new YinyangAssignment(k, POINT_NUM), points, k);
+			assertTrue("k = " + k + " should run several iterations", iterations > 2);
+		}
+	}
+
+	@Test
+	public void activeSetMatchesLloyd() {
+		List<Point2D> points = blobs(POINT_NUM, 30, 2);
+		for (int k: new int[] {3, 16, 64}) {
+			int iterations = checkAgainstLloyd(new ActiveSetAssignment(k, POINT_NUM), points, k);
+			assertTrue("k = " + k + " should run several iterations", iterations > 2);
+		}
+	}
+}
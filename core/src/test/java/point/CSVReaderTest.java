@@ -0,0 +1,55 @@
+package point;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Records of an append-only file read from byte offsets
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class CSVReaderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File write(String text) throws IOException {
+		File file = folder.newFile();
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(text.getBytes("UTF-8"));
+		out.close();
+		return file;
+	}
+
+	@Test
+	public void positionsAreByteOffsets() throws IOException {
+		// é takes 2 bytes in UTF-8
+		File file = write("a,b\né,c\n\nd,e\nf,");
+		CSVReader reader = new CSVReader(file.getPath(), 0);
+		assertArrayEquals(new String[] {"a", "b"}, reader.readRecord());
+		assertEquals(4, reader.getPosition());
+		assertArrayEquals(new String[] {"é", "c"}, reader.readRecord());
+		assertEquals(9, reader.getPosition());
+
+		reader = new CSVReader(file.getPath(), 4);
+		assertArrayEquals(new String[] {"é", "c"}, reader.readRecord());
+		// the blank line is consumed with the next record
+		assertArrayEquals(new String[] {"d", "e"}, reader.readRecord());
+		// the last line has no line end yet
+		assertNull(reader.readRecord());
+		assertEquals(14, reader.getPosition());
+
+		reader = new CSVReader(file.getPath(), 14);
+		assertNull(reader.readRecord());
+		assertEquals(14, reader.getPosition());
+	}
+}
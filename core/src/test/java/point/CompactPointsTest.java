@@ -0,0 +1,78 @@
+package point;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Reduced precision points against the double ones: a point may only get
+ * another label where its two nearest centroids are closer to a tie than the
+ * rounding of the compact form, and the sums of a cluster must stay within
+ * that rounding of the double sums.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class CompactPointsTest {
+	private static final int POINT_NUM = 20000;
+	private static final int K = 12;
+
+	/**
+	 * @return bound of the coordinate error of the compact form, for points in a
+	 * range of about 110
+	 */
+	private static double getTolerance(String precision) {
+		if (precision.equals("int16")) {
+			return 110 / 65535.0;
+		} else if (precision.equals("int32")) {
+			return 1e-6;
+		}
+		return 1e-4;  // float, 24 bits of coordinates up to about 110
+	}
+
+	@Test
+	public void compactMatchesDouble() {
+		List<Point2D> points = AssignmentTest.blobs(POINT_NUM, 8, 3);
+		Point2D[] centroids = new Point2D[K];
+		for (int c = 0; c < K; ++c) {
+			centroids[c] = new Point2D(points.get(c));
+		}
+		LloydAssignment lloyd = new LloydAssignment(K);
+		lloyd.setCentroids(centroids);
+		for (String precision: new String[] {"float", "int16", "int32"}) {
+			double tolerance = getTolerance(precision);
+			CompactPoints compact = CompactPoints.create(precision, points, K);
+			compact.setCentroids(centroids);
+			compact.startSums();
+			double[] sumX = new double[K];
+			double[] sumY = new double[K];
+			int[] weights = new int[K];
+			int differentNum = 0;
+			for (int i = 0; i < POINT_NUM; ++i) {
+				Point2D point = points.get(i);
+				int expected = lloyd.assign(i, point);
+				int label = compact.nearest(i);
+				if (label != expected) {
+					// the rounding of the point moves both distances by at most 2 tolerances
+					double margin = Math.sqrt(point.distanceTo(centroids[label]))
+							- Math.sqrt(point.distanceTo(centroids[expected]));
+					assertTrue(precision + ": point " + i + " is not near a tie", margin <= 4 * tolerance);
+					++differentNum;
+				}
+				compact.add(i, expected);
+				sumX[expected] += point.getX();
+				sumY[expected] += point.getY();
+				++weights[expected];
+			}
+			assertTrue(precision + ": " + differentNum + " labels differ", differentNum <= POINT_NUM / 1000);
+			for (int c = 0; c < K; ++c) {
+				assertEquals(precision, weights[c], compact.getClusterWeight(c));
+				assertEquals(precision, sumX[c], compact.getSumX(c), tolerance * weights[c]);
+				assertEquals(precision, sumY[c], compact.getSumY(c), tolerance * weights[c]);
+			}
+		}
+	}
+}
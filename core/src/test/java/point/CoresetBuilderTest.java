@@ -0,0 +1,75 @@
+package point;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The weighted coreset stands for the whole file: its total weight and its
+ * cost for given centroids are close to those of all the records.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class CoresetBuilderTest {
+	private static final int POINT_NUM = 20000;
+	private static final int CORESET_SIZE = 1000;
+	private static final int K = 6;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static double cost(List<Point2D> points, Point2D[] centroids, boolean weighted) {
+		LloydAssignment lloyd = new LloydAssignment(centroids.length);
+		lloyd.setCentroids(centroids);
+		double cost = 0;
+		for (int i = 0; i < points.size(); ++i) {
+			Point2D point = points.get(i);
+			double distance = point.distanceTo(centroids[lloyd.assign(i, point)]);
+			cost += weighted ? point.getWeight() * distance : distance;
+		}
+		return cost;
+	}
+
+	@Test
+	public void coresetStandsForTheFile() throws IOException {
+		List<Point2D> points = AssignmentTest.blobs(POINT_NUM, 10, 6);
+		File input = folder.newFile("points.csv");
+		PrintWriter writer = new PrintWriter(input);
+		for (Point2D point: points) {
+			writer.println(point.getX() + "," + point.getY());
+		}
+		writer.close();
+		Point2D[] centroids = new Point2D[K];
+		for (int c = 0; c < K; ++c) {
+			centroids[c] = points.get(c);
+		}
+		double fullCost = cost(points, centroids, false);
+
+		// the coreset is random, average a few of them
+		int builds = 5;
+		double weight = 0;
+		double coresetCost = 0;
+		for (int b = 0; b < builds; ++b) {
+			CoresetBuilder builder = new CoresetBuilder(K, CORESET_SIZE);
+			List<Point2D> coreset = builder.build(input.getPath());
+			assertEquals(POINT_NUM, builder.getRecordNum());
+			assertTrue(coreset.size() <= CORESET_SIZE);
+			for (Point2D point: coreset) {
+				assertTrue(point.getWeight() > 0);
+				weight += point.getWeight();
+			}
+			coresetCost += cost(coreset, centroids, true);
+		}
+		assertEquals(POINT_NUM, weight / builds, 0.1 * POINT_NUM);
+		assertEquals(fullCost, coresetCost / builds, 0.2 * fullCost);
+	}
+}
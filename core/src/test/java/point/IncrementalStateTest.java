@@ -0,0 +1,81 @@
+package point;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import util.KMeansModel;
+
+/**
+ * Incremental runs of SequentialKMeansOnPoint over a growing file
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class IncrementalStateTest {
+	private static final int K = 4;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static void append(File file, List<Point2D> points, String tail) throws IOException {
+		FileWriter writer = new FileWriter(file, true);
+		for (Point2D point: points) {
+			writer.write(point.getX() + "," + point.getY() + "\n");
+		}
+		writer.write(tail);
+		writer.close();
+	}
+
+	private static void run(File input, String prefix) {
+		SequentialKMeansOnPoint.main(new String[] {String.valueOf(K), "50", input.getPath(),
+				prefix + ".out", "--state", prefix});
+	}
+
+	@Test
+	public void modelCoversEveryConsumedRecord() throws IOException {
+		List<Point2D> points = AssignmentTest.blobs(3000, 6, 7);
+		File input = folder.newFile("points.csv");
+		String prefix = new File(folder.getRoot(), "state").getPath();
+		append(input, points.subList(0, 2000), "");
+		run(input, prefix);
+		assertEquals(input.length(), IncrementalState.load(prefix).getOffset());
+
+		// the last line is still being written
+		String partial = "12.5,3";
+		append(input, points.subList(2000, 3000), partial);
+		run(input, prefix);
+		IncrementalState state = IncrementalState.load(prefix);
+		assertEquals(3000, state.getRecordNum());
+		assertEquals(input.length() - partial.length(), state.getOffset());
+
+		// the inertia of the model is the one of all the records, with their saved labels
+		KMeansModel model = KMeansModel.read(prefix + ".model");
+		double[][] centroids = model.getPointCentroids();
+		long[] counts = new long[K];
+		double inertia = 0;
+		DataInputStream labels = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(prefix + ".labels")));
+		for (Point2D point: points) {
+			int label = labels.readInt();
+			++counts[label];
+			inertia += point.distanceTo(new Point2D(centroids[label][0], centroids[label][1]));
+		}
+		assertEquals(-1, labels.read());
+		labels.close();
+		for (int c = 0; c < K; ++c) {
+			assertEquals(counts[c], model.getCounts()[c]);
+		}
+		assertEquals(inertia, model.getInertia(), 1e-9 * inertia);
+	}
+}
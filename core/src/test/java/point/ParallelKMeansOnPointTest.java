@@ -0,0 +1,171 @@
+package point;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import util.KMeansModel;
+
+/**
+ * Whole runs on thread ranks from a fixed initial model: every assignment
+ * strategy and reduction must end on the centroids of a plain Lloyd run.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class ParallelKMeansOnPointTest {
+	private static final int POINT_NUM = 3000;
+	private static final int K = 8;
+	private static final int MAX_ITER = 100;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String inputFileName;
+	private String initModelFileName;
+	private Point2D[] expected;
+
+	@Before
+	public void setUp() throws IOException {
+		List<Point2D> points = AssignmentTest.blobs(POINT_NUM, 12, 5);
+		File input = folder.newFile("points.csv");
+		PrintWriter writer = new PrintWriter(input);
+		for (Point2D point: points) {
+			writer.println(point.getX() + "," + point.getY());
+		}
+		writer.close();
+		inputFileName = input.getPath();
+
+		double[][] initial = new double[K][];
+		Point2D[] centroids = new Point2D[K];
+		for (int c = 0; c < K; ++c) {
+			initial[c] = new double[] {points.get(c).getX(), points.get(c).getY()};
+			centroids[c] = new Point2D(points.get(c));
+		}
+		initModelFileName = new File(folder.getRoot(), "init.model").getPath();
+		new KMeansModel(initial, new long[K], Double.NaN).write(initModelFileName);
+
+		// plain Lloyd until no label changes
+		LloydAssignment lloyd = new LloydAssignment(K);
+		int[] previous = null;
+		for (int iter = 0; iter < MAX_ITER; ++iter) {
+			lloyd.setCentroids(centroids);
+			int[] labels = new int[POINT_NUM];
+			for (int i = 0; i < POINT_NUM; ++i) {
+				labels[i] = lloyd.assign(i, points.get(i));
+			}
+			if (Arrays.equals(labels, previous)) {
+				break;
+			}
+			previous = labels;
+			centroids = AssignmentTest.means(points, labels, centroids);
+		}
+		expected = centroids;
+	}
+
+	private void checkRun(String... options) throws Exception {
+		checkRunOn(inputFileName, options);
+	}
+
+	private void checkRunOn(String inputFileName, String... options) throws Exception {
+		String outputFileName = new File(folder.getRoot(), "out.txt").getPath();
+		String[] prefix = {"a", "b", "c", String.valueOf(K), String.valueOf(MAX_ITER),
+				inputFileName, outputFileName, "--local", "3", "--init-model", initModelFileName};
+		String[] args = Arrays.copyOf(prefix, prefix.length + options.length);
+		System.arraycopy(options, 0, args, prefix.length, options.length);
+		ParallelKMeansOnPoint.main(args);
+
+		double[][] centroids = KMeansModel.read(outputFileName + ".model").getPointCentroids();
+		String run = Arrays.toString(options);
+		for (int c = 0; c < K; ++c) {
+			assertEquals(run + " centroid " + c, expected[c].getX(), centroids[c][0], 1e-9);
+			assertEquals(run + " centroid " + c, expected[c].getY(), centroids[c][1], 1e-9);
+		}
+	}
+
+	/**
+	 * @return a copy of the input with every record written twice, whose means are those of the input
+	 */
+	private String writeDuplicated() throws IOException {
+		File duplicated = folder.newFile("duplicated.csv");
+		PrintWriter writer = new PrintWriter(duplicated);
+		for (Point2D point: AssignmentTest.blobs(POINT_NUM, 12, 5)) {
+			writer.println(point.getX() + "," + point.getY());
+			writer.println(point.getX() + "," + point.getY());
+		}
+		writer.close();
+		return duplicated.getPath();
+	}
+
+	@Test
+	public void lloyd() throws Exception {
+		checkRun();
+	}
+
+	@Test
+	public void yinyang() throws Exception {
+		checkRun("--assign", "yinyang");
+	}
+
+	@Test
+	public void activeSet() throws Exception {
+		checkRun("--active-set");
+	}
+
+	@Test
+	public void treeReductions() throws Exception {
+		checkRun("--reduce", "binomial");
+		checkRun("--reduce", "doubling");
+	}
+
+	@Test
+	public void metricsCountTheTreeReduction() throws Exception {
+		for (String reduce: new String[] {"binomial", "doubling"}) {
+			String metricsFileName = new File(folder.getRoot(), reduce + ".csv").getPath();
+			checkRun("--reduce", reduce, "--metrics", metricsFileName);
+			BufferedReader br = new BufferedReader(new FileReader(metricsFileName));
+			List<String> columns = Arrays.asList(br.readLine().split(","));
+			int bytesColumn = columns.indexOf("bytes_sent");
+			String line;
+			while ((line = br.readLine()) != null) {
+				String[] fields = line.split(",");
+				// every slave sends its partial sums up the tree in every iteration
+				if (!fields[0].equals("0")) {
+					assertTrue(reduce + ": " + line, Long.parseLong(fields[bytesColumn]) > 0);
+				}
+			}
+			br.close();
+		}
+	}
+
+	@Test
+	public void pipelined() throws Exception {
+		checkRun("--pipeline", "4");
+		checkRun("--pipeline", "4", "--reduce", "binomial");
+	}
+
+	@Test
+	public void balanced() throws Exception {
+		checkRun("--balance", "6");
+	}
+
+	@Test
+	public void deduplicated() throws Exception {
+		String duplicated = writeDuplicated();
+		checkRunOn(duplicated);
+		checkRunOn(duplicated, "--dedup");
+		checkRunOn(duplicated, "--dedup", "--assign", "yinyang");
+	}
+}
@@ -0,0 +1,57 @@
+package point;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Points streamed from CSV files, and the same records read by CSVReader
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class PointChunkReaderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File write(String text) throws IOException {
+		File file = folder.newFile();
+		FileWriter writer = new FileWriter(file);
+		writer.write(text);
+		writer.close();
+		return file;
+	}
+
+	@Test(timeout = 10000)
+	public void blankLinesAreSkipped() throws IOException {
+		File file = write("1,2\n\n3,4\n  \n5,6\n\n");
+		PointChunkReader reader = new PointChunkReader(file.getPath(), 2);
+		PointChunkReader.Chunk chunk = reader.next();
+		assertEquals(2, chunk.size);
+		assertEquals(3, chunk.x[1], 0);
+		chunk = reader.next();
+		assertEquals(1, chunk.size);
+		assertEquals(6, chunk.y[0], 0);
+		assertNull(reader.next());
+
+		CSVReader csvReader = new CSVReader(file.getPath());
+		int num = 0;
+		while (csvReader.readRecord() != null) {
+			++num;
+		}
+		assertEquals(3, num);
+	}
+
+	@Test(timeout = 10000, expected = NumberFormatException.class)
+	public void malformedLineFailsTheConsumer() throws IOException {
+		PointChunkReader reader = new PointChunkReader(write("1,2\nx,4\n").getPath(), 10);
+		reader.next();
+	}
+}
@@ -0,0 +1,77 @@
+package util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checkpoints of a master and two slaves, each with its own Checkpointer on
+ * the same directory as in a run
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class CheckpointerTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static KMeansModel model(int iter) {
+		return new KMeansModel(new double[][] {{iter, -iter}}, new long[] {iter}, iter);
+	}
+
+	@Test
+	public void latestIsTheLastCompleteCheckpoint() throws IOException {
+		String dirName = folder.getRoot().getPath();
+		Checkpointer master = new Checkpointer(dirName, 2, 2);
+		Checkpointer first = new Checkpointer(dirName, 2, 2);
+		Checkpointer second = new Checkpointer(dirName, 2, 2);
+		assertFalse(master.isDue(3));
+		assertTrue(master.isDue(4));
+		assertEquals(0, master.findLatest());
+
+		for (int iter = 2; iter <= 4; iter += 2) {
+			master.saveModel(iter, model(iter));
+			first.saveLabels(iter, 1, new int[] {iter, 0});
+			second.saveLabels(iter, 2, new int[] {iter, 1, 2});
+		}
+		master.close();
+		first.close();
+		second.close();
+		assertEquals(4, master.findLatest());
+		assertEquals(4, master.loadModel(4).getPointCentroids()[0][0], 0);
+		assertArrayEquals(new int[] {4, 0}, first.loadLabels(4, 1));
+		assertArrayEquals(new int[] {4, 1, 2}, second.loadLabels(4, 2));
+
+		// a checkpoint without the labels of every slave is not complete
+		master = new Checkpointer(dirName, 2, 2);
+		first = new Checkpointer(dirName, 2, 2);
+		master.saveModel(6, model(6));
+		first.saveLabels(6, 1, new int[] {6, 0});
+		master.close();
+		first.close();
+		assertEquals(4, master.findLatest());
+		assertTrue(new File(dirName, "iter-4.model").exists());
+		assertTrue(new File(dirName, "iter-4.rank-2.labels").exists());
+		assertFalse(new File(dirName, "iter-2.model").exists());
+	}
+
+	@Test
+	public void modelOnlyCheckpoints() throws IOException {
+		Checkpointer master = new Checkpointer(folder.getRoot().getPath(), 3, 0);
+		for (int iter = 3; iter <= 9; iter += 3) {
+			master.saveModel(iter, model(iter));
+		}
+		master.close();
+		assertEquals(9, master.findLatest());
+		assertEquals(9, master.loadModel(9).getInertia(), 0);
+		assertEquals(1, folder.getRoot().list().length);
+	}
+}
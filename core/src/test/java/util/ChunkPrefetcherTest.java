@@ -0,0 +1,95 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Chunks of a fake file, and failures of the background thread, which must
+ * reach the consumer instead of leaving it waiting
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class ChunkPrefetcherTest {
+	/**
+	 * Chunks 0 to chunkNum - 1, then the given failure if any
+	 */
+	private static class Counter extends ChunkPrefetcher<Integer> {
+		private int chunkNum;
+		private RuntimeException runtimeFailure;
+		private IOException ioFailure;
+		private int next;
+		volatile boolean closed;
+
+		Counter(int chunkNum, RuntimeException runtimeFailure, IOException ioFailure) {
+			this.chunkNum = chunkNum;
+			this.runtimeFailure = runtimeFailure;
+			this.ioFailure = ioFailure;
+			start();
+		}
+
+		@Override
+		protected Integer readChunk() throws IOException {
+			if (next < chunkNum) {
+				return next++;
+			}
+			if (runtimeFailure != null) {
+				throw runtimeFailure;
+			}
+			if (ioFailure != null) {
+				throw ioFailure;
+			}
+			return null;
+		}
+
+		@Override
+		protected void closeFile() {
+			closed = true;
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void chunksInOrder() throws IOException {
+		Counter counter = new Counter(5, null, null);
+		for (int i = 0; i < 5; ++i) {
+			assertEquals(Integer.valueOf(i), counter.next());
+		}
+		assertNull(counter.next());
+		assertNull(counter.next());
+		assertTrue(counter.closed);
+	}
+
+	@Test(timeout = 10000)
+	public void runtimeFailureReachesTheConsumer() throws IOException {
+		NumberFormatException failure = new NumberFormatException("For input string: \"x\"");
+		Counter counter = new Counter(2, failure, null);
+		counter.next();
+		counter.next();
+		try {
+			counter.next();
+			fail("the failure of the reader is lost");
+		} catch (NumberFormatException e) {
+			assertEquals(failure, e);
+		}
+		assertNull(counter.next());
+		assertTrue(counter.closed);
+	}
+
+	@Test(timeout = 10000)
+	public void ioFailureReachesTheConsumer() {
+		IOException failure = new IOException("disk");
+		Counter counter = new Counter(0, null, failure);
+		try {
+			counter.next();
+			fail("the failure of the reader is lost");
+		} catch (IOException e) {
+			assertEquals(failure, e);
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Samples of weighted points, which must be samples of the records
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class ClusterEvaluationTest {
+	@Test
+	public void everyRecordIsDrawnOnce() {
+		int[] weights = {3, 1, 5, 1};
+		assertEquals(10, ClusterEvaluation.getRecordNum(weights));
+		int[] drawn = new int[weights.length];
+		for (int index: ClusterEvaluation.sample(weights, 10, new Random(1))) {
+			++drawn[index];
+		}
+		assertArrayEquals(weights, drawn);
+	}
+
+	@Test
+	public void pointsAreDrawnByWeight() {
+		int[] weights = {1, 9, 90};
+		Random random = new Random(2);
+		int[] drawn = new int[weights.length];
+		int draws = 20000;
+		for (int i = 0; i < draws; ++i) {
+			++drawn[ClusterEvaluation.sample(weights, 1, random)[0]];
+		}
+		for (int i = 0; i < weights.length; ++i) {
+			assertEquals(weights[i] / 100.0, (double) drawn[i] / draws, 0.01);
+		}
+	}
+}
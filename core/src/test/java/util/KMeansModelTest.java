@@ -0,0 +1,66 @@
+package util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Models written and read back
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class KMeansModelTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void pointModelRoundTrip() throws IOException {
+		double[][] centroids = {{1.5, -2}, {0, 1e300}, {Double.NaN, -0.0}};
+		long[] counts = {3, 0, 1L << 40};
+		String fileName = new File(folder.getRoot(), "points.model").getPath();
+		new KMeansModel(centroids, counts, 4.25).write(fileName);
+
+		KMeansModel model = KMeansModel.read(fileName);
+		assertEquals(KMeansModel.POINT, model.getType());
+		assertEquals(3, model.getK());
+		assertEquals(2, model.getDimension());
+		for (int i = 0; i < centroids.length; ++i) {
+			assertArrayEquals(centroids[i], model.getPointCentroids()[i], 0);
+		}
+		assertArrayEquals(counts, model.getCounts());
+		assertEquals(4.25, model.getInertia(), 0);
+	}
+
+	@Test
+	public void dnaModelRoundTrip() throws IOException {
+		// an empty cluster has no centroid, its bases are written as N
+		String[] centroids = {"ACGT", "", "TTGA"};
+		long[] counts = {5, 0, 7};
+		String fileName = new File(folder.getRoot(), "dnas.model").getPath();
+		new KMeansModel(centroids, counts, 12).write(fileName);
+
+		KMeansModel model = KMeansModel.read(fileName);
+		assertEquals(KMeansModel.DNA, model.getType());
+		assertEquals(4, model.getDimension());
+		assertArrayEquals(new String[] {"ACGT", "NNNN", "TTGA"}, model.getDNACentroids());
+		assertArrayEquals(counts, model.getCounts());
+		assertEquals(12, model.getInertia(), 0);
+	}
+
+	@Test(expected = IOException.class)
+	public void otherFileIsRejected() throws IOException {
+		File file = folder.newFile("points.csv");
+		FileWriter writer = new FileWriter(file);
+		writer.write("1.0,2.0\n3.0,4.0\n");
+		writer.close();
+		KMeansModel.read(file.getPath());
+	}
+}
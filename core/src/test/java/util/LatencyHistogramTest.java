@@ -0,0 +1,57 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Percentiles of the histogram against those of the sorted values
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class LatencyHistogramTest {
+	@Test
+	public void smallValuesAreExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long nanos = 0; nanos < 10; ++nanos) {
+			histogram.record(nanos);
+		}
+		assertEquals(10, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(10));
+		assertEquals(4, histogram.getPercentile(50));
+		assertEquals(9, histogram.getPercentile(100));
+	}
+
+	@Test
+	public void percentilesAreWithinOneSubBucket() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		int n = 100000;
+		// values spread over several powers of two, recorded out of order
+		long[] sorted = new long[n];
+		for (int i = 0; i < n; ++i) {
+			sorted[i] = 1000L + 37L * i;
+			histogram.record(1000L + 37L * ((i * 7919L) % n));
+		}
+		for (double percentile: new double[] {1, 25, 50, 90, 99, 99.9, 100}) {
+			long expected = sorted[(int) Math.ceil(percentile / 100 * n) - 1];
+			long reported = histogram.getPercentile(percentile);
+			assertTrue(percentile + "%: " + reported + " below " + expected, reported >= expected);
+			assertTrue(percentile + "%: " + reported + " too far above " + expected,
+					reported <= expected + expected / 16);
+		}
+	}
+
+	@Test
+	public void resetForgetsTheRecords() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(123456789L);
+		histogram.record(-5);
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(99));
+		histogram.record(3);
+		assertEquals(3, histogram.getPercentile(50));
+	}
+}
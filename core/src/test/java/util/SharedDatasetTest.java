@@ -0,0 +1,112 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Shared datasets in a temporary directory instead of /dev/shm
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class SharedDatasetTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Parser of records holding their index, base + index, counting its calls
+	 */
+	private static Callable<SharedDataset.Records> parser(final int recordNum, final long base,
+			final AtomicInteger calls) {
+		return new Callable<SharedDataset.Records>() {
+			@Override
+			public SharedDataset.Records call() {
+				calls.incrementAndGet();
+				return new SharedDataset.Records() {
+					@Override
+					public int getRecordNum() {
+						return recordNum;
+					}
+
+					@Override
+					public int getRecordSize() {
+						return 12;
+					}
+
+					@Override
+					public void put(int index, ByteBuffer buffer) {
+						buffer.putInt(index);
+						buffer.putLong(base + index);
+					}
+				};
+			}
+		};
+	}
+
+	private static void checkRecords(SharedDataset dataset, int recordNum, long base) {
+		assertEquals(recordNum, dataset.getRecordNum());
+		assertEquals(12, dataset.getRecordSize());
+		for (int i = 0; i < recordNum; ++i) {
+			ByteBuffer segment = dataset.getSegment(i);
+			int position = dataset.getPosition(i);
+			assertEquals(i, segment.getInt(position));
+			assertEquals(base + i, segment.getLong(position + 4));
+		}
+	}
+
+	private static void write(File file, String text) throws IOException {
+		FileWriter writer = new FileWriter(file);
+		writer.write(text);
+		writer.close();
+	}
+
+	@Test
+	public void parsedOnceAndWrittenAgainForAChangedInput() throws Exception {
+		File input = folder.newFile("points.csv");
+		write(input, "1,2\n");
+		String dirName = folder.newFolder("shm").getPath();
+		AtomicInteger calls = new AtomicInteger();
+
+		checkRecords(SharedDataset.open(input.getPath(), dirName, "point", parser(100, 7, calls)), 100, 7);
+		checkRecords(SharedDataset.open(input.getPath(), dirName, "point", parser(100, 7, calls)), 100, 7);
+		assertEquals(1, calls.get());
+
+		// another kind is another file
+		SharedDataset.open(input.getPath(), dirName, "dedup", parser(10, 0, calls));
+		assertEquals(2, calls.get());
+
+		write(input, "1,2\n3,4\n");
+		SharedDataset dataset = SharedDataset.open(input.getPath(), dirName, "point", parser(200, 9, calls));
+		assertEquals(3, calls.get());
+		checkRecords(dataset, 200, 9);
+		assertEquals(2 * 2, new File(dirName).list().length);  // a data and a lock file per kind
+	}
+
+	@Test
+	public void removeKeepsTheMapping() throws Exception {
+		File input = folder.newFile("points.csv");
+		write(input, "1,2\n");
+		File dir = folder.newFolder("shm");
+		AtomicInteger calls = new AtomicInteger();
+		SharedDataset dataset = SharedDataset.open(input.getPath(), dir.getPath(), "point",
+				parser(50, 3, calls));
+		dataset.remove();
+		assertEquals(0, dir.list().length);
+		checkRecords(dataset, 50, 3);
+
+		SharedDataset.open(input.getPath(), dir.getPath(), "point", parser(50, 3, calls));
+		assertEquals(2, calls.get());
+		assertTrue(dir.list().length > 0);
+	}
+}
@@ -0,0 +1,102 @@
+package util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Silhouette from the reduced sums against the direct definition, with every
+ * record as a sample
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class SilhouetteTest {
+	private static final int N = 60;
+
+	/**
+	 * @return silhouette of each record by the pairwise distances
+	 */
+	private static double[] bruteForce(double[][] distances, int[] labels, int k) {
+		double[] values = new double[N];
+		for (int i = 0; i < N; ++i) {
+			double[] sums = new double[k];
+			int[] counts = new int[k];
+			for (int j = 0; j < N; ++j) {
+				if (j != i) {
+					sums[labels[j]] += distances[i][j];
+					++counts[labels[j]];
+				}
+			}
+			int own = labels[i];
+			if (counts[own] == 0) {
+				continue;
+			}
+			double a = sums[own] / counts[own];
+			double b = Double.MAX_VALUE;
+			for (int cluster = 0; cluster < k; ++cluster) {
+				if (cluster != own && counts[cluster] > 0) {
+					b = Math.min(b, sums[cluster] / counts[cluster]);
+				}
+			}
+			if (b != Double.MAX_VALUE) {
+				values[i] = (b - a) / Math.max(a, b);
+			}
+		}
+		return values;
+	}
+
+	@Test
+	public void matchesTheDefinition() {
+		Random random = new Random(4);
+		double[] x = new double[N];
+		double[] y = new double[N];
+		for (int i = 0; i < N; ++i) {
+			x[i] = random.nextDouble() * 10;
+			y[i] = random.nextDouble() * 10;
+		}
+		double[][] distances = new double[N][N];
+		for (int i = 0; i < N; ++i) {
+			for (int j = 0; j < N; ++j) {
+				distances[i][j] = Math.hypot(x[i] - x[j], y[i] - y[j]);
+			}
+		}
+		// two clusterings: by the x coordinate, and random with a singleton cluster
+		int[] ks = {3, 4};
+		int[][] labels = new int[2][N];
+		for (int i = 0; i < N; ++i) {
+			labels[0][i] = Math.min(2, (int) (x[i] / 10 * 3));
+			labels[1][i] = i == 0 ? 3 : random.nextInt(3);
+		}
+
+		// the records are added by two ranks whose sums are then added up
+		Silhouette first = new Silhouette(N, ks);
+		Silhouette second = new Silhouette(N, ks);
+		for (int i = 0; i < N; ++i) {
+			int[] recordLabels = {labels[0][i], labels[1][i]};
+			(i % 2 == 0 ? first : second).add(distances[i], recordLabels, 1);
+		}
+		double[] total = first.getSums().clone();
+		for (int i = 0; i < total.length; ++i) {
+			total[i] += second.getSums()[i];
+		}
+		first.setSums(total);
+
+		for (int set = 0; set < ks.length; ++set) {
+			double[] values = first.getValues(set, labels[set]);
+			assertArrayEquals("clustering " + set, bruteForce(distances, labels[set], ks[set]), values, 1e-9);
+		}
+		assertEquals(0, first.getValues(1, labels[1])[0], 0);
+	}
+
+	@Test
+	public void singleClusterHasNoSilhouette() {
+		Silhouette silhouette = new Silhouette(2, new int[] {1});
+		silhouette.add(new double[] {0, 1}, new int[] {0}, 1);
+		silhouette.add(new double[] {1, 0}, new int[] {0}, 1);
+		assertArrayEquals(new double[] {0, 0}, silhouette.getValues(0, new int[] {0, 0}), 0);
+	}
+}
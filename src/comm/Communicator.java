@@ -0,0 +1,57 @@
+package comm;
+
+/**
+ * Point-to-point and collective operations the parallel drivers need, so the
+ * same protocol runs on MPJ Express or on threads of a single JVM.
+ *
+ * Buffers are arrays, and the element type follows from the array class:
+ * int[], long[], double[], boolean[], byte[], or an Object[] of serializable
+ * objects. As with MPI, the data is copied when sent, and messages between two
+ * ranks with the same tag are received in the order they were sent.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public interface Communicator {
+	// receive from whichever rank sent first
+	int ANY_SOURCE = -2;
+	// reduction operations
+	int SUM = 0;
+	int MAX = 1;
+	int MIN = 2;
+
+	int rank();
+
+	int size();
+
+	void send(Object buffer, int offset, int count, int dest, int tag);
+
+	/**
+	 * @return rank the message came from
+	 */
+	int recv(Object buffer, int offset, int count, int source, int tag);
+
+	/**
+	 * Wait until a matching message can be received, without receiving it
+	 * @return rank the message comes from
+	 */
+	int probe(int source, int tag);
+
+	Request isend(Object buffer, int offset, int count, int dest, int tag);
+
+	void bcast(Object buffer, int offset, int count, int root);
+
+	/**
+	 * Element-wise reduction of int[], long[] or double[] buffers into the
+	 * receive buffer of the root
+	 * @param op SUM, MAX or MIN
+	 */
+	void reduce(Object sendBuffer, Object recvBuffer, int count, int op, int root);
+
+	void barrier();
+
+	/**
+	 * @return wall clock time in seconds
+	 */
+	double wtime();
+}
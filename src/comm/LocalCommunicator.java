@@ -0,0 +1,289 @@
+package comm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Communicator of ranks running as threads of one JVM. Each rank has a
+ * lock-free mailbox (a ConcurrentLinkedQueue) that any rank appends to and
+ * only its owner takes from, scanning for the first message that matches the
+ * source and tag, so messages with the same source and tag keep their order.
+ * A receiver with no matching message parks until a sender wakes it up.
+ *
+ * Sends copy the data right away: primitive arrays are cloned and objects are
+ * serialized, as MPJ does, so no rank ever sees the objects of another one.
+ * Sends therefore never block, and isend is complete when it returns.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class LocalCommunicator implements Communicator {
+	// tags reserved for the collective operations
+	private static final int BCAST_TAG = -10;
+	private static final int REDUCE_TAG = -11;
+	private static final int BARRIER_TAG = -12;
+	// longest park before the mailbox is scanned again, in case a wake-up is missed
+	private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	/**
+	 * Code run by each rank
+	 */
+	public interface Task {
+		void run(Communicator comm) throws Exception;
+	}
+
+	private static class Message {
+		int source;
+		int tag;
+		// copy of the sent elements
+		Object data;
+	}
+
+	/**
+	 * Mailboxes shared by all ranks
+	 */
+	private static class World {
+		List<ConcurrentLinkedQueue<Message>> mailboxes;
+		volatile Thread[] owners;
+		// set when a rank fails, so the others stop waiting for it
+		volatile Throwable failure;
+
+		World(int size) {
+			mailboxes = new ArrayList<ConcurrentLinkedQueue<Message>>(size);
+			for (int i = 0; i < size; ++i) {
+				mailboxes.add(new ConcurrentLinkedQueue<Message>());
+			}
+			owners = new Thread[size];
+		}
+	}
+
+	private World world;
+	private int rank;
+	private final Request completed = new Request() {
+		@Override
+		public void waitFor() {
+		}
+	};
+
+	private LocalCommunicator(World world, int rank) {
+		this.world = world;
+		this.rank = rank;
+	}
+
+	/**
+	 * Run the task on size ranks, each on its own thread, and wait for all of them
+	 * @throws Exception the first failure of a rank
+	 */
+	public static void run(int size, final Task task) throws Exception {
+		final World world = new World(size);
+		Thread[] threads = new Thread[size];
+		for (int r = 0; r < size; ++r) {
+			final LocalCommunicator comm = new LocalCommunicator(world, r);
+			threads[r] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					world.owners[comm.rank] = Thread.currentThread();
+					try {
+						task.run(comm);
+					} catch (Throwable e) {
+						if (world.failure == null) {
+							world.failure = e;
+						}
+						for (Thread owner: world.owners) {
+							LockSupport.unpark(owner);
+						}
+					}
+				}
+			}, "rank-" + r);
+		}
+		for (Thread thread: threads) {
+			thread.start();
+		}
+		for (Thread thread: threads) {
+			thread.join();
+		}
+		if (world.failure instanceof Exception) {
+			throw (Exception) world.failure;
+		} else if (world.failure != null) {
+			throw new RuntimeException(world.failure);
+		}
+	}
+
+	@Override
+	public int rank() {
+		return rank;
+	}
+
+	@Override
+	public int size() {
+		return world.mailboxes.size();
+	}
+
+	@Override
+	public void send(Object buffer, int offset, int count, int dest, int tag) {
+		Message message = new Message();
+		message.source = rank;
+		message.tag = tag;
+		message.data = copy(buffer, offset, count);
+		world.mailboxes.get(dest).offer(message);
+		LockSupport.unpark(world.owners[dest]);
+	}
+
+	@Override
+	public int recv(Object buffer, int offset, int count, int source, int tag) {
+		ConcurrentLinkedQueue<Message> mailbox = world.mailboxes.get(rank);
+		while (true) {
+			Iterator<Message> it = mailbox.iterator();
+			while (it.hasNext()) {
+				Message message = it.next();
+				if (message.tag == tag && (source == ANY_SOURCE || message.source == source)) {
+					it.remove();
+					deliver(message.data, buffer, offset, count);
+					return message.source;
+				}
+			}
+			if (world.failure != null) {
+				throw new IllegalStateException("Another rank failed", world.failure);
+			}
+			LockSupport.parkNanos(this, PARK_NANOS);
+		}
+	}
+
+	@Override
+	public int probe(int source, int tag) {
+		ConcurrentLinkedQueue<Message> mailbox = world.mailboxes.get(rank);
+		while (true) {
+			for (Message message: mailbox) {
+				if (message.tag == tag && (source == ANY_SOURCE || message.source == source)) {
+					return message.source;
+				}
+			}
+			if (world.failure != null) {
+				throw new IllegalStateException("Another rank failed", world.failure);
+			}
+			LockSupport.parkNanos(this, PARK_NANOS);
+		}
+	}
+
+	@Override
+	public Request isend(Object buffer, int offset, int count, int dest, int tag) {
+		send(buffer, offset, count, dest, tag);
+		return completed;
+	}
+
+	@Override
+	public void bcast(Object buffer, int offset, int count, int root) {
+		if (rank == root) {
+			for (int r = 0; r < size(); ++r) {
+				if (r != root) {
+					send(buffer, offset, count, r, BCAST_TAG);
+				}
+			}
+		} else {
+			recv(buffer, offset, count, root, BCAST_TAG);
+		}
+	}
+
+	@Override
+	public void reduce(Object sendBuffer, Object recvBuffer, int count, int op, int root) {
+		if (rank != root) {
+			send(sendBuffer, 0, count, root, REDUCE_TAG);
+			return;
+		}
+		System.arraycopy(sendBuffer, 0, recvBuffer, 0, count);
+		Object received = Array.newInstance(sendBuffer.getClass().getComponentType(), count);
+		// combine in rank order, so the result does not depend on timing
+		for (int r = 0; r < size(); ++r) {
+			if (r == root) {
+				continue;
+			}
+			recv(received, 0, count, r, REDUCE_TAG);
+			for (int i = 0; i < count; ++i) {
+				if (recvBuffer instanceof double[]) {
+					double[] to = (double[]) recvBuffer;
+					double value = ((double[]) received)[i];
+					to[i] = op == SUM ? to[i] + value : op == MAX ? Math.max(to[i], value) : Math.min(to[i], value);
+				} else if (recvBuffer instanceof long[]) {
+					long[] to = (long[]) recvBuffer;
+					long value = ((long[]) received)[i];
+					to[i] = op == SUM ? to[i] + value : op == MAX ? Math.max(to[i], value) : Math.min(to[i], value);
+				} else {
+					int[] to = (int[]) recvBuffer;
+					int value = ((int[]) received)[i];
+					to[i] = op == SUM ? to[i] + value : op == MAX ? Math.max(to[i], value) : Math.min(to[i], value);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void barrier() {
+		int[] token = new int[1];
+		if (rank == 0) {
+			for (int r = 1; r < size(); ++r) {
+				recv(token, 0, 1, r, BARRIER_TAG);
+			}
+			for (int r = 1; r < size(); ++r) {
+				send(token, 0, 1, r, BARRIER_TAG);
+			}
+		} else {
+			send(token, 0, 1, 0, BARRIER_TAG);
+			recv(token, 0, 1, 0, BARRIER_TAG);
+		}
+	}
+
+	@Override
+	public double wtime() {
+		return System.nanoTime() / 1e9;
+	}
+
+	/**
+	 * @return copy of the elements, an array of the same class or serialized objects
+	 */
+	private static Object copy(Object buffer, int offset, int count) {
+		if (!(buffer instanceof Object[])) {
+			Object data = Array.newInstance(buffer.getClass().getComponentType(), count);
+			System.arraycopy(buffer, offset, data, 0, count);
+			return data;
+		}
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			for (int i = 0; i < count; ++i) {
+				out.writeObject(((Object[]) buffer)[offset + i]);
+			}
+			out.close();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Fail to serialize message", e);
+		}
+	}
+
+	private static void deliver(Object data, Object buffer, int offset, int count) {
+		if (!(buffer instanceof Object[])) {
+			System.arraycopy(data, 0, buffer, offset, Math.min(count, Array.getLength(data)));
+			return;
+		}
+		try {
+			ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream((byte[]) data));
+			for (int i = 0; i < count; ++i) {
+				((Object[]) buffer)[offset + i] = in.readObject();
+			}
+			in.close();
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Fail to deserialize message", e);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalArgumentException("Fail to deserialize message", e);
+		}
+	}
+}
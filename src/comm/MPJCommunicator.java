@@ -0,0 +1,88 @@
+package comm;
+
+import mpi.Datatype;
+import mpi.MPI;
+import mpi.MPIException;
+import mpi.Op;
+
+/**
+ * Communicator of MPJ Express, on MPI.COMM_WORLD
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class MPJCommunicator implements Communicator {
+
+	@Override
+	public int rank() throws MPIException {
+		return MPI.COMM_WORLD.Rank();
+	}
+
+	@Override
+	public int size() throws MPIException {
+		return MPI.COMM_WORLD.Size();
+	}
+
+	@Override
+	public void send(Object buffer, int offset, int count, int dest, int tag) throws MPIException {
+		MPI.COMM_WORLD.Send(buffer, offset, count, getType(buffer), dest, tag);
+	}
+
+	@Override
+	public int recv(Object buffer, int offset, int count, int source, int tag) throws MPIException {
+		return MPI.COMM_WORLD.Recv(buffer, offset, count, getType(buffer),
+				source == ANY_SOURCE ? MPI.ANY_SOURCE : source, tag).source;
+	}
+
+	@Override
+	public int probe(int source, int tag) throws MPIException {
+		return MPI.COMM_WORLD.Probe(source == ANY_SOURCE ? MPI.ANY_SOURCE : source, tag).source;
+	}
+
+	@Override
+	public Request isend(Object buffer, int offset, int count, int dest, int tag) throws MPIException {
+		final mpi.Request request = MPI.COMM_WORLD.Isend(buffer, offset, count, getType(buffer), dest, tag);
+		return new Request() {
+			@Override
+			public void waitFor() {
+				request.Wait();
+			}
+		};
+	}
+
+	@Override
+	public void bcast(Object buffer, int offset, int count, int root) throws MPIException {
+		MPI.COMM_WORLD.Bcast(buffer, offset, count, getType(buffer), root);
+	}
+
+	@Override
+	public void reduce(Object sendBuffer, Object recvBuffer, int count, int op, int root) throws MPIException {
+		Op mpiOp = op == SUM ? MPI.SUM : op == MAX ? MPI.MAX : MPI.MIN;
+		MPI.COMM_WORLD.Reduce(sendBuffer, 0, recvBuffer, 0, count, getType(sendBuffer), mpiOp, root);
+	}
+
+	@Override
+	public void barrier() throws MPIException {
+		MPI.COMM_WORLD.Barrier();
+	}
+
+	@Override
+	public double wtime() {
+		return MPI.Wtime();
+	}
+
+	private static Datatype getType(Object buffer) {
+		if (buffer instanceof int[]) {
+			return MPI.INT;
+		} else if (buffer instanceof double[]) {
+			return MPI.DOUBLE;
+		} else if (buffer instanceof long[]) {
+			return MPI.LONG;
+		} else if (buffer instanceof boolean[]) {
+			return MPI.BOOLEAN;
+		} else if (buffer instanceof byte[]) {
+			return MPI.BYTE;
+		}
+		return MPI.OBJECT;
+	}
+}
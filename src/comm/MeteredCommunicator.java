@@ -0,0 +1,157 @@
+package comm;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+import util.Metrics;
+
+/**
+ * Communicator that records the time of the calls of another one in the
+ * metrics of the rank, and the bytes it sends:
+ * 		send: sends, isends and their waitFor, the root of bcast, non-roots of reduce
+ * 		wait: blocked until a received message is there, and barriers
+ * 		recv: receiving the message once it is there, non-roots of bcast, the root of reduce
+ * Bytes of objects are their serialized size, which costs a second serialization
+ * of each object message, so this is only used when metrics are enabled.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class MeteredCommunicator implements Communicator {
+	private Communicator comm;
+	private Metrics metrics;
+
+	public MeteredCommunicator(Communicator comm, Metrics metrics) {
+		this.comm = comm;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public int rank() {
+		return comm.rank();
+	}
+
+	@Override
+	public int size() {
+		return comm.size();
+	}
+
+	@Override
+	public void send(Object buffer, int offset, int count, int dest, int tag) {
+		long begin = metrics.begin();
+		comm.send(buffer, offset, count, dest, tag);
+		metrics.end(Metrics.SEND, begin);
+		metrics.addBytes(getBytes(buffer, offset, count));
+	}
+
+	@Override
+	public int recv(Object buffer, int offset, int count, int source, int tag) {
+		long begin = metrics.begin();
+		source = comm.probe(source, tag);
+		metrics.end(Metrics.WAIT, begin);
+		begin = metrics.begin();
+		int from = comm.recv(buffer, offset, count, source, tag);
+		metrics.end(Metrics.RECV, begin);
+		return from;
+	}
+
+	@Override
+	public int probe(int source, int tag) {
+		long begin = metrics.begin();
+		int from = comm.probe(source, tag);
+		metrics.end(Metrics.WAIT, begin);
+		return from;
+	}
+
+	@Override
+	public Request isend(Object buffer, int offset, int count, int dest, int tag) {
+		long begin = metrics.begin();
+		final Request request = comm.isend(buffer, offset, count, dest, tag);
+		metrics.end(Metrics.SEND, begin);
+		metrics.addBytes(getBytes(buffer, offset, count));
+		return new Request() {
+			@Override
+			public void waitFor() {
+				long begin = metrics.begin();
+				request.waitFor();
+				metrics.end(Metrics.SEND, begin);
+			}
+		};
+	}
+
+	@Override
+	public void bcast(Object buffer, int offset, int count, int root) {
+		long begin = metrics.begin();
+		comm.bcast(buffer, offset, count, root);
+		if (rank() == root) {
+			metrics.end(Metrics.SEND, begin);
+			metrics.addBytes(getBytes(buffer, offset, count) * (size() - 1));
+		} else {
+			metrics.end(Metrics.RECV, begin);
+		}
+	}
+
+	@Override
+	public void reduce(Object sendBuffer, Object recvBuffer, int count, int op, int root) {
+		long begin = metrics.begin();
+		comm.reduce(sendBuffer, recvBuffer, count, op, root);
+		if (rank() == root) {
+			metrics.end(Metrics.RECV, begin);
+		} else {
+			metrics.end(Metrics.SEND, begin);
+			metrics.addBytes(getBytes(sendBuffer, 0, count));
+		}
+	}
+
+	@Override
+	public void barrier() {
+		long begin = metrics.begin();
+		comm.barrier();
+		metrics.end(Metrics.WAIT, begin);
+	}
+
+	@Override
+	public double wtime() {
+		return comm.wtime();
+	}
+
+	/**
+	 * @return size of the elements, serialized for objects
+	 */
+	private static long getBytes(Object buffer, int offset, int count) {
+		if (buffer instanceof double[] || buffer instanceof long[]) {
+			return 8L * count;
+		} else if (buffer instanceof int[]) {
+			return 4L * count;
+		} else if (buffer instanceof boolean[] || buffer instanceof byte[]) {
+			return count;
+		}
+		CountingOutputStream counter = new CountingOutputStream();
+		try {
+			ObjectOutputStream out = new ObjectOutputStream(counter);
+			for (int i = 0; i < count; ++i) {
+				out.writeObject(((Object[]) buffer)[offset + i]);
+			}
+			out.close();
+		} catch (IOException e) {
+			System.out.println("Fail to measure message size");
+			e.printStackTrace();
+		}
+		return counter.count;
+	}
+
+	private static class CountingOutputStream extends OutputStream {
+		long count;
+
+		@Override
+		public void write(int b) {
+			++count;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package comm;
+
+/**
+ * Handle of a non-blocking send
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public interface Request {
+	/**
+	 * Block until the send buffer can be reused
+	 */
+	void waitFor();
+}
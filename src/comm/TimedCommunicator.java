@@ -0,0 +1,126 @@
+package comm;
+
+/**
+ * Communicator that adds up the time spent in the calls of another one, waiting
+ * for messages included, so a rank can tell its communication time from its
+ * computing time. Requests returned by isend count the time of their waitFor.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class TimedCommunicator implements Communicator {
+	private Communicator comm;
+	// nanoseconds spent in calls of comm
+	private long nanos;
+
+	public TimedCommunicator(Communicator comm) {
+		this.comm = comm;
+	}
+
+	/**
+	 * @return seconds spent in communication since the last reset
+	 */
+	public double getSeconds() {
+		return nanos / 1e9;
+	}
+
+	public void reset() {
+		nanos = 0;
+	}
+
+	@Override
+	public int rank() {
+		return comm.rank();
+	}
+
+	@Override
+	public int size() {
+		return comm.size();
+	}
+
+	@Override
+	public void send(Object buffer, int offset, int count, int dest, int tag) {
+		long start = System.nanoTime();
+		try {
+			comm.send(buffer, offset, count, dest, tag);
+		} finally {
+			nanos += System.nanoTime() - start;
+		}
+	}
+
+	@Override
+	public int recv(Object buffer, int offset, int count, int source, int tag) {
+		long start = System.nanoTime();
+		try {
+			return comm.recv(buffer, offset, count, source, tag);
+		} finally {
+			nanos += System.nanoTime() - start;
+		}
+	}
+
+	@Override
+	public int probe(int source, int tag) {
+		long start = System.nanoTime();
+		try {
+			return comm.probe(source, tag);
+		} finally {
+			nanos += System.nanoTime() - start;
+		}
+	}
+
+	@Override
+	public Request isend(Object buffer, int offset, int count, int dest, int tag) {
+		long start = System.nanoTime();
+		try {
+			final Request request = comm.isend(buffer, offset, count, dest, tag);
+			return new Request() {
+				@Override
+				public void waitFor() {
+					long start = System.nanoTime();
+					try {
+						request.waitFor();
+					} finally {
+						nanos += System.nanoTime() - start;
+					}
+				}
+			};
+		} finally {
+			nanos += System.nanoTime() - start;
+		}
+	}
+
+	@Override
+	public void bcast(Object buffer, int offset, int count, int root) {
+		long start = System.nanoTime();
+		try {
+			comm.bcast(buffer, offset, count, root);
+		} finally {
+			nanos += System.nanoTime() - start;
+		}
+	}
+
+	@Override
+	public void reduce(Object sendBuffer, Object recvBuffer, int count, int op, int root) {
+		long start = System.nanoTime();
+		try {
+			comm.reduce(sendBuffer, recvBuffer, count, op, root);
+		} finally {
+			nanos += System.nanoTime() - start;
+		}
+	}
+
+	@Override
+	public void barrier() {
+		long start = System.nanoTime();
+		try {
+			comm.barrier();
+		} finally {
+			nanos += System.nanoTime() - start;
+		}
+	}
+
+	@Override
+	public double wtime() {
+		return comm.wtime();
+	}
+}
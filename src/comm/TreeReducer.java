@@ -0,0 +1,132 @@
+package comm;
+
+/**
+ * Element-wise sum of a double array over all ranks, in a logarithmic number
+ * of rounds instead of the master receiving from every slave in turn.
+ *
+ * 		binomial: rank r receives from its children r + 2^j (2^j below the lowest
+ * 		          set bit of r), in whatever order they finish, then sends the merged
+ * 		          partial to r - lowestBit(r). Only rank 0 gets the total.
+ * 		doubling: recursive doubling, in round j rank r exchanges its partial with
+ * 		          r ^ 2^j. Every rank gets the total. With a rank number that is not
+ * 		          a power of 2, the extra ranks first hand their partial to a partner
+ * 		          and get the total back from it at the end.
+ * Addition is commutative, so with recursive doubling both partners compute the
+ * same bits and all ranks end with exactly the same total.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class TreeReducer {
+	public static final String BINOMIAL = "binomial";
+	public static final String DOUBLING = "doubling";
+
+	private boolean doubling;
+	private Communicator comm;
+	private int rank;
+	private int size;
+	// message tag reserved for the reduction
+	private int tag;
+
+	public TreeReducer(Communicator comm, String topology, int tag) {
+		if (!BINOMIAL.equals(topology) && !DOUBLING.equals(topology)) {
+			throw new IllegalArgumentException("Unknown reduction " + topology);
+		}
+		this.doubling = DOUBLING.equals(topology);
+		this.comm = comm;
+		this.rank = comm.rank();
+		this.size = comm.size();
+		this.tag = tag;
+	}
+
+	/**
+	 * @return true if every rank gets the total, false if only rank 0 does
+	 */
+	public boolean isAllReduce() {
+		return doubling;
+	}
+
+	/**
+	 * @param partial this rank's partial, left unchanged
+	 * @return the total on rank 0 (on every rank with recursive doubling),
+	 * 			a partial total on the other ranks
+	 */
+	public double[] reduce(double[] partial) {
+		double[] sum = partial.clone();
+		double[] received = new double[sum.length];
+		if (doubling) {
+			reduceDoubling(sum, received);
+			return sum;
+		}
+		// children in arrival order: only children send on this tag to this rank
+		int childNum = getChildren(rank, size).length;
+		for (int i = 0; i < childNum; ++i) {
+			comm.recv(received, 0, received.length, Communicator.ANY_SOURCE, tag);
+			add(sum, received);
+		}
+		if (rank != 0) {
+			comm.send(sum, 0, sum.length, getParent(rank, size), tag);
+		}
+		return sum;
+	}
+
+	private void reduceDoubling(double[] sum, double[] received) {
+		int power = highestPowerOfTwo(size);
+		if (rank >= power) {  // extra rank: hand over the partial, get the total back
+			comm.send(sum, 0, sum.length, rank - power, tag);
+			comm.recv(sum, 0, sum.length, rank - power, tag);
+			return;
+		}
+		if (rank + power < size) {
+			comm.recv(received, 0, received.length, rank + power, tag);
+			add(sum, received);
+		}
+		for (int mask = 1; mask < power; mask <<= 1) {
+			int partner = rank ^ mask;
+			double[] sent = sum.clone();
+			Request request = comm.isend(sent, 0, sent.length, partner, tag);
+			comm.recv(received, 0, received.length, partner, tag);
+			request.waitFor();
+			add(sum, received);
+		}
+		if (rank + power < size) {
+			comm.send(sum, 0, sum.length, rank + power, tag);
+		}
+	}
+
+	private static void add(double[] sum, double[] other) {
+		for (int i = 0; i < sum.length; ++i) {
+			sum[i] += other[i];
+		}
+	}
+
+	/**
+	 * @return children of the rank in the binomial tree rooted at rank 0
+	 */
+	public static int[] getChildren(int rank, int size) {
+		int lowestBit = rank == 0 ? highestPowerOfTwo(size) << 1 : rank & -rank;
+		int childNum = 0;
+		for (int mask = 1; mask < lowestBit && rank + mask < size; mask <<= 1) {
+			++childNum;
+		}
+		int[] children = new int[childNum];
+		for (int i = 0; i < childNum; ++i) {
+			children[i] = rank + (1 << i);
+		}
+		return children;
+	}
+
+	/**
+	 * @return parent of the rank in the binomial tree rooted at rank 0, -1 for the root
+	 */
+	public static int getParent(int rank, int size) {
+		return rank == 0 ? -1 : rank - (rank & -rank);
+	}
+
+	/**
+	 * @return largest power of 2 not above n
+	 */
+	public static int highestPowerOfTwo(int n) {
+		return Integer.highestOneBit(n);
+	}
+}
@@ -0,0 +1,54 @@
+package dna;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+import point.CSVReader;
+import util.ChunkPrefetcher;
+
+/**
+ * Stream the DNAs of a file, one per line, chunk by chunk, prefetching the
+ * next chunk on a background thread.
+ * 
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class DNAChunkReader extends ChunkPrefetcher<DNAUnit[]> {
+	private int chunkSize;
+	private BufferedReader br;
+
+	public DNAChunkReader(String fileName, int chunkSize) throws IOException {
+		this.chunkSize = chunkSize;
+		this.br = new BufferedReader(new FileReader(fileName));
+		start();
+	}
+
+	@Override
+	protected DNAUnit[] readChunk() throws IOException {
+		DNAUnit[] chunk = new DNAUnit[chunkSize];
+		int size = 0;
+		String line;
+		while (size < chunkSize && (line = br.readLine()) != null) {
+			if (CSVReader.isBlank(line)) {
+				continue;
+			}
+			chunk[size++] = new DNAUnit(line);
+		}
+		if (size == 0) {
+			return null;
+		}
+		if (size < chunkSize) {  // last chunk
+			DNAUnit[] last = new DNAUnit[size];
+			System.arraycopy(chunk, 0, last, 0, size);
+			return last;
+		}
+		return chunk;
+	}
+
+	@Override
+	protected void closeFile() throws IOException {
+		br.close();
+	}
+}
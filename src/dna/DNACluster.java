@@ -2,15 +2,19 @@ package dna;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map.Entry;
 
 public class DNACluster implements Serializable {
 	private static final long serialVersionUID = -8138233508587401002L;
+	// bases counted in the profile, ties go to the first one
+	private static final String BASES = "ACGT";
 	private List<DNAUnit> DNALists;
 	private DNAUnit centroid;
 	private int length;
+	// weighted count of each base at each position
+	private int[][] profile;
+	// total weight of the DNAs counted in the profile
+	private int weight;
 
 	public DNACluster() {
 		DNALists = new ArrayList<DNAUnit>();
@@ -33,44 +37,100 @@ public class DNACluster implements Serializable {
 		return centroid;
 	}
 
+	/**
+	 * @return the consensus DNA, most frequent base at each position
+	 */
 	private DNAUnit getCenterIDFromList() {
-		String value = "";
-		String data = "";
+		char[] value = new char[this.length];
 		for (int i = 0; i < this.length; i++) {
-			HashMap<String, Integer> map = new HashMap<String, Integer>();
-			for (DNAUnit dnaUnit : DNALists) {
-				data = dnaUnit.getValue().charAt(i) + "";
-				if (map.containsKey(data)) {
-					map.put(data, map.get(data) + 1);
-				} else {
-					map.put(data, 0);
+			int max = -1;
+			for (int base = 0; base < BASES.length(); ++base) {
+				if (profile[i][base] > max) {
+					max = profile[i][base];
+					value[i] = BASES.charAt(base);
 				}
 			}
-			int max = Integer.MIN_VALUE;
-			for (Entry<String, Integer> entry : map.entrySet()) {
-				if (entry.getValue() > max) {
-					max = entry.getValue();
-					data = entry.getKey();
-				}
-			}
-			value = value + data;
 		}
-		return new DNAUnit(value);
+		return new DNAUnit(new String(value));
 	}
 
 	public void addDNA(DNAUnit dna) {
 		DNALists.add(dna);
+		countDNA(dna);
+	}
+
+	/**
+	 * count the DNA in the profile without keeping it in the cluster
+	 */
+	public void countDNA(DNAUnit dna) {
 		this.length = dna.getLength();
+		updateProfile(dna, dna.getWeight());
+		weight += dna.getWeight();
 	}
 
 	public void addAll(DNACluster cluster) {
 		for (DNAUnit dna : cluster.getDNAs()) {
 			DNALists.add(dna);
 		}
+		weight += cluster.weight;
+		if (cluster.profile != null) {
+			this.length = cluster.length;
+			ensureProfile();
+			for (int i = 0; i < length; ++i) {
+				for (int base = 0; base < BASES.length(); ++base) {
+					profile[i][base] += cluster.profile[i][base];
+				}
+			}
+		}
+	}
+
+	private void ensureProfile() {
+		if (profile == null) {
+			profile = new int[length][BASES.length()];
+		}
+	}
+
+	/**
+	 * add the weight of each base of the DNA to the profile
+	 */
+	private void updateProfile(DNAUnit dna, int weight) {
+		ensureProfile();
+		String value = dna.getValue();
+		int end = Math.min(length, value.length());
+		for (int i = 0; i < end; ++i) {
+			int base = BASES.indexOf(value.charAt(i));
+			if (base != -1) {
+				profile[i][base] += weight;
+			}
+		}
+	}
+
+	/**
+	 * @return Shannon entropy in bits of the bases at each position, from 0 when
+	 *         all DNAs agree to 2 when the 4 bases are equally frequent
+	 */
+	public double[] getEntropy() {
+		double[] entropy = new double[length];
+		for (int i = 0; i < length && weight > 0; i++) {
+			for (int base = 0; base < BASES.length(); ++base) {
+				if (profile[i][base] > 0) {
+					double p = (double) profile[i][base] / weight;
+					entropy[i] -= p * Math.log(p) / Math.log(2);
+				}
+			}
+		}
+		return entropy;
 	}
 
 	public boolean isEmpty() {
-		return DNALists.size() == 0;
+		return weight == 0;
+	}
+
+	/**
+	 * @return total weight of the DNAs in the cluster
+	 */
+	public int getWeight() {
+		return weight;
 	}
 
 	public Iterable<DNAUnit> getDNAs() {
@@ -78,7 +138,10 @@ public class DNACluster implements Serializable {
 	}
 
 	public void removeDNA(DNAUnit dna) {
-		DNALists.remove(dna);
+		if (DNALists.remove(dna)) {
+			updateProfile(dna, -dna.getWeight());
+			weight -= dna.getWeight();
+		}
 	}
 
 	public void printCluster(int rank) {
@@ -1,104 +1,65 @@
 package dna;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
 
+import generator.MutatedDNAGenerator;
+import util.Options;
+
+/**
+ * DNAs of numClusters random centers, numDNAs per center in contiguous runs,
+ * each with about 2.5 mutated bases as before. As before, every two centers
+ * differ in at least DNALength - 3 bases. The centers are printed.
+ *
+ * Generation itself is done by generator.MutatedDNAGenerator; see DataGenerator
+ * for the options, e.g. --seed, --threads, --labels or a --mutation-rate.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
 public class DNAGenerator {
 
 	int numClusters;
 	int numDNAs;
 	int DNALength;
 	String outputPath;
-	ArrayList<DNAUnit> centerIDs = new ArrayList<DNAUnit>();
-	ArrayList<DNAUnit> dnas = new ArrayList<DNAUnit>();
+	Options options;
 
 	public DNAGenerator(int numClusters, int numDNAs, int DNALength,
-			String outputPath) {
+			String outputPath, Options options) {
 		this.numClusters = numClusters;
 		this.numDNAs = numDNAs;
 		this.DNALength = DNALength;
 		this.outputPath = outputPath;
+		this.options = options;
 	}
 
 	public void start() {
-		generateCenterIDs();
-		printCenterIDs();
-		generateDNAStrides();
-		printAllDNA();
-		writeData();
-	}
-
-	private void printCenterIDs() {
-		for (DNAUnit dnaUnit : centerIDs) {
-			System.out.println(dnaUnit.getValue());
-		}
-	}
-
-	private void printAllDNA() {
-		for (DNAUnit dnaUnit : dnas) {
-			System.out.println(dnaUnit.getValue() + "---");
-		}
-	}
-
-	private void generateCenterIDs() {
-		for (int i = 0; i < numClusters; ++i) {
-			DNAUnit centerID = new DNAUnit(DNALength);
-			boolean flag = false;
-			while (!flag) {
-				centerID.generateValue();
-				if (centerIDs.size() == 0) {
-					flag = true;
-				}
-				for (DNAUnit dnaUnit : centerIDs) {
-					flag = true;
-					if (dnaUnit.getDistance(centerID) < DNALength - 3) {
-						System.out.println("distance:"
-								+ dnaUnit.getDistance(centerID));
-						System.out.println("DNALength: " + DNALength);
-						flag = false;
-						break;
-					}
-				}
-			}
-			centerIDs.add(centerID);
+		options.set("length", String.valueOf(DNALength));
+		options.set("grouped", "true");
+		if (!options.has("min-distance")) {
+			options.set("min-distance", String.valueOf(Math.max(0, DNALength - 3)));
 		}
-	}
-
-	private void generateDNAStrides() {
-		for (DNAUnit dnaUnit : centerIDs) {
-			dnas.add(dnaUnit);
-			for (int i = 0; i < numDNAs - 1; i++) {
-				DNAUnit dnaData = new DNAUnit(this.DNALength);
-				dnaData.generateValue(dnaUnit.getValue());
-				dnas.add(dnaData);
-			}
+		if (!options.has("mutation-rate")) {
+			options.set("mutation-rate", String.valueOf(2.5 / DNALength));
 		}
-	}
-
-	private void writeData() {
-		BufferedWriter bw = null;
-		FileWriter fw = null;
+		MutatedDNAGenerator generator = new MutatedDNAGenerator(
+				(long) numClusters * numDNAs, numClusters, options);
 		try {
-			fw = new FileWriter(outputPath);
-			bw = new BufferedWriter(fw);
-			for (DNAUnit dnaUnit : dnas) {
-				bw.write(dnaUnit.getValue());
-				bw.write("\n");
-			}
-			bw.close();
-			fw.close();
+			generator.generate(outputPath, options.get("labels", null));
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
+			System.out.println("Fail to write DNA file");
 			e.printStackTrace();
+			return;
+		}
+		for (int c = 0; c < numClusters; ++c) {
+			System.out.println(generator.getCenter(c));
 		}
 	}
 
 	public static void main(String args[]) {
-		if (args.length != 4) {
+		if (args.length < 4) {
 			System.out
-					.println("please input 4 arguments: NumberOfClusters NumberOfDNAsEachCluster LengthOfDNA outputPath");
+					.println("please input 4 arguments: NumberOfClusters NumberOfDNAsEachCluster LengthOfDNA outputPath [options]");
 			System.exit(-1);
 		}
 		int numClusters = Integer.parseInt(args[0]);
@@ -106,7 +67,7 @@ public class DNAGenerator {
 		int DNALength = Integer.parseInt(args[2]);
 		String outputPath = args[3];
 		DNAGenerator dnaGenerator = new DNAGenerator(numClusters, numDNAs,
-				DNALength, outputPath);
+				DNALength, outputPath, new Options(args, 4));
 		dnaGenerator.start();
 	}
 
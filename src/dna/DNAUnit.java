@@ -1,8 +1,6 @@
 package dna;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Random;
 
 public class DNAUnit implements Serializable {
 
@@ -13,6 +11,8 @@ public class DNAUnit implements Serializable {
 	private int DNALength;
 	private String value;
 	private int cluster;
+	// number of identical records this DNA stands for
+	private int weight = 1;
 
 	public DNAUnit() {
 		this.cluster = -1;
@@ -42,83 +42,6 @@ public class DNAUnit implements Serializable {
 		return diff;
 	}
 
-	public void generateValue() {
-		this.value = "";
-		Random rand = new Random();
-		int pos = 0;
-		String data = "";
-		for (int i = 0; i < this.DNALength; i++) {
-			pos = rand.nextInt(4);
-			switch (pos) {
-			case 0:
-				data = "A";
-				break;
-			case 1:
-				data = "C";
-				break;
-			case 2:
-				data = "G";
-				break;
-			case 3:
-				data = "T";
-				break;
-			default:
-				break;
-			}
-			value = value + data;
-		}
-	}
-
-	public void generateValue(String value) {
-		this.value = "";
-		Random rand = new Random();
-		int pos = 0;
-		String data = "";
-		ArrayList<Integer> posList = new ArrayList<Integer>();
-		int length = rand.nextInt(5);
-		while (length == 0)
-			length = rand.nextInt(5);
-		for (int i = 0; i < length; ++i) {
-			pos = rand.nextInt(this.DNALength + 1);
-			posList.add(pos);
-		}
-		for (int i = 0; i < this.DNALength; i++) {
-			data = value.charAt(i) + "";
-			if (posList.contains(i)) {
-				pos = rand.nextInt(4);
-				switch (pos) {
-				case 0:
-					if (data.equals("A"))
-						data = "C";
-					else
-						data = "A";
-					break;
-				case 1:
-					if (data.equals("C"))
-						data = "G";
-					else
-						data = "C";
-					break;
-				case 2:
-					if (data.equals("G"))
-						data = "T";
-					else
-						data = "G";
-					break;
-				case 3:
-					if (data.equals("T"))
-						data = "A";
-					else
-						data = "T";
-					break;
-				default:
-					break;
-				}
-			}
-			this.value = this.value + data;
-		}
-	}
-
 	public String getValue() {
 		return this.value;
 	}
@@ -139,4 +62,16 @@ public class DNAUnit implements Serializable {
 		this.cluster = cluster;
 	}
 
+	public int getWeight() {
+		return weight;
+	}
+
+	public void setWeight(int weight) {
+		this.weight = weight;
+	}
+
+	public void increaseWeight() {
+		++weight;
+	}
+
 }
@@ -0,0 +1,77 @@
+package dna;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import util.SharedDataset;
+
+/**
+ * Read-only list of the DNAs of a shared dataset. Records are weight and
+ * length (ints) followed by the bases, padded to the longest DNA; get() makes
+ * a new DNAUnit every time, so the cluster of a DNA has to be kept by the
+ * caller.
+ * 
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class MappedDNAList extends AbstractList<DNAUnit> implements RandomAccess {
+	private SharedDataset dataset;
+
+	public MappedDNAList(SharedDataset dataset) {
+		this.dataset = dataset;
+	}
+
+	/**
+	 * Records of the DNAs, to write a shared dataset
+	 */
+	public static SharedDataset.Records toRecords(final List<DNAUnit> dnas) {
+		int maxLength = 0;
+		for (DNAUnit dna : dnas) {
+			maxLength = Math.max(maxLength, dna.getValue().length());
+		}
+		final int recordSize = 8 + maxLength;
+		return new SharedDataset.Records() {
+			@Override
+			public int getRecordNum() {
+				return dnas.size();
+			}
+
+			@Override
+			public int getRecordSize() {
+				return recordSize;
+			}
+
+			@Override
+			public void put(int index, ByteBuffer buffer) {
+				DNAUnit dna = dnas.get(index);
+				String value = dna.getValue();
+				buffer.putInt(dna.getWeight()).putInt(value.length());
+				for (int i = 0; i < value.length(); ++i) {
+					buffer.put((byte) value.charAt(i));
+				}
+			}
+		};
+	}
+
+	@Override
+	public DNAUnit get(int index) {
+		ByteBuffer segment = dataset.getSegment(index);
+		int position = dataset.getPosition(index);
+		int weight = segment.getInt(position);
+		char[] value = new char[segment.getInt(position + 4)];
+		for (int i = 0; i < value.length; ++i) {
+			value[i] = (char) segment.get(position + 8 + i);
+		}
+		DNAUnit dna = new DNAUnit(new String(value));
+		dna.setWeight(weight);
+		return dna;
+	}
+
+	@Override
+	public int size() {
+		return dataset.getRecordNum();
+	}
+}
@@ -7,12 +7,28 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
+import comm.Communicator;
+import comm.LocalCommunicator;
+import comm.MPJCommunicator;
+import comm.MeteredCommunicator;
 import mpi.MPI;
+import util.Checkpointer;
+import util.ClusterEvaluation;
+import util.KMeansModel;
+import util.Metrics;
+import util.Options;
+import util.ShardedOutput;
+import util.SharedDataset;
 
 /**
  * Parallel version of K means on DNA.
@@ -25,6 +41,8 @@ public class ParallelKMeansOnDNA {
 
 	// all DNA data
 	private List<DNAUnit> allDNAData;
+	// cluster of each dna, kept here and not in the dnas so they can be shared
+	private int[] labels;
 	// total DNA Number
 	private int DNANum;
 	// cluster number
@@ -36,25 +54,161 @@ public class ParallelKMeansOnDNA {
 
 	private DNAUnit[] centroids;
 
+	private Communicator comm;
 	private int rank;
 	private int size;
 	private int offset;
 	private int len;
+	// optional periodic checkpoints: centroids by the master, labels by each
+	// slave
+	private Checkpointer checkpointer;
+	private boolean checkpointLabels;
+	// iteration of the checkpoint the run restarted from, 0 for a fresh run
+	private int startIter;
+	// master: iteration the run stopped at
+	private int iterationNum;
+	// per-iteration spans, bytes, moved dnas and inertia of this rank, and the
+	// CSV file rank 0 writes them to (null to only print the totals)
+	private Metrics metrics;
+	private String metricsFileName;
+	// sharded output: each slave writes the labels of its range and the clusters
+	// only count their dnas in the profiles, binary or text; null to gather the dnas
+	private String shardFormat;
+	// master, sharded output: first and end dna of each slave, total distance of
+	// each cluster to its centroid
+	private int[] shardRanges;
+	private double[] clusterDistance;
+	// summary mode: count, consensus, distances and entropy of each cluster,
+	// computed where the dnas are and written to this file, "" for the output
+	// file itself, which then has no listing of the dnas; null when off
+	private String summaryFileName;
+	// master, summary mode: consensus of each cluster, total and largest
+	// distance of its dnas to it
+	private DNAUnit[] consensus;
+	private double[] consensusDistance;
+	private double[] clusterRadius;
+	// evaluation: SSE, Davies-Bouldin index and sampled silhouette of the
+	// result, measured where the dnas are, the confidence level of the
+	// silhouette and an optional CSV file of the results; 0 samples when off
+	private int evaluateSamples;
+	private double evaluateLevel;
+	private String evaluationFileName;
 
 	public ParallelKMeansOnDNA(String fileName, int k, int maxIter) {
-		this.rank = MPI.COMM_WORLD.Rank();
-		this.size = MPI.COMM_WORLD.Size();
+		this(new MPJCommunicator(), fileName, k, maxIter, new Options());
+	}
+
+	public ParallelKMeansOnDNA(Communicator comm, String fileName, int k,
+			int maxIter, Options options) {
+		this.rank = comm.rank();
+		this.size = comm.size();
+		this.metrics = new Metrics(options.has("metrics"), rank);
+		this.comm = metrics.isEnabled() ? new MeteredCommunicator(comm,
+				metrics) : comm;
+		if (!options.get("metrics", "true").equals("true")) {
+			this.metricsFileName = options.get("metrics", null);
+		}
 		this.k = k;
 		this.maxIter = maxIter;
-		this.allDNAData = new ArrayList<DNAUnit>();
-		loadData(fileName);
+		if (options.has("shards")) {
+			// a label per weighted dna is not one per record
+			if (options.has("dedup")) {
+				throw new IllegalArgumentException(
+						"--shards does not support --dedup");
+			}
+			this.shardFormat = ShardedOutput.getFormat(options.get("shards",
+					null));
+		}
+		if (options.has("summary")) {
+			String summary = options.get("summary", null);
+			this.summaryFileName = summary.equals("true") ? "" : summary;
+		}
+		if (options.has("evaluate")) {
+			String samples = options.get("evaluate", null);
+			this.evaluateSamples = samples.equals("true") ? 1000 : Integer
+					.parseInt(samples);
+			this.evaluateLevel = options.getDouble("confidence", 0.95);
+			this.evaluationFileName = options.get("evaluate-out", null);
+		}
+		if (options.has("shared-dataset")) {
+			loadSharedData(fileName, options.get("shared-dataset", null),
+					options.has("dedup"), options.has("shared-dataset-cleanup"));
+		} else {
+			this.allDNAData = new ArrayList<DNAUnit>();
+			loadData(fileName, options.has("dedup"));
+		}
 		this.DNANum = allDNAData.size();
+		this.labels = new int[DNANum];
+		Arrays.fill(labels, -1);
 		this.centroids = new DNAUnit[k];
 		this.len = DNANum / (size - 1);
 		this.offset = len * (rank - 1);
 		if (rank == 0) { // master initialize centroid dna
-			initializeCluster();
+			if (options.has("init-model")) {
+				initializeClusterFromModel(options.get("init-model", null));
+			} else {
+				initializeCluster();
+			}
+		}
+		if (options.has("checkpoint-dir")) {
+			checkpointLabels = options.has("checkpoint-labels");
+			checkpointer = new Checkpointer(options.get("checkpoint-dir", null),
+					options.getInt("checkpoint-every", 10), checkpointLabels ? size - 1 : 0);
+			if (options.has("restart")) {
+				restart();
+			}
+		}
+	}
+
+	/**
+	 * Resume from the latest consistent checkpoint: the master takes its
+	 * centroids, each slave the labels of its dnas if they were saved
+	 */
+	private void restart() {
+		int[] latest = new int[1];
+		if (rank == 0) {
+			latest[0] = checkpointer.findLatest();
+			if (latest[0] > 0) {
+				try {
+					String[] modelCentroids = checkpointer.loadModel(latest[0])
+							.getDNACentroids();
+					for (int i = 0; i < k; ++i) {
+						centroids[i] = new DNAUnit(modelCentroids[i]);
+					}
+					System.out.println("Restart from iteration " + latest[0]);
+				} catch (IOException e) {
+					System.out.println("Fail to load checkpoint, start from scratch");
+					e.printStackTrace();
+					latest[0] = 0;
+				}
+			}
+		}
+		comm.bcast(latest, 0, 1, 0);
+		startIter = latest[0];
+		if (rank == 0 || startIter == 0 || !checkpointLabels) {
+			return;
+		}
+		int[] savedLabels;
+		try {
+			savedLabels = checkpointer.loadLabels(startIter, rank);
+		} catch (IOException e) {
+			System.out.println("Fail to load checkpoint labels");
+			e.printStackTrace();
+			return;
+		}
+		// saved with another rank number
+		if (savedLabels.length != getRangeEnd() - offset) {
+			return;
 		}
+		System.arraycopy(savedLabels, 0, labels, offset, savedLabels.length);
+	}
+
+	/**
+	 * @return end of the range of dnas the slave node should process
+	 */
+	private int getRangeEnd() {
+		// last processor may have more dnas to compute
+		return rank == size - 1 ? DNANum : offset + len;
 	}
 
 	/**
@@ -62,17 +216,32 @@ public class ParallelKMeansOnDNA {
 	 * 
 	 * @param fileName
 	 *            name of the CSV file to load
+	 * @param dedup
+	 *            true to load identical records as one weighted DNA
 	 */
-	private void loadData(String fileName) {
+	private void loadData(String fileName, boolean dedup) {
 		System.out.println("load data");
 		FileReader fw;
 		try {
 			fw = new FileReader(fileName);
 			BufferedReader bw = new BufferedReader(fw);
 			String line = "";
+			// collapse identical records into one weighted DNA
+			Map<String, DNAUnit> uniqueDNAs = dedup ? new HashMap<String, DNAUnit>()
+					: null;
 			while ((line = bw.readLine()) != null) {
+				if (dedup) {
+					DNAUnit same = uniqueDNAs.get(line);
+					if (same != null) {
+						same.increaseWeight();
+						continue;
+					}
+				}
 				DNAUnit dnaUnit = new DNAUnit(line);
 				allDNAData.add(dnaUnit);
+				if (dedup) {
+					uniqueDNAs.put(line, dnaUnit);
+				}
 			}
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
@@ -81,6 +250,52 @@ public class ParallelKMeansOnDNA {
 		}
 	}
 
+	/**
+	 * Map the dnas from a file shared by the ranks of the node. The first rank
+	 * there loads the input file and writes the shared file, the others only
+	 * map it.
+	 * 
+	 * @param fileName
+	 *            name of the file to load
+	 * @param dirName
+	 *            directory of the shared file, /dev/shm if not given
+	 * @param dedup
+	 *            true to load identical records as one weighted DNA
+	 * @param cleanup
+	 *            true to remove the shared file once every rank has mapped it
+	 */
+	private void loadSharedData(final String fileName, String dirName,
+			final boolean dedup, boolean cleanup) {
+		if (dirName == null || dirName.equals("true")) {
+			dirName = SharedDataset.DEFAULT_DIR;
+		}
+		SharedDataset dataset = null;
+		try {
+			dataset = SharedDataset.open(fileName, dirName,
+					dedup ? "dnas-dedup" : "dnas",
+					new Callable<SharedDataset.Records>() {
+						@Override
+						public SharedDataset.Records call() {
+							allDNAData = new ArrayList<DNAUnit>();
+							loadData(fileName, dedup);
+							return MappedDNAList.toRecords(allDNAData);
+						}
+					});
+			allDNAData = new MappedDNAList(dataset);
+		} catch (IOException e) {
+			System.out.println("Fail to share dataset, load it in this rank");
+			e.printStackTrace();
+			allDNAData = new ArrayList<DNAUnit>();
+			loadData(fileName, dedup);
+		}
+		if (cleanup) {
+			comm.barrier();
+			if (dataset != null) {
+				dataset.remove();
+			}
+		}
+	}
+
 	/**
 	 * Randomly choose k dnas to be the centroid dnas
 	 */
@@ -100,33 +315,66 @@ public class ParallelKMeansOnDNA {
 		}
 	}
 
+	/**
+	 * Warm start: the centroid dnas are those of the model of an earlier run
+	 * 
+	 * @param modelFileName
+	 *            name of the model file
+	 */
+	private void initializeClusterFromModel(String modelFileName) {
+		KMeansModel model;
+		try {
+			model = KMeansModel.read(modelFileName);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Fail to read model "
+					+ modelFileName, e);
+		}
+		if (model.getType() != KMeansModel.DNA || model.getK() != k) {
+			throw new IllegalArgumentException(modelFileName
+					+ " is not a model of " + k + " dna clusters");
+		}
+		String[] modelCentroids = model.getDNACentroids();
+		for (int i = 0; i < k; ++i) {
+			centroids[i] = new DNAUnit(modelCentroids[i]);
+		}
+	}
+
 	/**
 	 * Do Clustering all all DNA data using K Means algorithm Stop conditions:
 	 * 1. reach max iterations 2. no change between 2 iterations
 	 */
 	public void doClustering() {
 		if (rank == 0) { // master do not compute
-			for (int iter = 1; iter < maxIter; ++iter) {
+			for (int iter = startIter + 1;; ++iter) {
 				// tell slaves the new centroid dnas
 				broadcastNewCentroids();
 
-				// ask each slaves to know if the algorithm can stop
-				boolean stop = canStop();
-				if (stop) { // done!
-					return;
-				}
+				// ask each slaves to know if the algorithm can stop,
+				// converge or reach maximum iterations
+				boolean stop = canStop() || iter >= maxIter;
+				tellStop(stop);
 
 				// aggregate all clusters info from slaves
 				aggregateClustersInfo();
+				if (stop && shardFormat != null) {
+					aggregateSummaries();
+				}
+				if (stop) { // done!
+					iterationNum = iter;
+					metrics.finishIteration(iter);
+					break;
+				}
 
 				// now can easily recalculate centroids by infomation fetched
 				// from slaves
 				updateCentroid();
+				if (checkpointer != null && checkpointer.isDue(iter)) {
+					checkpointer.saveModel(iter, getCentroidModel());
+				}
+				metrics.finishIteration(iter);
 			}
-			// reach maximum iterations, stop the algorithm!
-			tellStop(true);
 		} else { // slaves
-			int iter = 1;
+			int iter = startIter + 1;
 			while (true) {
 				System.out.println("Rank " + rank + " Iteration " + iter
 						+ "...");
@@ -142,31 +390,77 @@ public class ParallelKMeansOnDNA {
 				changed[0] = computing(tmpClusters);
 
 				// tell master if there is change between 2 iterations
-				MPI.COMM_WORLD.Send(changed, 0, 1, MPI.BOOLEAN, 0, 2);
+				comm.send(changed, 0, 1, 0, 2);
 
 				// receive from master if slave should stop computing
 				boolean[] stop = new boolean[1];
-				MPI.COMM_WORLD.Recv(stop, 0, 1, MPI.BOOLEAN, 0, 3);
+				comm.recv(stop, 0, 1, 0, 3);
 				// System.out.println("rank " + rank +
 				// " received stop info from master " + stop[0]);
+
+				// tell master its clusters infomation, the final result if done
+				comm.send(tmpClusters, 0, k, 0, 4);
+				// System.out.println("rank " + rank +
+				// " sending cluster info to master");
+				if (stop[0] && shardFormat != null) {
+					sendSummary();
+				}
 				if (stop[0]) { // done!
 					System.out.println("rank " + rank + " finish computing!");
+					metrics.finishIteration(iter);
 					break;
 				}
-
-				// if not done, tell master its clusters infomation
-				MPI.COMM_WORLD.Send(tmpClusters, 0, k, MPI.OBJECT, 0, 4);
-				// System.out.println("rank " + rank +
-				// " sending cluster info to master");
+				if (checkpointLabels && checkpointer.isDue(iter)) {
+					checkpointer.saveLabels(iter, rank, getLabels());
+				}
+				metrics.finishIteration(iter);
 				++iter;
 			}
 		}
+		if (summaryFileName != null) {
+			summarize();
+		}
+		if (evaluateSamples > 0) {
+			evaluate();
+		}
+		if (checkpointer != null) {
+			checkpointer.close();
+		}
+		metrics.collect(comm, 14);
+		if (rank == 0) {
+			metrics.printSummary();
+			if (metricsFileName != null) {
+				metrics.writeCsv(metricsFileName);
+			}
+		}
+	}
+
+	/**
+	 * Called by master
+	 * 
+	 * @return current centroids, counts and inertia are unknown in the middle
+	 *         of a run
+	 */
+	private KMeansModel getCentroidModel() {
+		String[] modelCentroids = new String[k];
+		for (int i = 0; i < k; ++i) {
+			modelCentroids[i] = centroids[i].getValue();
+		}
+		return new KMeansModel(modelCentroids, new long[k], Double.NaN);
+	}
+
+	/**
+	 * Called by slaves
+	 * 
+	 * @return cluster index of each dna in this slave's range
+	 */
+	private int[] getLabels() {
+		return Arrays.copyOfRange(labels, offset, getRangeEnd());
 	}
 
 	/**
 	 * Called by master. If all slaves' dnas do not change cluster during two
-	 * consecutive iterations, the algorithm can stop. The master also tell all
-	 * slaves the stop information
+	 * consecutive iterations, the algorithm can stop.
 	 * 
 	 * @return true if the algorithm can stop, false otherwise.
 	 */
@@ -179,12 +473,11 @@ public class ParallelKMeansOnDNA {
 			// MPI.COMM_WORLD.Send
 			boolean[] slaveChanged = new boolean[1];
 			slaveChanged[0] = false;
-			MPI.COMM_WORLD.Recv(slaveChanged, 0, 1, MPI.BOOLEAN, slaveRank, 2);
+			comm.recv(slaveChanged, 0, 1, slaveRank, 2);
 			changed |= slaveChanged[0];
 			// System.out.println("Receive from rank " + rank +
 			// " of changed info: " + slaveChanged[0]);
 		}
-		tellStop(!changed);
 		return !changed;
 	}
 
@@ -199,7 +492,7 @@ public class ParallelKMeansOnDNA {
 		boolean[] stop = new boolean[1];
 		stop[0] = stopFlag;
 		for (int slaveRank = 1; slaveRank < size; ++slaveRank) {
-			MPI.COMM_WORLD.Send(stop, 0, 1, MPI.BOOLEAN, slaveRank, 3);
+			comm.send(stop, 0, 1, slaveRank, 3);
 		}
 	}
 
@@ -210,7 +503,7 @@ public class ParallelKMeansOnDNA {
 		for (int slaveRank = 1; slaveRank < size; ++slaveRank) {
 			// System.out.println("sending to rank " + slaveRank +
 			// " new centoird dna");
-			MPI.COMM_WORLD.Send(centroids, 0, k, MPI.OBJECT, slaveRank, 1);
+			comm.send(centroids, 0, k, slaveRank, 1);
 		}
 	}
 
@@ -218,7 +511,7 @@ public class ParallelKMeansOnDNA {
 	 * Called by slaves to receive new centroids from master
 	 */
 	private void receiveNewCentroids() {
-		MPI.COMM_WORLD.Recv(centroids, 0, k, MPI.OBJECT, 0, 1);
+		comm.recv(centroids, 0, k, 0, 1);
 		for (int i = 0; i < k; ++i) {
 			System.out.println("rank " + rank + " receive centroid dna " + i
 					+ ": " + centroids[i]);
@@ -233,31 +526,61 @@ public class ParallelKMeansOnDNA {
 	 * @return
 	 */
 	private boolean computing(DNACluster[] tmpClusters) {
-		boolean changed = false;
-		int start = offset, end;
-		if (rank == size - 1) { // last processor may have more dnas to
-								// compute
-			end = DNANum;
-		} else {
-			end = offset + len;
+		int start = offset, end = getRangeEnd();
+		int moved = 0;
+		if (!metrics.isEnabled()) {
+			// one pass, each dna is fetched once
+			for (int index = start; index < end; ++index) {
+				DNAUnit dna = allDNAData.get(index);
+				int clusterIndex = findNearestCentroid(dna);
+				int originalClusterIndex = labels[index];
+				// first iteration or change to another cluster
+				if (originalClusterIndex == -1
+						|| clusterIndex != originalClusterIndex) {
+					++moved;
+				}
+				labels[index] = clusterIndex;
+				accumulate(tmpClusters, dna, clusterIndex);
+			}
+			return moved > 0;
 		}
+		// assign all dnas first, then add them up, so the two can be timed
+		// apart
+		long begin = metrics.begin();
 		for (int index = start; index < end; ++index) {
-			DNAUnit dna = allDNAData.get(index);
-			int clusterIndex = findNearestCentroid(dna);
-			DNACluster pc = tmpClusters[clusterIndex];
-			int originalClusterIndex = dna.getCluster();
+			int clusterIndex = findNearestCentroid(allDNAData.get(index));
+			int originalClusterIndex = labels[index];
 			// first iteration or change to another cluster
 			if (originalClusterIndex == -1
 					|| clusterIndex != originalClusterIndex) {
-				changed = true;
-				// pc.printCluster(rank);
+				++moved;
 			}
-			pc.addDNA(dna);
-			dna.setCluster(clusterIndex);
-			// System.out.println("rank " + rank + " " + dna + " to cluster "
-			// + clusterIndex);
+			labels[index] = clusterIndex;
+		}
+		metrics.end(Metrics.ASSIGN, begin);
+		begin = metrics.begin();
+		for (int index = start; index < end; ++index) {
+			DNAUnit dna = allDNAData.get(index);
+			accumulate(tmpClusters, dna, labels[index]);
+			metrics.addInertia(dna.getWeight()
+					* dna.getDistance(centroids[labels[index]]));
+		}
+		metrics.end(Metrics.ACCUMULATE, begin);
+		metrics.addMoved(moved);
+		return moved > 0;
+	}
+
+	/**
+	 * Add a dna to its cluster, only to its profile if the dnas are not
+	 * gathered
+	 */
+	private void accumulate(DNACluster[] tmpClusters, DNAUnit dna,
+			int clusterIndex) {
+		if (!isGathering()) {
+			tmpClusters[clusterIndex].countDNA(dna);
+		} else {
+			tmpClusters[clusterIndex].addDNA(dna);
 		}
-		return changed;
 	}
 
 	/**
@@ -273,7 +596,7 @@ public class ParallelKMeansOnDNA {
 		}
 		for (int slaveRank = 1; slaveRank < size; ++slaveRank) {
 			DNACluster[] tmpClusters = new DNACluster[k];
-			MPI.COMM_WORLD.Recv(tmpClusters, 0, k, MPI.OBJECT, slaveRank, 4);
+			comm.recv(tmpClusters, 0, k, slaveRank, 4);
 			// System.out.println("Reveive clusters info from slave rank " +
 			// slaveRank);
 			for (int i = 0; i < k; ++i) {
@@ -282,6 +605,145 @@ public class ParallelKMeansOnDNA {
 		}
 	}
 
+	/**
+	 * Called by slaves at the end in sharded output mode: total distance of the
+	 * dnas of each cluster to its centroid, then the range of the slave
+	 */
+	private void sendSummary() {
+		double[] summary = new double[k + 2];
+		for (int index = offset; index < getRangeEnd(); ++index) {
+			DNAUnit dna = allDNAData.get(index);
+			summary[labels[index]] += dna.getWeight()
+					* dna.getDistance(centroids[labels[index]]);
+		}
+		summary[k] = offset;
+		summary[k + 1] = getRangeEnd();
+		comm.send(summary, 0, summary.length, 0, 5);
+	}
+
+	/**
+	 * @return true if the master gets the dnas of the clusters, for the listing
+	 */
+	private boolean isGathering() {
+		return shardFormat == null && !"".equals(summaryFileName);
+	}
+
+	/**
+	 * Summary mode, called by every rank at the end: the master broadcasts the
+	 * consensus of each cluster, and the slaves reduce the total and the
+	 * largest distance of their dnas to it, so no dna leaves its slave
+	 */
+	private void summarize() {
+		consensus = new DNAUnit[k];
+		if (rank == 0) {
+			for (int i = 0; i < k; ++i) {
+				DNACluster pc = DNAClusters[i];
+				consensus[i] = pc.isEmpty() ? centroids[i] : pc.updateCentroid();
+			}
+		}
+		comm.bcast(consensus, 0, k, 0);
+		double[] distance = new double[k];
+		double[] radius = new double[k];
+		for (int index = offset; rank != 0 && index < getRangeEnd(); ++index) {
+			DNAUnit dna = allDNAData.get(index);
+			int d = dna.getDistance(consensus[labels[index]]);
+			distance[labels[index]] += dna.getWeight() * d;
+			radius[labels[index]] = Math.max(radius[labels[index]], d);
+		}
+		consensusDistance = new double[k];
+		clusterRadius = new double[k];
+		comm.reduce(distance, consensusDistance, k, Communicator.SUM, 0);
+		comm.reduce(radius, clusterRadius, k, Communicator.MAX, 0);
+		// the model keeps the distances to the last centroids if it has them,
+		// they only differ from the consensus when maxIter stopped the run
+		if (rank == 0 && clusterDistance == null && !isGathering()) {
+			clusterDistance = consensusDistance;
+		}
+	}
+
+	/**
+	 * Evaluation, called by every rank at the end: the master broadcasts the
+	 * consensus of each cluster and a sample of dnas, every slave adds its dnas
+	 * with their distance to each sample and to their consensus, and the sums
+	 * are reduced on the master, so no dna leaves its slave
+	 */
+	private void evaluate() {
+		// with --dedup the dnas are weighted, the sample is drawn among the records
+		int[] weights = new int[DNANum];
+		for (int index = 0; index < DNANum; ++index) {
+			weights[index] = allDNAData.get(index).getWeight();
+		}
+		int sampleNum = (int) Math.min(evaluateSamples, ClusterEvaluation.getRecordNum(weights));
+		DNAUnit[] means = new DNAUnit[k];
+		int[] sampleIndexes = new int[sampleNum];
+		DNAUnit[] samples = new DNAUnit[sampleNum];
+		if (rank == 0) {
+			for (int i = 0; i < k; ++i) {
+				DNACluster pc = DNAClusters[i];
+				means[i] = pc.isEmpty() ? centroids[i] : pc.updateCentroid();
+			}
+			sampleIndexes = ClusterEvaluation.sample(weights, sampleNum, new Random());
+			for (int s = 0; s < sampleNum; ++s) {
+				samples[s] = allDNAData.get(sampleIndexes[s]);
+			}
+		}
+		comm.bcast(means, 0, k, 0);
+		comm.bcast(sampleIndexes, 0, sampleNum, 0);
+		comm.bcast(samples, 0, sampleNum, 0);
+		ClusterEvaluation evaluation = new ClusterEvaluation(k, sampleNum);
+		if (rank != 0) {
+			for (int s = 0; s < sampleNum; ++s) {
+				int index = sampleIndexes[s];
+				if (index >= offset && index < getRangeEnd()) {
+					evaluation.setSampleLabel(s, labels[index]);
+				}
+			}
+			double[] distances = new double[sampleNum];
+			for (int index = offset; index < getRangeEnd(); ++index) {
+				DNAUnit dna = allDNAData.get(index);
+				for (int s = 0; s < sampleNum; ++s) {
+					distances[s] = dna.getDistance(samples[s]);
+				}
+				int d = dna.getDistance(means[labels[index]]);
+				evaluation.add(distances, labels[index], d, d, dna.getWeight());
+			}
+		}
+		double[] partial = evaluation.pack();
+		double[] total = new double[partial.length];
+		comm.reduce(partial, total, partial.length, Communicator.SUM, 0);
+		if (rank != 0) {
+			return;
+		}
+		double[][] consensusDistances = new double[k][k];
+		for (int i = 0; i < k; ++i) {
+			for (int j = 0; j < k; ++j) {
+				consensusDistances[i][j] = means[i].getDistance(means[j]);
+			}
+		}
+		evaluation.evaluate(total, consensusDistances, evaluateLevel);
+		evaluation.print();
+		if (evaluationFileName != null) {
+			evaluation.write(evaluationFileName);
+		}
+	}
+
+	/**
+	 * Called by master at the end in sharded output mode, after the clusters
+	 */
+	private void aggregateSummaries() {
+		shardRanges = new int[2 * (size - 1)];
+		clusterDistance = new double[k];
+		double[] summary = new double[k + 2];
+		for (int slaveRank = 1; slaveRank < size; ++slaveRank) {
+			comm.recv(summary, 0, summary.length, slaveRank, 5);
+			for (int i = 0; i < k; ++i) {
+				clusterDistance[i] += summary[i];
+			}
+			shardRanges[2 * (slaveRank - 1)] = (int) summary[k];
+			shardRanges[2 * (slaveRank - 1) + 1] = (int) summary[k + 1];
+		}
+	}
+
 	/**
 	 * update all clusters' centroid dna
 	 */
@@ -313,6 +775,15 @@ public class ParallelKMeansOnDNA {
 		return minIndex;
 	}
 
+	/**
+	 * Called by master
+	 * 
+	 * @return iteration the run stopped at, including those before a restart
+	 */
+	public int getIterationNum() {
+		return iterationNum;
+	}
+
 	/**
 	 * Write result to file
 	 * 
@@ -320,7 +791,17 @@ public class ParallelKMeansOnDNA {
 	 *            name of the output file
 	 */
 	public void outputResult(String outputFileName) {
-		if (rank != 0) {
+		if (summaryFileName != null && rank == 0) {
+			writeSummary(summaryFileName.length() > 0 ? summaryFileName
+					: shardFormat != null ? outputFileName + ".summary"
+							: outputFileName);
+		}
+		if (shardFormat != null) {
+			writeShards(outputFileName);
+			return;
+		}
+		// the summary is the output
+		if (rank != 0 || "".equals(summaryFileName)) {
 			return;
 		}
 		FileWriter fw = null;
@@ -334,7 +815,10 @@ public class ParallelKMeansOnDNA {
 				bw.write("Cluster " + i + ":\n");
 				for (DNAUnit dna : pc.getDNAs()) {
 					// System.out.println("\t" + dna);
-					bw.write("\t" + dna.getValue() + "\n");
+					// expand weighted DNAs back to the original records
+					for (int j = 0; j < dna.getWeight(); ++j) {
+						bw.write("\t" + dna.getValue() + "\n");
+					}
 				}
 			}
 		} catch (IOException e) {
@@ -350,17 +834,153 @@ public class ParallelKMeansOnDNA {
 		}
 	}
 
-	public static void main(String[] args) {
-		MPI.Init(args);
+	/**
+	 * Called by master in summary mode to write a CSV line per cluster, with
+	 * the entropy of each position separated by spaces
+	 * 
+	 * @param fileName
+	 *            name of the summary file
+	 */
+	private void writeSummary(String fileName) {
+		BufferedWriter bw = null;
+		try {
+			bw = new BufferedWriter(new FileWriter(fileName));
+			bw.write("cluster,count,consensus,distance,max_radius,mean_entropy,entropy\n");
+			for (int i = 0; i < k; ++i) {
+				double[] entropy = DNAClusters[i].getEntropy();
+				double total = 0;
+				StringBuilder positions = new StringBuilder();
+				for (int j = 0; j < entropy.length; ++j) {
+					total += entropy[j];
+					positions.append(j > 0 ? " " : "").append(
+							String.format(Locale.ROOT, "%.4f", entropy[j]));
+				}
+				bw.write(i + "," + DNAClusters[i].getWeight() + ","
+						+ consensus[i].getValue() + "," + consensusDistance[i]
+						+ "," + (int) clusterRadius[i] + ","
+						+ String.format(Locale.ROOT, "%.4f", entropy.length == 0 ? 0
+								: total / entropy.length) + "," + positions + "\n");
+			}
+		} catch (IOException e) {
+			System.out.println("Fail to write summary file");
+			e.printStackTrace();
+		} finally {
+			try {
+				if (bw != null) {
+					bw.close();
+				}
+			} catch (IOException e) {
+				System.out.println("Fail to close summary file");
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Sharded output: every slave writes the labels of its range, the master
+	 * writes the centroids and the manifest, see ShardedOutput
+	 * 
+	 * @param outputFileName
+	 *            name of the manifest
+	 */
+	private void writeShards(String outputFileName) {
+		try {
+			if (rank != 0) {
+				ShardedOutput.writeShard(
+						ShardedOutput.getShardFileName(outputFileName, rank),
+						shardFormat, labels, offset, getRangeEnd());
+				return;
+			}
+			String[] centroidLines = new String[k];
+			for (int i = 0; i < k; ++i) {
+				centroidLines[i] = centroids[i].getValue();
+			}
+			ShardedOutput.writeManifest(outputFileName, shardFormat,
+					shardRanges, centroidLines);
+		} catch (IOException e) {
+			System.out.println("Fail to write output shards");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Called by master to write the model file used to warm-start later runs
+	 * 
+	 * @param modelFileName
+	 *            name of the model file
+	 */
+	public void saveModel(String modelFileName) {
+		if (rank != 0) {
+			return;
+		}
+		String[] modelCentroids = new String[k];
+		long[] counts = new long[k];
+		double inertia = 0;
+		for (int i = 0; i < k; ++i) {
+			DNACluster pc = DNAClusters[i];
+			modelCentroids[i] = centroids[i].getValue();
+			counts[i] = pc.getWeight();
+			// sharded output or summary, the dnas stayed on the slaves
+			if (clusterDistance != null) {
+				inertia += clusterDistance[i];
+				continue;
+			}
+			for (DNAUnit dna : pc.getDNAs()) {
+				inertia += dna.getWeight() * dna.getDistance(centroids[i]);
+			}
+		}
+		try {
+			new KMeansModel(modelCentroids, counts, inertia)
+					.write(modelFileName);
+		} catch (IOException e) {
+			System.out.println("Fail to write model file");
+			e.printStackTrace();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
 		// user arguments start from index 3
-		int k = Integer.parseInt(args[3]);
-		int maxIter = Integer.parseInt(args[4]);
-		String inputFileName = args[5];
-		String outputFileName = args[6];
-		ParallelKMeansOnDNA kmp = new ParallelKMeansOnDNA(inputFileName, k,
-				maxIter);
+		final int k = Integer.parseInt(args[3]);
+		final int maxIter = Integer.parseInt(args[4]);
+		final String inputFileName = args[5];
+		final String outputFileName = args[6];
+		// optional arguments, e.g. --dedup, --init-model modelFile,
+		// --model-out modelFile (default: outputFile.model),
+		// --checkpoint-dir dir [--checkpoint-every 10] [--checkpoint-labels]
+		// [--restart], --local ranks (run the ranks as threads of this JVM,
+		// without MPJ), --shared-dataset [dir] (map the dnas from a file
+		// shared by the ranks of a node, left there for later runs unless
+		// --shared-dataset-cleanup), --metrics [csvFile] (per-rank,
+		// per-iteration spans, bytes, moved dnas and inertia), --shards
+		// [binary|text] (each slave writes the labels of its dnas, outputFile
+		// is a manifest), --summary [file] (count, consensus, distances and
+		// entropy per cluster, in outputFile instead of the listing),
+		// --evaluate [samples] [--confidence 0.95] [--evaluate-out csvFile]
+		// (SSE, Davies-Bouldin index and sampled silhouette of the result)
+		final Options options = new Options(args, 7);
+		if (options.has("local")) {
+			LocalCommunicator.run(options.getInt("local", 2),
+					new LocalCommunicator.Task() {
+						@Override
+						public void run(Communicator comm) {
+							runRank(comm, inputFileName, k, maxIter,
+									outputFileName, options);
+						}
+					});
+			return;
+		}
+		MPI.Init(args);
+		runRank(new MPJCommunicator(), inputFileName, k, maxIter,
+				outputFileName, options);
+		MPI.Finalize();
+	}
+
+	private static void runRank(Communicator comm, String inputFileName,
+			int k, int maxIter, String outputFileName, Options options) {
+		ParallelKMeansOnDNA kmp = new ParallelKMeansOnDNA(comm, inputFileName,
+				k, maxIter, options);
 		kmp.doClustering();
 		kmp.outputResult(outputFileName);
-		MPI.Finalize();
+		kmp.saveModel(options.get("model-out", outputFileName + ".model"));
 	}
 }
@@ -7,11 +7,18 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 
+import util.ClusterFileWriter;
+import util.KMeansModel;
+import util.LabelFile;
+import util.Options;
+
 /**
  * Do K Means on DNA
  * 
@@ -29,17 +36,53 @@ public class SequentialKMeansOnDNA {
 	private int k;
 	// maximum iterations to run k means
 	private int maxIter;
+	// iterations the last run took
+	private int iterationNum;
 	// list of k clusters
 	private List<DNACluster> dnaClusters;
+	// out-of-core mode: stream the input file in every iteration instead of
+	// loading it
+	private boolean outOfCore;
+	private String inputFileName;
+	private int chunkSize;
+	// optional on-disk label of each record in out-of-core mode
+	private String labelFileName;
+	// optional model file of an earlier run to initialize the centroids from
+	private String initModelFileName;
+	// final dna number of each cluster and inertia, set by the streaming output
+	private long[] counts;
+	private double inertia;
 
 	public SequentialKMeansOnDNA(String fileName, int k, int maxIter) {
+		this(fileName, k, maxIter, new Options());
+	}
+
+	public SequentialKMeansOnDNA(String fileName, int k, int maxIter,
+			Options options) {
 		this.k = k;
 		this.maxIter = maxIter;
 		this.dnaClusters = new ArrayList<DNACluster>();
 		this.dnas = new ArrayList<DNAUnit>();
-		loadData(fileName);
+		this.inputFileName = fileName;
+		this.outOfCore = options.has("out-of-core");
+		this.chunkSize = options.getInt("chunk", 1 << 14);
+		this.labelFileName = options.get("labels", null);
+		this.initModelFileName = options.get("init-model", null);
+		if (outOfCore) {
+			if (initModelFileName != null) {
+				initializeClusterFromModel();
+			} else {
+				initializeClusterFromStream();
+			}
+			return;
+		}
+		loadData(fileName, options.has("dedup"));
 		this.dnaNum = dnas.size();
-		initializeCluster();
+		if (initModelFileName != null) {
+			initializeClusterFromModel();
+		} else {
+			initializeCluster();
+		}
 	}
 
 	/**
@@ -47,17 +90,32 @@ public class SequentialKMeansOnDNA {
 	 * 
 	 * @param fileName
 	 *            name of the CSV file to load
+	 * @param dedup
+	 *            true to load identical records as one weighted DNA
 	 */
-	private void loadData(String fileName) {
+	private void loadData(String fileName, boolean dedup) {
 		System.out.println("load data");
 		FileReader fw;
 		try {
 			fw = new FileReader(fileName);
 			BufferedReader bw = new BufferedReader(fw);
 			String line = "";
+			// collapse identical records into one weighted DNA
+			Map<String, DNAUnit> uniqueDNAs = dedup ? new HashMap<String, DNAUnit>()
+					: null;
 			while ((line = bw.readLine()) != null) {
+				if (dedup) {
+					DNAUnit same = uniqueDNAs.get(line);
+					if (same != null) {
+						same.increaseWeight();
+						continue;
+					}
+				}
 				DNAUnit dnaUnit = new DNAUnit(line);
 				dnas.add(dnaUnit);
+				if (dedup) {
+					uniqueDNAs.put(line, dnaUnit);
+				}
 			}
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
@@ -88,14 +146,78 @@ public class SequentialKMeansOnDNA {
 		}
 	}
 
+	/**
+	 * Warm start: the centroid dnas are those of the model of an earlier run
+	 */
+	private void initializeClusterFromModel() {
+		KMeansModel model;
+		try {
+			model = KMeansModel.read(initModelFileName);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Fail to read model "
+					+ initModelFileName, e);
+		}
+		if (model.getType() != KMeansModel.DNA || model.getK() != k) {
+			throw new IllegalArgumentException(initModelFileName
+					+ " is not a model of " + k + " dna clusters");
+		}
+		for (String centroid : model.getDNACentroids()) {
+			DNACluster pc = new DNACluster();
+			pc.setCentroid(new DNAUnit(centroid));
+			dnaClusters.add(pc);
+		}
+	}
+
+	/**
+	 * Out-of-core mode: randomly choose k records of the input file to be the
+	 * centroid dnas, with a reservoir sample, and count the records
+	 */
+	private void initializeClusterFromStream() {
+		DNAUnit[] centers = new DNAUnit[k];
+		Random random = new Random();
+		dnaNum = 0;
+		try {
+			DNAChunkReader reader = new DNAChunkReader(inputFileName, chunkSize);
+			DNAUnit[] chunk;
+			while ((chunk = reader.next()) != null) {
+				for (DNAUnit dna : chunk) {
+					++dnaNum;
+					int slot = dnaNum <= k ? dnaNum - 1 : random.nextInt(dnaNum);
+					if (slot < k) {
+						centers[slot] = dna;
+					}
+				}
+			}
+		} catch (IOException e) {
+			System.out.println("Fail to read input file");
+			e.printStackTrace();
+		}
+		assert (this.dnaNum >= k);
+		for (int i = 0; i < k; ++i) {
+			DNACluster pc = new DNACluster();
+			pc.setCentroid(centers[i]);
+			dnaClusters.add(pc);
+		}
+	}
+
 	/**
 	 * Do Clustering all all data dnas using K Means algorithm Stop conditions:
 	 * 1. reach max iterations 2. no change between 2 iterations
 	 */
 	public void doClustering() {
+		if (outOfCore) {
+			try {
+				doClusteringOutOfCore();
+			} catch (IOException e) {
+				System.out.println("Fail to stream input file");
+				e.printStackTrace();
+			}
+			return;
+		}
 		boolean changed = true;
 		for (int i = 0; i < maxIter; ++i) {
 			System.out.println("Iteration " + (i + 1) + "...");
+			iterationNum = i + 1;
 			for (DNAUnit dna : dnas) {
 				int clusterIndex = findNearestCentroid(dna);
 				DNACluster pc = dnaClusters.get(clusterIndex);
@@ -125,6 +247,62 @@ public class SequentialKMeansOnDNA {
 		}
 	}
 
+	/**
+	 * Out-of-core K Means: every iteration streams the input file chunk by
+	 * chunk, only the centroids and the base profiles of the clusters are kept
+	 * in memory. Stop conditions: 1. reach max iterations 2. centroids do not
+	 * change between 2 iterations
+	 */
+	private void doClusteringOutOfCore() throws IOException {
+		LabelFile labels = labelFileName == null ? null : new LabelFile(
+				labelFileName);
+		for (int i = 0; i < maxIter; ++i) {
+			System.out.println("Iteration " + (i + 1) + "...");
+			iterationNum = i + 1;
+			DNACluster[] counts = new DNACluster[k];
+			for (int c = 0; c < k; ++c) {
+				counts[c] = new DNACluster();
+			}
+			long moved = 0;
+			if (labels != null) {
+				labels.startIteration();
+			}
+			DNAChunkReader reader = new DNAChunkReader(inputFileName, chunkSize);
+			DNAUnit[] chunk;
+			while ((chunk = reader.next()) != null) {
+				for (DNAUnit dna : chunk) {
+					int clusterIndex = findNearestCentroid(dna);
+					counts[clusterIndex].countDNA(dna);
+					if (labels != null
+							&& labels.update(clusterIndex) != clusterIndex) {
+						++moved;
+					}
+				}
+			}
+			if (labels != null) {
+				labels.finishIteration();
+				System.out.println(moved + " dnas moved");
+			}
+			// update cluster centroid, an empty cluster keeps its centroid
+			boolean changed = false;
+			for (int c = 0; c < k; ++c) {
+				if (counts[c].isEmpty()) {
+					continue;
+				}
+				DNACluster pc = dnaClusters.get(c);
+				DNAUnit centroid = counts[c].updateCentroid();
+				if (!centroid.getValue().equals(pc.getCentroid().getValue())) {
+					changed = true;
+				}
+				pc.setCentroid(centroid);
+			}
+			// same centroids give the same assignment, already converge!
+			if (!changed) {
+				break;
+			}
+		}
+	}
+
 	/**
 	 * update all clusters' centroid
 	 */
@@ -155,6 +333,13 @@ public class SequentialKMeansOnDNA {
 		return minIndex;
 	}
 
+	/**
+	 * @return iterations the clustering took
+	 */
+	public int getIterationNum() {
+		return iterationNum;
+	}
+
 	/**
 	 * Write result to file
 	 * 
@@ -162,6 +347,10 @@ public class SequentialKMeansOnDNA {
 	 *            name of the output file
 	 */
 	public void outputResult(String outputFileName) {
+		if (outOfCore) {
+			outputLabeledInput(outputFileName);
+			return;
+		}
 		FileWriter fw = null;
 		BufferedWriter bw = null;
 		try {
@@ -173,7 +362,10 @@ public class SequentialKMeansOnDNA {
 				bw.write("Cluster " + i + ":\n");
 				for (DNAUnit dna : pc.getDNAs()) {
 					// System.out.println("\t" + dna);
-					bw.write("\t" + dna.getValue() + "\n");
+					// expand weighted DNAs back to the original records
+					for (int j = 0; j < dna.getWeight(); ++j) {
+						bw.write("\t" + dna.getValue() + "\n");
+					}
 				}
 			}
 		} catch (IOException e) {
@@ -189,14 +381,80 @@ public class SequentialKMeansOnDNA {
 		}
 	}
 
+	/**
+	 * Out-of-core mode: stream the input file once, assign each record to the
+	 * nearest final centroid and write it to the cluster listing
+	 * 
+	 * @param outputFileName
+	 *            name of the output file
+	 */
+	private void outputLabeledInput(String outputFileName) {
+		counts = new long[k];
+		inertia = 0;
+		try {
+			ClusterFileWriter writer = new ClusterFileWriter(outputFileName, k);
+			DNAChunkReader reader = new DNAChunkReader(inputFileName, chunkSize);
+			DNAUnit[] chunk;
+			while ((chunk = reader.next()) != null) {
+				for (DNAUnit dna : chunk) {
+					int clusterIndex = findNearestCentroid(dna);
+					writer.write(clusterIndex, dna.getValue());
+					++counts[clusterIndex];
+					inertia += dna.getDistance(dnaClusters.get(clusterIndex)
+							.getCentroid());
+				}
+			}
+			writer.close();
+		} catch (IOException e) {
+			System.out.println("Fail to write output file");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Write the model file used to warm-start later runs
+	 * 
+	 * @param modelFileName
+	 *            name of the model file
+	 */
+	public void saveModel(String modelFileName) {
+		String[] centroids = new String[k];
+		for (int i = 0; i < k; ++i) {
+			centroids[i] = dnaClusters.get(i).getCentroid().getValue();
+		}
+		if (counts == null) {
+			counts = new long[k];
+			inertia = 0;
+			for (int i = 0; i < k; ++i) {
+				DNACluster pc = dnaClusters.get(i);
+				counts[i] = pc.getWeight();
+				for (DNAUnit dna : pc.getDNAs()) {
+					inertia += dna.getWeight()
+							* dna.getDistance(pc.getCentroid());
+				}
+			}
+		}
+		try {
+			new KMeansModel(centroids, counts, inertia).write(modelFileName);
+		} catch (IOException e) {
+			System.out.println("Fail to write model file");
+			e.printStackTrace();
+		}
+	}
+
 	public static void main(String[] args) {
 		int k = Integer.parseInt(args[0]);
 		int maxIter = Integer.parseInt(args[1]);
 		String inputFileName = args[2];
 		String outputFileName = args[3];
+		// optional arguments, e.g. --dedup,
+		// --out-of-core [--chunk 16384] [--labels labelFile],
+		// --init-model modelFile, --model-out modelFile (default: outputFile.model)
+		Options options = new Options(args, 4);
 		SequentialKMeansOnDNA kmp = new SequentialKMeansOnDNA(inputFileName, k,
-				maxIter);
+				maxIter, options);
 		kmp.doClustering();
 		kmp.outputResult(outputFileName);
+		kmp.saveModel(options.get("model-out", outputFileName + ".model"));
 	}
 }
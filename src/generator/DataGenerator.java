@@ -0,0 +1,248 @@
+package generator;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import util.Options;
+
+/**
+ * Synthetic data set of records drawn around k centers, with the center of each
+ * record as ground-truth label.
+ *
+ * The records are generated in blocks on a pool of threads and written in order
+ * by the calling thread. Every block has its own SplittableRandom, split from the
+ * seed in block order before the block is handed to a thread, so the output only
+ * depends on the seed and the block size, not on the number of threads.
+ *
+ * Formats of the data file:
+ * 		text: one record per line, as read by the drivers
+ * 		binary: header (magic, type, record number, width), then the fixed-size
+ * 			records, see the subclasses; 2D points named *.bin are read by
+ * 			point.PointChunkReader, e.g. in SequentialKMeansOnPoint --out-of-core
+ * The label file has one label per line in text format, and one int per record
+ * in binary format, as in LabelFile.
+ *
+ * Usage: DataGenerator point|dna recordNum output [--k 5] [--seed 1]
+ * 		[--threads cores] [--block 65536] [--format text|binary] [--labels file]
+ * 		[--centers file] [--grouped]
+ * 		point: [--dimension 2] [--range 100] [--sigma 2]
+ * 		dna: [--length 30] [--mutation-rate 0.05] [--min-distance 0]
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public abstract class DataGenerator {
+	public static final int MAGIC = 0x4b4d4744;  // "KMGD"
+	// magic, type, record number and width
+	public static final int HEADER_SIZE = 20;
+	public static final int TYPE_POINT = 0;
+	public static final int TYPE_DNA = 1;
+
+	protected int k;
+	protected boolean binary;
+	private long recordNum;
+	private long seed;
+	private int threadNum;
+	private int blockSize;
+	// records of cluster c are contiguous instead of drawn at random
+	private boolean grouped;
+
+	protected DataGenerator(long recordNum, int k, Options options) {
+		this.recordNum = recordNum;
+		this.k = k;
+		this.seed = Long.parseLong(options.get("seed", "1"));
+		this.threadNum = options.getInt("threads", Runtime.getRuntime().availableProcessors());
+		this.blockSize = options.getInt("block", 1 << 16);
+		this.binary = options.get("format", "text").equals("binary");
+		this.grouped = options.has("grouped");
+	}
+
+	/**
+	 * Draw the k centers, before any record
+	 */
+	protected abstract void generateCenters(SplittableRandom random);
+
+	/**
+	 * @return TYPE_POINT or TYPE_DNA
+	 */
+	protected abstract int getType();
+
+	/**
+	 * @return dimension of a point, length of a DNA
+	 */
+	protected abstract int getWidth();
+
+	/**
+	 * @return upper bound of the bytes of a record in the current format
+	 */
+	protected abstract int getMaxRecordBytes();
+
+	/**
+	 * Append a record around center cluster to data, in the current format
+	 */
+	protected abstract void generateRecord(int cluster, SplittableRandom random, ByteBuffer data);
+
+	/**
+	 * @return center in text format, without line end
+	 */
+	public abstract String getCenter(int cluster);
+
+	/**
+	 * Generate all records into output, and their labels into labelFile
+	 * @param labelFile null not to write labels
+	 */
+	public void generate(String output, String labelFile) throws IOException {
+		SplittableRandom root = new SplittableRandom(seed);
+		generateCenters(root.split());
+		FileChannel data = new FileOutputStream(output).getChannel();
+		FileChannel labels = labelFile == null ? null : new FileOutputStream(labelFile).getChannel();
+		ExecutorService pool = Executors.newFixedThreadPool(threadNum);
+		try {
+			if (binary) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).putInt(getType()).putLong(recordNum).putInt(getWidth());
+				header.flip();
+				writeFully(data, header);
+			}
+			// blocks handed to the pool and not written yet, a few per thread
+			Deque<Future<ByteBuffer[]>> pending = new ArrayDeque<Future<ByteBuffer[]>>();
+			for (long first = 0; first < recordNum || !pending.isEmpty(); ) {
+				if (first < recordNum && pending.size() < 2 * threadNum) {
+					int count = (int) Math.min(blockSize, recordNum - first);
+					pending.add(pool.submit(new Block(first, count, root.split(), labels != null)));
+					first += count;
+					continue;
+				}
+				ByteBuffer[] block = pending.poll().get();
+				writeFully(data, block[0]);
+				if (labels != null) {
+					writeFully(labels, block[1]);
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while generating", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Fail to generate a block", e.getCause());
+		} finally {
+			pool.shutdownNow();
+			data.close();
+			if (labels != null) {
+				labels.close();
+			}
+		}
+	}
+
+	/**
+	 * Write the centers in text format, one per line
+	 */
+	public void writeCenters(String fileName) throws IOException {
+		BufferedWriter bw = new BufferedWriter(new FileWriter(fileName));
+		try {
+			for (int c = 0; c < k; ++c) {
+				bw.write(getCenter(c));
+				bw.write("\n");
+			}
+		} finally {
+			bw.close();
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Append the decimal digits of a non-negative value
+	 */
+	protected static void putDigits(ByteBuffer buffer, long value) {
+		if (value >= 10) {
+			putDigits(buffer, value / 10);
+		}
+		buffer.put((byte) ('0' + value % 10));
+	}
+
+	/**
+	 * Records first to first + count - 1 and their labels
+	 */
+	private class Block implements Callable<ByteBuffer[]> {
+		private long first;
+		private int count;
+		private SplittableRandom random;
+		private boolean withLabels;
+
+		Block(long first, int count, SplittableRandom random, boolean withLabels) {
+			this.first = first;
+			this.count = count;
+			this.random = random;
+			this.withLabels = withLabels;
+		}
+
+		@Override
+		public ByteBuffer[] call() {
+			ByteBuffer data = ByteBuffer.allocate(count * getMaxRecordBytes());
+			// at most 10 digits and a line end per label
+			ByteBuffer labels = ByteBuffer.allocate(withLabels ? count * 11 : 0);
+			for (int i = 0; i < count; ++i) {
+				int cluster = grouped ? (int) ((first + i) * k / recordNum) : random.nextInt(k);
+				generateRecord(cluster, random, data);
+				if (!withLabels) {
+					continue;
+				}
+				if (binary) {
+					labels.putInt(cluster);
+				} else {
+					putDigits(labels, cluster);
+					labels.put((byte) '\n');
+				}
+			}
+			data.flip();
+			labels.flip();
+			return new ByteBuffer[] {data, labels};
+		}
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 3) {
+			System.out.println("Usage: DataGenerator point|dna recordNum output [options]");
+			System.exit(-1);
+		}
+		long recordNum = Long.parseLong(args[1]);
+		Options options = new Options(args, 3);
+		int k = options.getInt("k", 5);
+		DataGenerator generator;
+		if (args[0].equals("point")) {
+			generator = new GaussianPointGenerator(recordNum, k, options);
+		} else if (args[0].equals("dna")) {
+			generator = new MutatedDNAGenerator(recordNum, k, options);
+		} else {
+			throw new IllegalArgumentException("Unknown data type: " + args[0]);
+		}
+		long start = System.currentTimeMillis();
+		try {
+			generator.generate(args[2], options.get("labels", null));
+			if (options.has("centers")) {
+				generator.writeCenters(options.get("centers", null));
+			}
+		} catch (IOException e) {
+			System.out.println("Fail to generate data");
+			e.printStackTrace();
+			return;
+		}
+		System.out.println("Generated " + recordNum + " records in "
+				+ (System.currentTimeMillis() - start) + " ms");
+	}
+}
@@ -0,0 +1,107 @@
+package generator;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+import util.Options;
+
+/**
+ * Points of a Gaussian mixture with equal weights: the centers are uniform in
+ * [0, range) on each axis, and each point is its center plus a normal deviation
+ * of sigma on each axis.
+ *
+ * Text records are "x,y,..." with 6 decimals; binary records are the coordinates
+ * as big-endian doubles.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class GaussianPointGenerator extends DataGenerator {
+	private static final long SCALE = 1000000;
+	// sign, digits of a long, point, decimals and separator
+	private static final int MAX_TEXT_BYTES = 28;
+
+	private int dimension;
+	private double range;
+	private double sigma;
+	private double[][] centers;
+
+	public GaussianPointGenerator(long recordNum, int k, Options options) {
+		super(recordNum, k, options);
+		this.dimension = options.getInt("dimension", 2);
+		this.range = options.getDouble("range", 100);
+		this.sigma = options.getDouble("sigma", 2);
+	}
+
+	@Override
+	protected void generateCenters(SplittableRandom random) {
+		centers = new double[k][dimension];
+		for (int c = 0; c < k; ++c) {
+			for (int d = 0; d < dimension; ++d) {
+				centers[c][d] = random.nextDouble() * range;
+			}
+		}
+	}
+
+	@Override
+	protected int getType() {
+		return TYPE_POINT;
+	}
+
+	@Override
+	protected int getWidth() {
+		return dimension;
+	}
+
+	@Override
+	protected int getMaxRecordBytes() {
+		return binary ? 8 * dimension : MAX_TEXT_BYTES * dimension;
+	}
+
+	@Override
+	protected void generateRecord(int cluster, SplittableRandom random, ByteBuffer data) {
+		double[] center = centers[cluster];
+		// Box-Muller gives two deviations per pair of uniforms
+		for (int d = 0; d < dimension; d += 2) {
+			double radius = Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * sigma;
+			double angle = 2 * Math.PI * random.nextDouble();
+			putCoordinate(data, d, center[d] + radius * Math.cos(angle));
+			if (d + 1 < dimension) {
+				putCoordinate(data, d + 1, center[d + 1] + radius * Math.sin(angle));
+			}
+		}
+		if (!binary) {
+			data.put((byte) '\n');
+		}
+	}
+
+	private void putCoordinate(ByteBuffer data, int d, double value) {
+		if (binary) {
+			data.putDouble(value);
+			return;
+		}
+		if (d > 0) {
+			data.put((byte) ',');
+		}
+		long scaled = Math.round(value * SCALE);
+		if (scaled < 0) {
+			data.put((byte) '-');
+			scaled = -scaled;
+		}
+		putDigits(data, scaled / SCALE);
+		data.put((byte) '.');
+		// decimals with their leading zeros
+		for (long unit = SCALE / 10; unit > 0; unit /= 10) {
+			data.put((byte) ('0' + scaled / unit % 10));
+		}
+	}
+
+	@Override
+	public String getCenter(int cluster) {
+		StringBuilder sb = new StringBuilder();
+		for (int d = 0; d < dimension; ++d) {
+			sb.append(d > 0 ? "," : "").append(centers[cluster][d]);
+		}
+		return sb.toString();
+	}
+}
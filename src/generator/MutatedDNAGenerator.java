@@ -0,0 +1,125 @@
+package generator;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+import util.Options;
+
+/**
+ * DNAs of k random centers: each base of a DNA is the base of its center, changed
+ * to one of the 3 other bases with probability mutationRate. With --min-distance,
+ * the centers are drawn again until every two differ in at least that many bases.
+ *
+ * Text records are the bases as a line; binary records pack 4 bases per byte,
+ * 2 bits each (A, C, G, T = 0 to 3), the first base in the high bits.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class MutatedDNAGenerator extends DataGenerator {
+	private static final byte[] BASES = {'A', 'C', 'G', 'T'};
+	// draws of a center before giving up on --min-distance, which may not be possible
+	private static final int MAX_DRAWS = 1 << 20;
+
+	private int length;
+	private double mutationRate;
+	// smallest number of bases in which two centers differ
+	private int minDistance;
+	// index of the base at each position of each center
+	private byte[][] centers;
+
+	public MutatedDNAGenerator(long recordNum, int k, Options options) {
+		super(recordNum, k, options);
+		this.length = options.getInt("length", 30);
+		this.mutationRate = options.getDouble("mutation-rate", 0.05);
+		this.minDistance = options.getInt("min-distance", 0);
+		if (minDistance > length) {
+			throw new IllegalArgumentException("--min-distance is longer than the DNAs");
+		}
+	}
+
+	@Override
+	protected void generateCenters(SplittableRandom random) {
+		centers = new byte[k][length];
+		for (int c = 0; c < k; ++c) {
+			int draws = 0;
+			do {
+				if (++draws > MAX_DRAWS) {
+					throw new IllegalArgumentException("Fail to draw " + k
+							+ " centers that differ in " + minDistance + " bases, lower --min-distance");
+				}
+				for (int i = 0; i < length; ++i) {
+					centers[c][i] = (byte) random.nextInt(4);
+				}
+			} while (!isFarFromOthers(c));
+		}
+	}
+
+	/**
+	 * @return true if center c differs from the centers before it in at least minDistance bases
+	 */
+	private boolean isFarFromOthers(int c) {
+		for (int other = 0; other < c; ++other) {
+			int distance = 0;
+			for (int i = 0; i < length; ++i) {
+				if (centers[c][i] != centers[other][i]) {
+					++distance;
+				}
+			}
+			if (distance < minDistance) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	protected int getType() {
+		return TYPE_DNA;
+	}
+
+	@Override
+	protected int getWidth() {
+		return length;
+	}
+
+	@Override
+	protected int getMaxRecordBytes() {
+		return binary ? (length + 3) / 4 : length + 1;
+	}
+
+	@Override
+	protected void generateRecord(int cluster, SplittableRandom random, ByteBuffer data) {
+		byte[] center = centers[cluster];
+		int packed = 0;
+		for (int i = 0; i < length; ++i) {
+			int base = center[i];
+			if (random.nextDouble() < mutationRate) {
+				base = (base + random.nextInt(3) + 1) % 4;
+			}
+			if (!binary) {
+				data.put(BASES[base]);
+				continue;
+			}
+			packed = packed << 2 | base;
+			if (i % 4 == 3) {
+				data.put((byte) packed);
+				packed = 0;
+			}
+		}
+		if (!binary) {
+			data.put((byte) '\n');
+		} else if (length % 4 != 0) {
+			data.put((byte) (packed << 2 * (4 - length % 4)));
+		}
+	}
+
+	@Override
+	public String getCenter(int cluster) {
+		char[] value = new char[length];
+		for (int i = 0; i < length; ++i) {
+			value[i] = (char) BASES[centers[cluster][i]];
+		}
+		return new String(value);
+	}
+}
@@ -0,0 +1,203 @@
+package point;
+
+/**
+ * Active set assignment. For each point it remembers the nearest and the
+ * second nearest distance when it was last evaluated. Centroid movements are
+ * accumulated between iterations, and a point is only re-evaluated once the
+ * movement could have overturned its margin, so late iterations only visit
+ * the few points near a cluster boundary.
+ *
+ * Points that are not active are kept in a min-heap keyed by the amount of
+ * total movement they can tolerate.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class ActiveSetAssignment extends PointAssignment {
+	// cluster number
+	private int k;
+	// number of points in the range
+	private int pointNum;
+
+	private Point2D[] centroids;
+	private Point2D[] previousCentroids;
+	// cumulative movement of each centroid, and cumulative maximum movement
+	private double[] movement;
+	private double maxMovement;
+
+	// per point state, taken when the point was last evaluated
+	private int[] assigned;
+	private double[] nearest;
+	private double[] second;
+	private double[] assignedMovement;
+	private double[] maxMovementAt;
+
+	// points to re-evaluate in the current iteration
+	private int[] active;
+	private int activeNum;
+
+	// stable points, keyed by 2 * maxMovement at which they may change
+	private double[] heapKeys;
+	private int[] heapValues;
+	private int heapSize;
+
+	public ActiveSetAssignment(int k, int pointNum) {
+		this.k = k;
+		this.pointNum = pointNum;
+		this.movement = new double[k];
+		this.assigned = new int[pointNum];
+		this.nearest = new double[pointNum];
+		this.second = new double[pointNum];
+		this.assignedMovement = new double[pointNum];
+		this.maxMovementAt = new double[pointNum];
+		this.active = new int[pointNum];
+		this.heapKeys = new double[pointNum];
+		this.heapValues = new int[pointNum];
+	}
+
+	/**
+	 * Accumulate centroid movements and collect the active points
+	 */
+	@Override
+	public void setCentroids(Point2D[] centroids) {
+		boolean firstIteration = previousCentroids == null;
+		double maxDrift = 0;
+		if (!firstIteration) {
+			double[] drift = new double[k];
+			for (int i = 0; i < k; ++i) {
+				drift[i] = getDrift(previousCentroids[i], centroids[i]);
+				maxDrift = Math.max(maxDrift, drift[i]);
+			}
+			for (int i = 0; i < k; ++i) {
+				movement[i] += drift[i];
+			}
+			maxMovement += maxDrift;
+		}
+		this.centroids = centroids;
+		this.previousCentroids = centroids.clone();
+
+		if (firstIteration || Double.isInfinite(maxDrift)) {
+			activateAll();
+			return;
+		}
+		activeNum = 0;
+		while (heapSize > 0 && heapKeys[0] < 2 * maxMovement) {
+			int index = heapValues[0];
+			popHeap();
+			// check again with the movement of its own centroid
+			double slack = (second[index] - nearest[index])
+					- (movement[assigned[index]] - assignedMovement[index])
+					- (maxMovement - maxMovementAt[index]);
+			if (slack < 0) {
+				active[activeNum++] = index;
+			} else {
+				pushHeap(2 * maxMovement + slack, index);
+			}
+		}
+	}
+
+	/**
+	 * An empty cluster has no centroid (NaN), no point can move to it until it reappears
+	 * @return distance between the two positions of a centroid
+	 */
+	private double getDrift(Point2D previous, Point2D current) {
+		if (Double.isNaN(current.getX())) {
+			return 0;
+		}
+		if (Double.isNaN(previous.getX())) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return Math.sqrt(previous.distanceTo(current));
+	}
+
+	/**
+	 * re-evaluate all points and restart the movement accounting
+	 */
+	private void activateAll() {
+		for (int i = 0; i < pointNum; ++i) {
+			active[i] = i;
+		}
+		activeNum = pointNum;
+		heapSize = 0;
+		for (int i = 0; i < k; ++i) {
+			movement[i] = 0;
+		}
+		maxMovement = 0;
+	}
+
+	/**
+	 * @return number of points to re-evaluate in this iteration
+	 */
+	public int getActiveNum() {
+		return activeNum;
+	}
+
+	/**
+	 * @param i index in the active set
+	 * @return index of the point in the range
+	 */
+	public int getActive(int i) {
+		return active[i];
+	}
+
+	/**
+	 * Evaluate a point against all centroids and remember its margin
+	 */
+	@Override
+	public int assign(int index, Point2D point) {
+		double first = Double.MAX_VALUE, secondDistance = Double.MAX_VALUE;
+		int minIndex = 0;
+		for (int i = 0; i < k; ++i) {
+			double distance = Math.sqrt(point.distanceTo(centroids[i]));
+			if (distance < first) {
+				secondDistance = first;
+				first = distance;
+				minIndex = i;
+			} else if (distance < secondDistance) {
+				secondDistance = distance;
+			}
+		}
+		assigned[index] = minIndex;
+		nearest[index] = first;
+		second[index] = secondDistance;
+		assignedMovement[index] = movement[minIndex];
+		maxMovementAt[index] = maxMovement;
+		pushHeap(2 * maxMovement + (secondDistance - first), index);
+		return minIndex;
+	}
+
+	private void pushHeap(double key, int value) {
+		int i = heapSize++;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (heapKeys[parent] <= key) {
+				break;
+			}
+			heapKeys[i] = heapKeys[parent];
+			heapValues[i] = heapValues[parent];
+			i = parent;
+		}
+		heapKeys[i] = key;
+		heapValues[i] = value;
+	}
+
+	private void popHeap() {
+		double key = heapKeys[--heapSize];
+		int value = heapValues[heapSize];
+		int i = 0;
+		while (2 * i + 1 < heapSize) {
+			int child = 2 * i + 1;
+			if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+				++child;
+			}
+			if (key <= heapKeys[child]) {
+				break;
+			}
+			heapKeys[i] = heapKeys[child];
+			heapValues[i] = heapValues[child];
+			i = child;
+		}
+		heapKeys[i] = key;
+		heapValues[i] = value;
+	}
+}
@@ -0,0 +1,111 @@
+package point;
+
+import java.util.List;
+
+import util.Metrics;
+
+/**
+ * Assignment pass of the active set mode: only the points whose assignment may
+ * have changed are assigned again (see ActiveSetAssignment). The clusters are
+ * kept between iterations and updated by moving the points that changed
+ * cluster, so the pass always covers the whole range of the slave.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class ActiveSetPass extends AssignmentPass {
+	private List<Point2D> points;
+	private ActiveSetAssignment activeSet;
+	private PointCluster[] clusters;
+	// first point of the range, index 0 of the active set
+	private int offset;
+	private Point2D[] centroids;
+
+	public ActiveSetPass(List<Point2D> points, int[] labels, int k, int offset, int end, Metrics metrics) {
+		super(k, labels, metrics);
+		if (points instanceof MappedPointList) {
+			// the clusters find their points by identity between iterations
+			((MappedPointList) points).cache(offset, end);
+		}
+		this.points = points;
+		this.offset = offset;
+		this.activeSet = new ActiveSetAssignment(k, end - offset);
+		this.clusters = super.startIteration();
+	}
+
+	@Override
+	public void setRange(int offset, int end) {
+		throw new UnsupportedOperationException("The active set is bound to its range");
+	}
+
+	@Override
+	public void setCentroids(Point2D[] centroids) {
+		this.centroids = centroids;
+		activeSet.setCentroids(centroids);
+	}
+
+	/**
+	 * @return the clusters of the previous iteration
+	 */
+	@Override
+	public PointCluster[] startIteration() {
+		return clusters;
+	}
+
+	/**
+	 * Assignment and moving the points between clusters go together here
+	 * @param from first point of the range, the active points are spread over all of it
+	 * @param partial must be null, the clusters are not the sums of this iteration's points only
+	 */
+	@Override
+	public int assign(PointCluster[] clusters, int from, int to, double[] partial) {
+		long begin = metrics.begin();
+		int moved = 0;
+		int activeNum = activeSet.getActiveNum();
+		for (int i = 0; i < activeNum; ++i) {
+			int index = activeSet.getActive(i);
+			Point2D point = points.get(offset + index);
+			int clusterIndex = activeSet.assign(index, point);
+			int originalClusterIndex = labels[offset + index];
+			if (clusterIndex != originalClusterIndex) {
+				if (originalClusterIndex != -1) {
+					clusters[originalClusterIndex].removePointAndDecreaseSum(point);
+				}
+				clusters[clusterIndex].addPointAndIncreaseSum(point);
+				labels[offset + index] = clusterIndex;
+				++moved;
+			}
+		}
+		metrics.end(Metrics.ASSIGN, begin);
+		if (metrics.isEnabled()) {
+			begin = metrics.begin();
+			for (int index = from; index < to; ++index) {
+				Point2D point = points.get(index);
+				metrics.addInertia(point.getWeight() * point.distanceTo(centroids[labels[index]]));
+			}
+			metrics.end(Metrics.ACCUMULATE, begin);
+		}
+		metrics.addMoved(moved);
+		return moved;
+	}
+
+	/**
+	 * Put the points back in the clusters of their restored labels
+	 */
+	@Override
+	public void restoreLabels(int offset, int end) {
+		for (int index = offset; index < end; ++index) {
+			clusters[labels[index]].addPointAndIncreaseSum(points.get(index));
+		}
+	}
+
+	@Override
+	public double distanceTo(int index, int cluster) {
+		return points.get(index).distanceTo(centroids[cluster]);
+	}
+
+	@Override
+	public int getWeight(int index) {
+		return points.get(index).getWeight();
+	}
+}
@@ -0,0 +1,139 @@
+package point;
+
+import java.util.List;
+
+import util.Metrics;
+import util.Options;
+
+/**
+ * Assignment pass of a slave of ParallelKMeansOnPoint over its points in an
+ * iteration: assign each point to a cluster, count the points that changed
+ * cluster and add them up into the clusters. The driver only schedules the
+ * passes and the messages between them, the pass decides how the points are
+ * stored and which of them are visited:
+ * 		DoublePass: points in double, nearest centroid by a PointAssignment (--assign)
+ * 		CompactPass: float, int16 or int32 points (--precision), see CompactPoints
+ * 		ActiveSetPass: only the points whose assignment may have changed (--active-set)
+ * Labels are indexed by point in the whole data set and shared with the driver.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public abstract class AssignmentPass {
+	// cluster number
+	protected int k;
+	// cluster of each point, -1 before its first assignment
+	protected int[] labels;
+	protected Metrics metrics;
+
+	protected AssignmentPass(int k, int[] labels, Metrics metrics) {
+		this.k = k;
+		this.labels = labels;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Called by every rank, before any pass is created
+	 * @throws IllegalArgumentException if the pass chosen by the options does not
+	 * support the other options
+	 */
+	public static void check(Options options) {
+		if (options.has("active-set")) {
+			// its own bounds, and clusters kept between iterations over the whole range
+			for (String option: new String[] {"assign", "precision", "pipeline", "balance"}) {
+				if (options.has(option)) {
+					throw new IllegalArgumentException("--active-set does not support --" + option);
+				}
+			}
+		} else if (!options.get("precision", "double").equals("double")) {
+			// a single set of centroids, and the slaves only keep the compact points
+			if (options.getInt("restarts", 1) > 1) {
+				throw new IllegalArgumentException("--precision does not support --restarts");
+			}
+			if (options.has("evaluate")) {
+				throw new IllegalArgumentException("--precision does not support --evaluate");
+			}
+		}
+	}
+
+	/**
+	 * @param points all data points
+	 * @param offset first point of the range of the slave
+	 * @param end end of the range of the slave
+	 * @return the pass chosen by the options
+	 */
+	public static AssignmentPass create(Options options, List<Point2D> points, int[] labels,
+			int k, int offset, int end, Metrics metrics) {
+		if (options.has("active-set")) {
+			return new ActiveSetPass(points, labels, k, offset, end, metrics);
+		}
+		String precision = options.get("precision", "double");
+		if (!precision.equals("double")) {
+			return new CompactPass(CompactPoints.create(precision, points, k), labels, k, metrics);
+		}
+		return new DoublePass(options.get("assign", "lloyd"), points, labels, k, offset, end, metrics);
+	}
+
+	/**
+	 * @return false if the pass made its own copy of the points, which the
+	 * slave then drops. The clusters only get the sums of their points.
+	 */
+	public boolean usesPoints() {
+		return true;
+	}
+
+	/**
+	 * Called in load balancing mode when the range of the slave changes
+	 */
+	public void setRange(int offset, int end) {
+	}
+
+	/**
+	 * Called once per iteration, before any point is assigned
+	 * @param centroids centroid points of the current iteration
+	 */
+	public abstract void setCentroids(Point2D[] centroids);
+
+	/**
+	 * @return the clusters to add the points of this iteration to
+	 */
+	public PointCluster[] startIteration() {
+		PointCluster[] clusters = new PointCluster[k];
+		for (int i = 0; i < k; ++i) {
+			clusters[i] = new PointCluster();
+		}
+		return clusters;
+	}
+
+	/**
+	 * Assign the points from index from (inclusive) to to (exclusive)
+	 * @param clusters clusters of startIteration()
+	 * @param partial if not null, sumX, sumY and weight of each cluster are added to it
+	 * @return number of points that changed cluster
+	 */
+	public abstract int assign(PointCluster[] clusters, int from, int to, double[] partial);
+
+	/**
+	 * Called after the labels of the range were restored from a checkpoint
+	 */
+	public void restoreLabels(int offset, int end) {
+	}
+
+	/**
+	 * @return square distance from the point to the centroid of the cluster,
+	 * of the centroids last set
+	 */
+	public abstract double distanceTo(int index, int cluster);
+
+	public abstract int getWeight(int index);
+
+	/**
+	 * Count the label of a point, moved if it is its first or another cluster
+	 * @return 1 if the point moved, 0 otherwise
+	 */
+	protected int setLabel(int index, int clusterIndex) {
+		int originalClusterIndex = labels[index];
+		labels[index] = clusterIndex;
+		return originalClusterIndex == -1 || clusterIndex != originalClusterIndex ? 1 : 0;
+	}
+}
@@ -0,0 +1,151 @@
+package point;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.StringTokenizer;
+
+/**
+ * Read CSV file, results is put in a String array.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class CSVReader {
+	private String fileName;
+	private FileReader fr;
+	private BufferedReader br;
+	private final static String separator = ",";
+	// number of characters consumed, bytes with completeLines
+	private long position;
+	// only read lines that end with "\n", a last line without one may still be being written
+	private boolean completeLines;
+	// bytes of the file from the offset on, read instead of br with completeLines
+	private InputStream in;
+	
+	public CSVReader(String fileName) {
+		this.fileName = fileName;
+		openFile();
+	}
+
+	/**
+	 * Reader of an append-only file, from an offset on. Only lines that end with
+	 * "\n" are read, so getPosition() is where the next reader starts.
+	 * @param fileName name of the CSV file
+	 * @param offset position of the first record to read, from getPosition() of an earlier reader
+	 */
+	public CSVReader(String fileName, long offset) {
+		this.fileName = fileName;
+		this.completeLines = true;
+		this.position = offset;
+		try {
+			FileInputStream fis = new FileInputStream(fileName);
+			// start right at the offset, the records before it are not read again
+			fis.getChannel().position(offset);
+			in = new BufferedInputStream(fis);
+		} catch (IOException e) {
+			System.out.println(fileName);
+			System.out.println("Fail to open input csv file at offset " + offset);
+			e.printStackTrace();
+		}
+	}
+	
+	private void openFile() {
+		try {
+			fr = new FileReader(fileName);
+		} catch (FileNotFoundException e) {
+			System.out.println(fileName);
+			System.out.println("Fail to open input csv file");
+			e.printStackTrace();
+		}
+		br = new BufferedReader(fr);
+	}
+	
+	/**
+	 * Treat one line in the CSV file as one record, 
+	 * use "," to separate fields in the record, blank lines are skipped
+	 * @return String array of all the fields in the record
+	 */
+	public String[] readRecord() {
+		StringTokenizer tokens = null;
+		String[] results = null;
+		try {
+			String line;
+			do {
+				if (completeLines) {
+					line = readCompleteLine();
+				} else {
+					line = br.readLine();
+					if (line != null) {
+						position += line.length() + 1;
+					}
+				}
+				if (line == null) {
+					closeFile();
+					return null;
+				}
+			} while (isBlank(line));
+			tokens = new StringTokenizer(line, separator);
+			int tokenNum = tokens.countTokens();
+			results = new String[tokenNum];
+			for (int i = 0; i < tokenNum; ++i) {
+				results[i] = tokens.nextToken();
+			}
+		} catch (IOException e) {
+			closeFile();
+			return null;
+		}
+		return results;
+	}
+	
+	/**
+	 * Read bytes up to the next "\n", so that the position is a byte offset
+	 * whatever the encoding
+	 * @return the next line without its "\n", null at the end of the file, or if
+	 * the last line has no "\n" yet
+	 */
+	private String readCompleteLine() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		int c;
+		while ((c = in.read()) != -1) {
+			if (c == '\n') {
+				position += bytes.size() + 1;
+				return bytes.toString("UTF-8");
+			}
+			bytes.write(c);
+		}
+		return null;
+	}
+
+	/**
+	 * @return true for a line without any record, e.g. the empty last line of a file
+	 */
+	public static boolean isBlank(String line) {
+		return line.trim().isEmpty();
+	}
+
+	/**
+	 * @return position right after the last record read
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	private void closeFile() {
+		try {
+			if (in != null) {
+				in.close();
+				return;
+			}
+			br.close();
+			fr.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package point;
+
+import util.Metrics;
+
+/**
+ * Assignment pass on the compact points of the reduced precision mode. Every
+ * slave keeps all points, so the range can move in load balancing mode. The
+ * clusters only get the sums, the points stay with the master.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class CompactPass extends AssignmentPass {
+	private CompactPoints compact;
+
+	public CompactPass(CompactPoints compact, int[] labels, int k, Metrics metrics) {
+		super(k, labels, metrics);
+		this.compact = compact;
+	}
+
+	@Override
+	public boolean usesPoints() {
+		return false;
+	}
+
+	/**
+	 * centroid conversions are computed once here, not per point
+	 */
+	@Override
+	public void setCentroids(Point2D[] centroids) {
+		compact.setCentroids(centroids);
+	}
+
+	@Override
+	public int assign(PointCluster[] clusters, int from, int to, double[] partial) {
+		long begin = metrics.begin();
+		int moved = 0;
+		if (!metrics.isEnabled()) {
+			// one pass, as in DoublePass
+			compact.startSums();
+			for (int index = from; index < to; ++index) {
+				int clusterIndex = compact.nearest(index);
+				moved += setLabel(index, clusterIndex);
+				compact.add(index, clusterIndex);
+			}
+		} else {
+			for (int index = from; index < to; ++index) {
+				moved += setLabel(index, compact.nearest(index));
+			}
+			metrics.end(Metrics.ASSIGN, begin);
+			begin = metrics.begin();
+			compact.startSums();
+			for (int index = from; index < to; ++index) {
+				compact.add(index, labels[index]);
+				metrics.addInertia(compact.getWeight(index) * compact.distanceTo(index, labels[index]));
+			}
+		}
+		for (int i = 0; i < k; ++i) {
+			clusters[i].addSummary(compact.getSumX(i), compact.getSumY(i), compact.getClusterWeight(i));
+			if (partial != null) {
+				partial[i] += compact.getSumX(i);
+				partial[k + i] += compact.getSumY(i);
+				partial[2 * k + i] += compact.getClusterWeight(i);
+			}
+		}
+		metrics.end(Metrics.ACCUMULATE, begin);
+		metrics.addMoved(moved);
+		return moved;
+	}
+
+	@Override
+	public double distanceTo(int index, int cluster) {
+		return compact.distanceTo(index, cluster);
+	}
+
+	@Override
+	public int getWeight(int index) {
+		return compact.getWeight(index);
+	}
+}
@@ -0,0 +1,85 @@
+package point;
+
+import java.util.List;
+
+/**
+ * Points of the parallel driver in a compact form, to halve or quarter the
+ * memory traffic of the assignment:
+ * 		float: float32 coordinates
+ * 		int16, int32: fixed point, one scale for both axes from the bounding box
+ * Distances are computed on the compact form directly. Sums are accumulated in
+ * double (float) or long (fixed point) and only converted back per cluster.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public abstract class CompactPoints {
+	// weight of each point, null when they are all 1
+	protected int[] weights;
+	protected int k;
+
+	protected CompactPoints(List<Point2D> points, int k) {
+		this.k = k;
+		for (int i = 0; i < points.size(); ++i) {
+			if (points.get(i).getWeight() != 1) {
+				weights = new int[points.size()];
+				for (int j = 0; j < weights.length; ++j) {
+					weights[j] = points.get(j).getWeight();
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @param precision float, int16 or int32
+	 */
+	public static CompactPoints create(String precision, List<Point2D> points, int k) {
+		if (precision.equals("float")) {
+			return new FloatPoints(points, k);
+		} else if (precision.equals("int16")) {
+			return new Fixed16Points(points, k);
+		} else if (precision.equals("int32")) {
+			return new Fixed32Points(points, k);
+		}
+		throw new IllegalArgumentException("Unknown precision " + precision);
+	}
+
+	public int getWeight(int index) {
+		return weights == null ? 1 : weights[index];
+	}
+
+	/**
+	 * convert the centroids into the compact coordinates
+	 */
+	public abstract void setCentroids(Point2D[] centroids);
+
+	/**
+	 * @return index of the centroid nearest to the point
+	 */
+	public abstract int nearest(int index);
+
+	/**
+	 * @return square distance from the point to the centroid, in input units
+	 */
+	public abstract double distanceTo(int index, int cluster);
+
+	/**
+	 * clear the sums of all clusters
+	 */
+	public abstract void startSums();
+
+	/**
+	 * add the weighted point to the sums of the cluster
+	 */
+	public abstract void add(int index, int cluster);
+
+	public abstract double getSumX(int cluster);
+
+	public abstract double getSumY(int cluster);
+
+	/**
+	 * @return total weight of the points added to the cluster
+	 */
+	public abstract int getClusterWeight(int cluster);
+}
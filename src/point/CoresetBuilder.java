@@ -0,0 +1,245 @@
+package point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Build a weighted coreset of a CSV file of 2D points with sensitivity sampling.
+ * Memory only depends on the coreset size, never on the number of records.
+ *
+ * 1. first pass: reservoir sample of coresetSize records, clustered into a
+ *    rough solution of k centroids.
+ * 2. second pass: each record gets a sensitivity from the rough solution
+ *    (its share of the cost plus the inverse size of its cluster), and coresetSize
+ *    records are drawn with probability proportional to it (weighted reservoir,
+ *    Efraimidis-Spirakis). Each drawn record is weighted by the inverse of its
+ *    sampling probability, rounded up or down at random so that the expected total
+ *    weight stays the number of records.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class CoresetBuilder {
+	// Lloyd iterations used for the rough solution
+	private static final int ROUGH_ITER = 10;
+
+	// cluster number
+	private int k;
+	// number of weighted points in the coreset
+	private int coresetSize;
+	private Random random;
+	// number of records in the file
+	private long recordNum;
+
+	public CoresetBuilder(int k, int coresetSize) {
+		this.k = k;
+		this.coresetSize = coresetSize;
+		this.random = new Random();
+	}
+
+	/**
+	 * @param fileName name of the CSV file
+	 * @return weighted points of the coreset
+	 */
+	public List<Point2D> build(String fileName) {
+		List<Point2D> sample = sample(fileName);
+		Point2D[] rough = roughSolution(sample);
+		return drawCoreset(fileName, sample, rough);
+	}
+
+	/**
+	 * @return number of records read in the last pass over the file
+	 */
+	public long getRecordNum() {
+		return recordNum;
+	}
+
+	/**
+	 * uniform reservoir sample of the records
+	 */
+	private List<Point2D> sample(String fileName) {
+		List<Point2D> sample = new ArrayList<Point2D>(coresetSize);
+		CSVReader csvReader = new CSVReader(fileName);
+		String[] coordinates = null;
+		recordNum = 0;
+		while ((coordinates = csvReader.readRecord()) != null) {
+			++recordNum;
+			if (sample.size() < coresetSize) {
+				sample.add(parse(coordinates));
+			} else {
+				long slot = (long) (random.nextDouble() * recordNum);
+				if (slot < coresetSize) {
+					sample.set((int) slot, parse(coordinates));
+				}
+			}
+		}
+		return sample;
+	}
+
+	/**
+	 * k-means++ seeding followed by a few Lloyd iterations on the sample
+	 */
+	private Point2D[] roughSolution(List<Point2D> sample) {
+		int sampleNum = sample.size();
+		Point2D[] centroids = new Point2D[k];
+		double[] minDistance = new double[sampleNum];
+		centroids[0] = sample.get(random.nextInt(sampleNum));
+		for (int i = 0; i < sampleNum; ++i) {
+			minDistance[i] = sample.get(i).distanceTo(centroids[0]);
+		}
+		for (int c = 1; c < k; ++c) {
+			double total = 0;
+			for (int i = 0; i < sampleNum; ++i) {
+				total += minDistance[i];
+			}
+			double target = random.nextDouble() * total;
+			int chosen = sampleNum - 1;
+			for (int i = 0; i < sampleNum; ++i) {
+				target -= minDistance[i];
+				if (target < 0) {
+					chosen = i;
+					break;
+				}
+			}
+			centroids[c] = sample.get(chosen);
+			for (int i = 0; i < sampleNum; ++i) {
+				minDistance[i] = Math.min(minDistance[i], sample.get(i).distanceTo(centroids[c]));
+			}
+		}
+		LloydAssignment assignment = new LloydAssignment(k);
+		for (int iter = 0; iter < ROUGH_ITER; ++iter) {
+			assignment.setCentroids(centroids);
+			double[] sumX = new double[k];
+			double[] sumY = new double[k];
+			int[] count = new int[k];
+			for (int i = 0; i < sampleNum; ++i) {
+				Point2D point = sample.get(i);
+				int c = assignment.assign(i, point);
+				sumX[c] += point.getX();
+				sumY[c] += point.getY();
+				++count[c];
+			}
+			Point2D[] newCentroids = new Point2D[k];
+			for (int c = 0; c < k; ++c) {
+				newCentroids[c] = count[c] == 0 ? centroids[c]
+						: new Point2D(sumX[c] / count[c], sumY[c] / count[c]);
+			}
+			centroids = newCentroids;
+		}
+		return centroids;
+	}
+
+	/**
+	 * sensitivity sampling over the second pass of the file
+	 */
+	private List<Point2D> drawCoreset(String fileName, List<Point2D> sample, Point2D[] rough) {
+		// estimate cluster sizes and total cost of the rough solution from the sample
+		LloydAssignment assignment = new LloydAssignment(k);
+		assignment.setCentroids(rough);
+		double scale = (double) recordNum / sample.size();
+		double[] clusterSize = new double[k];
+		double cost = 0;
+		for (int i = 0; i < sample.size(); ++i) {
+			Point2D point = sample.get(i);
+			int c = assignment.assign(i, point);
+			clusterSize[c] += scale;
+			cost += point.distanceTo(rough[c]) * scale;
+		}
+
+		// weighted reservoir: keep the coresetSize largest keys u^(1 / sensitivity)
+		int capacity = (int) Math.min(coresetSize, recordNum);
+		double[] keys = new double[capacity];
+		Point2D[] points = new Point2D[capacity];
+		double[] sensitivities = new double[capacity];
+		int heapSize = 0;
+		double totalSensitivity = 0;
+		CSVReader csvReader = new CSVReader(fileName);
+		String[] coordinates = null;
+		while ((coordinates = csvReader.readRecord()) != null) {
+			Point2D point = parse(coordinates);
+			int c = assignment.assign(0, point);
+			double sensitivity = (cost > 0 ? point.distanceTo(rough[c]) / cost : 0)
+					+ 1 / Math.max(clusterSize[c], 1);
+			totalSensitivity += sensitivity;
+			double key = Math.log(random.nextDouble()) / sensitivity;
+			if (heapSize < capacity) {
+				heapSize = pushHeap(keys, points, sensitivities, heapSize, key, point, sensitivity);
+			} else if (key > keys[0]) {
+				keys[0] = key;
+				points[0] = point;
+				sensitivities[0] = sensitivity;
+				siftDown(keys, points, sensitivities, heapSize);
+			}
+		}
+
+		List<Point2D> coreset = new ArrayList<Point2D>(heapSize);
+		for (int i = 0; i < heapSize; ++i) {
+			double weight = totalSensitivity / (heapSize * sensitivities[i]);
+			int rounded = (int) Math.floor(weight);
+			if (random.nextDouble() < weight - rounded) {
+				++rounded;
+			}
+			if (rounded == 0) {  // the other records of the coreset stand for it
+				continue;
+			}
+			points[i].setWeight(rounded);
+			coreset.add(points[i]);
+		}
+		return coreset;
+	}
+
+	/**
+	 * push into the min-heap on keys
+	 * @return new heap size
+	 */
+	private int pushHeap(double[] keys, Point2D[] points, double[] sensitivities, int heapSize,
+			double key, Point2D point, double sensitivity) {
+		int i = heapSize;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (keys[parent] <= key) {
+				break;
+			}
+			keys[i] = keys[parent];
+			points[i] = points[parent];
+			sensitivities[i] = sensitivities[parent];
+			i = parent;
+		}
+		keys[i] = key;
+		points[i] = point;
+		sensitivities[i] = sensitivity;
+		return heapSize + 1;
+	}
+
+	/**
+	 * restore the min-heap after the root was replaced
+	 */
+	private void siftDown(double[] keys, Point2D[] points, double[] sensitivities, int heapSize) {
+		double key = keys[0];
+		Point2D point = points[0];
+		double sensitivity = sensitivities[0];
+		int i = 0;
+		while (2 * i + 1 < heapSize) {
+			int child = 2 * i + 1;
+			if (child + 1 < heapSize && keys[child + 1] < keys[child]) {
+				++child;
+			}
+			if (key <= keys[child]) {
+				break;
+			}
+			keys[i] = keys[child];
+			points[i] = points[child];
+			sensitivities[i] = sensitivities[child];
+			i = child;
+		}
+		keys[i] = key;
+		points[i] = point;
+		sensitivities[i] = sensitivity;
+	}
+
+	private Point2D parse(String[] coordinates) {
+		return new Point2D(Double.parseDouble(coordinates[0]),
+				Double.parseDouble(coordinates[1]));
+	}
+}
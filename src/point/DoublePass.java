@@ -0,0 +1,98 @@
+package point;
+
+import java.util.List;
+
+import util.Metrics;
+
+/**
+ * Assignment pass on the points in double precision: every point of the range
+ * goes to the nearest centroid found by a PointAssignment strategy.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class DoublePass extends AssignmentPass {
+	private List<Point2D> points;
+	// name of the assignment strategy, created again when the range changes
+	private String assignName;
+	private PointAssignment assignment;
+	// first point of the range, index 0 of the strategy
+	private int offset;
+	private Point2D[] centroids;
+
+	public DoublePass(String assignName, List<Point2D> points, int[] labels, int k, int offset, int end,
+			Metrics metrics) {
+		super(k, labels, metrics);
+		this.points = points;
+		this.assignName = assignName;
+		setRange(offset, end);
+	}
+
+	/**
+	 * The strategy starts again on the new range
+	 */
+	@Override
+	public void setRange(int offset, int end) {
+		this.offset = offset;
+		this.assignment = PointAssignment.create(assignName, k, end - offset);
+	}
+
+	@Override
+	public void setCentroids(Point2D[] centroids) {
+		this.centroids = centroids;
+		assignment.setCentroids(centroids);
+	}
+
+	@Override
+	public int assign(PointCluster[] clusters, int from, int to, double[] partial) {
+		int moved = 0;
+		if (!metrics.isEnabled()) {
+			// one pass, each point is fetched once
+			for (int index = from; index < to; ++index) {
+				Point2D point = points.get(index);
+				int clusterIndex = assignment.assign(index - offset, point);
+				moved += setLabel(index, clusterIndex);
+				accumulate(clusters, point, clusterIndex, partial);
+			}
+			return moved;
+		}
+		// assign all points first, then add them up, so the two can be timed apart
+		long begin = metrics.begin();
+		for (int index = from; index < to; ++index) {
+			moved += setLabel(index, assignment.assign(index - offset, points.get(index)));
+		}
+		metrics.end(Metrics.ASSIGN, begin);
+		begin = metrics.begin();
+		for (int index = from; index < to; ++index) {
+			Point2D point = points.get(index);
+			int clusterIndex = labels[index];
+			accumulate(clusters, point, clusterIndex, partial);
+			metrics.addInertia(point.getWeight() * point.distanceTo(centroids[clusterIndex]));
+		}
+		metrics.end(Metrics.ACCUMULATE, begin);
+		metrics.addMoved(moved);
+		return moved;
+	}
+
+	/**
+	 * Add a point to its cluster, and to partial if not null
+	 */
+	private void accumulate(PointCluster[] clusters, Point2D point, int clusterIndex, double[] partial) {
+		clusters[clusterIndex].addPointAndIncreaseSum(point);
+		if (partial != null) {
+			partial[clusterIndex] += point.getX() * point.getWeight();
+			partial[k + clusterIndex] += point.getY() * point.getWeight();
+			partial[2 * k + clusterIndex] += point.getWeight();
+		}
+	}
+
+	@Override
+	public double distanceTo(int index, int cluster) {
+		return points.get(index).distanceTo(centroids[cluster]);
+	}
+
+	@Override
+	public int getWeight(int index) {
+		return points.get(index).getWeight();
+	}
+}
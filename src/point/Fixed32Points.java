@@ -0,0 +1,119 @@
+package point;
+
+import java.util.List;
+
+/**
+ * Points with int32 fixed point coordinates: q = (x - minX) / scale, stored
+ * with an offset of 2147483648L to fit the signed type. The same scale on both axes
+ * keeps the nearest centroid the same, so distances are computed on q.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class Fixed32Points extends CompactPoints {
+	// largest q
+	private static final double MAX_Q = 4294967295.0;
+	private static final long OFFSET = 2147483648L;
+
+	private int[] x;
+	private int[] y;
+	private double minX;
+	private double minY;
+	private double scale;
+	// centroids in q units
+	private double[] centroidX;
+	private double[] centroidY;
+	private long[] sumX;
+	private long[] sumY;
+	private int[] clusterWeights;
+
+	public Fixed32Points(List<Point2D> points, int k) {
+		super(points, k);
+		minX = minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for (Point2D point: points) {
+			minX = Math.min(minX, point.getX());
+			minY = Math.min(minY, point.getY());
+			maxX = Math.max(maxX, point.getX());
+			maxY = Math.max(maxY, point.getY());
+		}
+		scale = Math.max(maxX - minX, maxY - minY) / MAX_Q;
+		if (!(scale > 0)) {  // no points, or all the same
+			scale = 1;
+		}
+		x = new int[points.size()];
+		y = new int[points.size()];
+		for (int i = 0; i < x.length; ++i) {
+			x[i] = (int) (Math.round((points.get(i).getX() - minX) / scale) - OFFSET);
+			y[i] = (int) (Math.round((points.get(i).getY() - minY) / scale) - OFFSET);
+		}
+		centroidX = new double[k];
+		centroidY = new double[k];
+		sumX = new long[k];
+		sumY = new long[k];
+		clusterWeights = new int[k];
+	}
+
+	@Override
+	public void setCentroids(Point2D[] centroids) {
+		for (int c = 0; c < k; ++c) {
+			centroidX[c] = (centroids[c].getX() - minX) / scale - OFFSET;
+			centroidY[c] = (centroids[c].getY() - minY) / scale - OFFSET;
+		}
+	}
+
+	@Override
+	public int nearest(int index) {
+		double px = x[index], py = y[index];
+		double minDistance = Double.MAX_VALUE;
+		int minIndex = 0;
+		for (int c = 0; c < k; ++c) {
+			double dx = px - centroidX[c];
+			double dy = py - centroidY[c];
+			double distance = dx * dx + dy * dy;
+			if (distance < minDistance) {
+				minDistance = distance;
+				minIndex = c;
+			}
+		}
+		return minIndex;
+	}
+
+	@Override
+	public double distanceTo(int index, int cluster) {
+		double dx = x[index] - centroidX[cluster];
+		double dy = y[index] - centroidY[cluster];
+		return (dx * dx + dy * dy) * scale * scale;
+	}
+
+	@Override
+	public void startSums() {
+		for (int c = 0; c < k; ++c) {
+			sumX[c] = sumY[c] = 0;
+			clusterWeights[c] = 0;
+		}
+	}
+
+	@Override
+	public void add(int index, int cluster) {
+		int weight = getWeight(index);
+		sumX[cluster] += (x[index] + OFFSET) * weight;
+		sumY[cluster] += (y[index] + OFFSET) * weight;
+		clusterWeights[cluster] += weight;
+	}
+
+	@Override
+	public double getSumX(int cluster) {
+		return minX * clusterWeights[cluster] + scale * sumX[cluster];
+	}
+
+	@Override
+	public double getSumY(int cluster) {
+		return minY * clusterWeights[cluster] + scale * sumY[cluster];
+	}
+
+	@Override
+	public int getClusterWeight(int cluster) {
+		return clusterWeights[cluster];
+	}
+}
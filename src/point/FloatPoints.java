@@ -0,0 +1,97 @@
+package point;
+
+import java.util.List;
+
+/**
+ * Points with float32 coordinates, distances computed in float
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class FloatPoints extends CompactPoints {
+	private float[] x;
+	private float[] y;
+	private float[] centroidX;
+	private float[] centroidY;
+	private double[] sumX;
+	private double[] sumY;
+	private int[] clusterWeights;
+
+	public FloatPoints(List<Point2D> points, int k) {
+		super(points, k);
+		x = new float[points.size()];
+		y = new float[points.size()];
+		for (int i = 0; i < x.length; ++i) {
+			x[i] = (float) points.get(i).getX();
+			y[i] = (float) points.get(i).getY();
+		}
+		centroidX = new float[k];
+		centroidY = new float[k];
+		sumX = new double[k];
+		sumY = new double[k];
+		clusterWeights = new int[k];
+	}
+
+	@Override
+	public void setCentroids(Point2D[] centroids) {
+		for (int c = 0; c < k; ++c) {
+			centroidX[c] = (float) centroids[c].getX();
+			centroidY[c] = (float) centroids[c].getY();
+		}
+	}
+
+	@Override
+	public int nearest(int index) {
+		float px = x[index], py = y[index];
+		float minDistance = Float.MAX_VALUE;
+		int minIndex = 0;
+		for (int c = 0; c < k; ++c) {
+			float dx = px - centroidX[c];
+			float dy = py - centroidY[c];
+			float distance = dx * dx + dy * dy;
+			if (distance < minDistance) {
+				minDistance = distance;
+				minIndex = c;
+			}
+		}
+		return minIndex;
+	}
+
+	@Override
+	public double distanceTo(int index, int cluster) {
+		double dx = x[index] - centroidX[cluster];
+		double dy = y[index] - centroidY[cluster];
+		return dx * dx + dy * dy;
+	}
+
+	@Override
+	public void startSums() {
+		for (int c = 0; c < k; ++c) {
+			sumX[c] = sumY[c] = 0;
+			clusterWeights[c] = 0;
+		}
+	}
+
+	@Override
+	public void add(int index, int cluster) {
+		int weight = getWeight(index);
+		sumX[cluster] += (double) x[index] * weight;
+		sumY[cluster] += (double) y[index] * weight;
+		clusterWeights[cluster] += weight;
+	}
+
+	@Override
+	public double getSumX(int cluster) {
+		return sumX[cluster];
+	}
+
+	@Override
+	public double getSumY(int cluster) {
+		return sumY[cluster];
+	}
+
+	@Override
+	public int getClusterWeight(int cluster) {
+		return clusterWeights[cluster];
+	}
+}
@@ -0,0 +1,168 @@
+package point;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import util.KMeansModel;
+
+/**
+ * State of SequentialKMeansOnPoint on an append-only input file, kept between runs:
+ * 		1. prefix.state: how far the input file has been consumed (byte offset and records),
+ * 			and the squared distance sum of every cluster to its centroid
+ * 		2. prefix.model: centroid and point number of every cluster (see KMeansModel),
+ * 			the centroid is the mean of the records of the cluster
+ * 		3. prefix.labels: label of every consumed record, one int per record; it is
+ * 			appended before the state is saved, so labels past the saved record
+ * 			number are from a run that did not finish, and are cut off by the next one
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class IncrementalState {
+	private static final int MAGIC = 0x4b4d4953;
+
+	private long offset;
+	private long recordNum;
+	private KMeansModel model;
+	// sum of the squared distances of the records of each cluster to its centroid
+	private double[] inertias;
+
+	/**
+	 * @param prefix prefix of the state files
+	 * @return the saved state, null if there is none yet
+	 */
+	public static IncrementalState load(String prefix) throws IOException {
+		File file = new File(prefix + ".state");
+		if (!file.exists()) {
+			return null;
+		}
+		IncrementalState state = new IncrementalState();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " is not a state file");
+			}
+			state.offset = in.readLong();
+			state.recordNum = in.readLong();
+			state.inertias = new double[in.readInt()];
+			for (int i = 0; i < state.inertias.length; ++i) {
+				state.inertias[i] = in.readDouble();
+			}
+		} finally {
+			in.close();
+		}
+		state.model = KMeansModel.read(prefix + ".model");
+		if (state.inertias.length != state.model.getK()) {
+			throw new IOException(file + " does not match " + prefix + ".model");
+		}
+		return state;
+	}
+
+	/**
+	 * Save the state after a run, each file is replaced atomically
+	 * @param prefix prefix of the state files
+	 * @param offset position in the input file up to which records were consumed
+	 * @param recordNum number of records consumed
+	 * @param model clusters of all the consumed records
+	 * @param inertias squared distance sum of the records of each cluster to its centroid
+	 */
+	public static void save(String prefix, long offset, long recordNum, 
+			KMeansModel model, double[] inertias) throws IOException {
+		// model first: a new offset must never come with an old model
+		model.write(prefix + ".model");
+		File file = new File(prefix + ".state");
+		File tmp = new File(prefix + ".state.tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeLong(offset);
+			out.writeLong(recordNum);
+			out.writeInt(inertias.length);
+			for (double inertia: inertias) {
+				out.writeDouble(inertia);
+			}
+		} finally {
+			out.close();
+		}
+		if (!tmp.renameTo(file)) {
+			file.delete();
+			if (!tmp.renameTo(file)) {
+				throw new IOException("Fail to replace " + file);
+			}
+		}
+	}
+
+	/**
+	 * Append the labels of the records consumed in this run
+	 * @param prefix prefix of the state files
+	 * @param recordNum number of records consumed by earlier runs, the label file
+	 * is cut to their labels first; 0 to start a new label file
+	 * @param points records consumed in this run, in file order
+	 */
+	public static void appendLabels(String prefix, long recordNum, 
+			List<Point2D> points) throws IOException {
+		RandomAccessFile labels = new RandomAccessFile(prefix + ".labels", "rw");
+		try {
+			labels.setLength(Math.min(labels.length(), 4 * recordNum));
+		} finally {
+			labels.close();
+		}
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(prefix + ".labels", true)));
+		try {
+			for (Point2D point: points) {
+				out.writeInt(point.getCluster());
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+
+	public long getRecordNum() {
+		return recordNum;
+	}
+
+	public int getK() {
+		return model.getK();
+	}
+
+	/**
+	 * @return cluster i with the sums of the records consumed by previous runs
+	 */
+	public PointCluster getCluster(int i) {
+		double[] centroid = model.getPointCentroids()[i];
+		long count = model.getCounts()[i];
+		PointCluster pc = new PointCluster();
+		pc.setCentroid(new Point2D(centroid[0], centroid[1]));
+		if (count != 0) {
+			// the centroid is the mean of the points of the cluster
+			pc.addSummary(centroid[0] * count, centroid[1] * count, (int) count);
+		}
+		return pc;
+	}
+
+	/**
+	 * The records of earlier runs are not kept, but the squared distance sum of
+	 * a cluster to any point c follows from the one to their mean m:
+	 * 		sum |x - c|^2 = sum |x - m|^2 + n |m - c|^2
+	 * @return squared distance sum of the records of cluster i consumed by previous
+	 * runs to the centroid
+	 */
+	public double getInertia(int i, Point2D centroid) {
+		double[] mean = model.getPointCentroids()[i];
+		long count = model.getCounts()[i];
+		return inertias[i] + count * centroid.distanceTo(new Point2D(mean[0], mean[1]));
+	}
+}
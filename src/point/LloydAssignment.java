@@ -0,0 +1,36 @@
+package point;
+
+/**
+ * Plain Lloyd assignment: compare each point with all k centroids.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class LloydAssignment extends PointAssignment {
+	// cluster number
+	private int k;
+	private Point2D[] centroids;
+
+	public LloydAssignment(int k) {
+		this.k = k;
+	}
+
+	@Override
+	public void setCentroids(Point2D[] centroids) {
+		this.centroids = centroids;
+	}
+
+	@Override
+	public int assign(int index, Point2D point) {
+		double minDistance = Double.MAX_VALUE;
+		int minIndex = 0;
+		for (int i = 0; i < k; ++i) {
+			double distance = point.distanceTo(centroids[i]);
+			if (distance < minDistance) {
+				minDistance = distance;
+				minIndex = i;
+			}
+		}
+		return minIndex;
+	}
+}
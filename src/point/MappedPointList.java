@@ -0,0 +1,82 @@
+package point;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import util.SharedDataset;
+
+/**
+ * Read-only list of the points of a shared dataset. Records are x, y (doubles)
+ * and weight (int); get() makes a new Point2D every time, so the cluster of a
+ * point has to be kept by the caller.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class MappedPointList extends AbstractList<Point2D> implements RandomAccess {
+	public static final int RECORD_SIZE = 20;
+
+	private SharedDataset dataset;
+	// points of a range that must keep their identity, e.g. in the clusters of active set mode
+	private Point2D[] cache;
+	private int cacheStart;
+
+	public MappedPointList(SharedDataset dataset) {
+		this.dataset = dataset;
+	}
+
+	/**
+	 * Records of the points, to write a shared dataset
+	 */
+	public static SharedDataset.Records toRecords(final List<Point2D> points) {
+		return new SharedDataset.Records() {
+			@Override
+			public int getRecordNum() {
+				return points.size();
+			}
+
+			@Override
+			public int getRecordSize() {
+				return RECORD_SIZE;
+			}
+
+			@Override
+			public void put(int index, ByteBuffer buffer) {
+				Point2D point = points.get(index);
+				buffer.putDouble(point.getX()).putDouble(point.getY()).putInt(point.getWeight());
+			}
+		};
+	}
+
+	/**
+	 * From now on, return the same objects for the points from index start (inclusive)
+	 * to end (exclusive)
+	 */
+	public void cache(int start, int end) {
+		Point2D[] range = new Point2D[end - start];
+		for (int i = 0; i < range.length; ++i) {
+			range[i] = get(start + i);
+		}
+		cacheStart = start;
+		cache = range;
+	}
+
+	@Override
+	public Point2D get(int index) {
+		if (cache != null && index >= cacheStart && index < cacheStart + cache.length) {
+			return cache[index - cacheStart];
+		}
+		ByteBuffer segment = dataset.getSegment(index);
+		int position = dataset.getPosition(index);
+		Point2D point = new Point2D(segment.getDouble(position), segment.getDouble(position + 8));
+		point.setWeight(segment.getInt(position + 16));
+		return point;
+	}
+
+	@Override
+	public int size() {
+		return dataset.getRecordNum();
+	}
+}
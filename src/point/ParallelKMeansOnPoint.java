@@ -0,0 +1,1526 @@
+package point;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import comm.Communicator;
+import comm.LocalCommunicator;
+import comm.MPJCommunicator;
+import comm.MeteredCommunicator;
+import comm.Request;
+import comm.TreeReducer;
+import mpi.*;
+import util.Checkpointer;
+import util.ClusterEvaluation;
+import util.KMeansModel;
+import util.Metrics;
+import util.Options;
+import util.ShardedOutput;
+import util.SharedDataset;
+import util.Tracer;
+
+/**
+ * Parallel version of K means on 2D points.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class ParallelKMeansOnPoint {
+
+	// all data points
+	private List<Point2D> allDataPoints;
+	// cluster of each point, kept here and not in the points so they can be shared
+	private int[] labels;
+	// total data point Number
+	private int pointNum;
+	// cluster number
+	private int k;
+	// maximum iterations to run k means
+	private int maxIter;
+	// list of k clusters
+	private PointCluster[] pointClusters;
+	// k centroid points
+	private Point2D[] centroids;
+
+	private Communicator comm;
+	private int rank;
+	private int size;
+	// offset and len denote which range of data points the slave node should process
+	private int offset;
+	private int len;
+	// slaves: assignment of the points of the range in each iteration, which depends
+	// on --assign, --precision and --active-set
+	private AssignmentPass pass;
+	// master stops once no more than this fraction of points moved in an iteration
+	private double movedThreshold;
+	// optional periodic checkpoints: centroids by the master, labels by each slave
+	private Checkpointer checkpointer;
+	private boolean checkpointLabels;
+	// iteration of the checkpoint the run restarted from, 0 for a fresh run
+	private int startIter;
+	// pipelined mode: number of chunks each slave splits its range into, 0 when off
+	private int pipelineChunks;
+	// tree reduction of the moved counts and sums, null to receive from each slave in turn
+	private TreeReducer reducer;
+	// load balancing mode: the points are split into chunks, and between iterations
+	// the master maps runs of consecutive chunks to the slaves by their throughput.
+	// Slave r owns chunks firstChunk[r] to firstChunk[r + 1] - 1.
+	private int balanceChunks;
+	private int[] firstChunk;
+	// master: smoothed points per second of each slave
+	private double[] throughput;
+	// master: iteration the run stopped at
+	private int iterationNum;
+	// per-iteration spans, bytes, moved points and inertia of this rank, and the
+	// CSV file rank 0 writes them to (null to only print the totals)
+	private Metrics metrics;
+	private String metricsFileName;
+	// optional Chrome trace of the spans of this rank, written to files of this prefix
+	private Tracer tracer;
+	private String traceFileName;
+	// reduced precision mode: float, int16 or int32 storage of the points on the
+	// slaves, which then send labels instead of points at the end; null for double
+	private String precision;
+	// master: largest fraction of points the compact labels may assign differently
+	// from double precision, checked at the end if not negative
+	private double precisionTolerance;
+	// sharded output: each slave writes the labels of its range and the master only
+	// gets the sums and SSE of each cluster, binary or text; null to gather the points
+	private String shardFormat;
+	// master, sharded output: first and end point of each slave, SSE of each cluster
+	private int[] shardRanges;
+	private double[] clusterSSE;
+	// summary mode: count, mean, SSE and largest radius of each cluster, computed
+	// where the points are and written to this file, "" for the output file itself,
+	// which then has no listing of the points; null when off
+	private String summaryFileName;
+	// master, summary mode: largest distance of a point of each cluster to its mean
+	private double[] clusterRadius;
+	// restarts mode: number of random initializations run together before the
+	// main loop, which starts from the one of lowest SSE, and their iteration cap
+	private int restartNum;
+	private int restartIter;
+	// evaluation: SSE, Davies-Bouldin index and sampled silhouette of the result,
+	// measured where the points are, the confidence level of the silhouette and
+	// an optional CSV file of the results; 0 samples when off
+	private int evaluateSamples;
+	private double evaluateLevel;
+	private String evaluationFileName;
+
+	public ParallelKMeansOnPoint(String fileName, int k, int maxIter) {
+		this(new MPJCommunicator(), fileName, k, maxIter, new Options());
+	}
+
+	public ParallelKMeansOnPoint(Communicator comm, String fileName, int k, int maxIter, Options options) {
+		this.rank = comm.rank();
+		this.size = comm.size();
+		this.metrics = new Metrics(options.has("metrics"), rank);
+		this.comm = metrics.isEnabled() ? new MeteredCommunicator(comm, metrics) : comm;
+		if (!options.get("metrics", "true").equals("true")) {
+			this.metricsFileName = options.get("metrics", null);
+		}
+		this.traceFileName = options.get("trace", null);
+		this.tracer = new Tracer(traceFileName, this.comm);
+		this.k = k;
+		this.maxIter = maxIter;
+		long begin = tracer.begin();
+		if (options.has("shared-dataset")) {
+			loadSharedData(fileName, options.get("shared-dataset", null), options.has("dedup"),
+					options.has("shared-dataset-cleanup"));
+		} else {
+			this.allDataPoints = new ArrayList<Point2D>();
+			loadData(fileName, options.has("dedup"));
+		}
+		tracer.end("loadData", 0, begin);
+		this.pointNum = allDataPoints.size();
+		this.labels = new int[pointNum];
+		Arrays.fill(labels, -1);
+		this.centroids = new Point2D[k];
+		this.len = pointNum / (size - 1);
+		this.offset = len * (rank - 1);
+		this.movedThreshold = options.getDouble("moved-threshold", 0);
+		AssignmentPass.check(options);
+		this.pipelineChunks = options.getInt("pipeline", 0);
+		String reduce = options.get("reduce", "linear");
+		if (!reduce.equals("linear")) {
+			this.reducer = new TreeReducer(this.comm, reduce, 10);
+		}
+		// the mapping goes out with the centroids, so neither the pipelined mode nor
+		// recursive doubling is balanced
+		if (pipelineChunks == 0 && (reducer == null || !reducer.isAllReduce())) {
+			this.balanceChunks = Math.min(options.getInt("balance", 0), pointNum);
+		}
+		if (balanceChunks > 0) {
+			// start with the same number of chunks on every slave
+			firstChunk = new int[size + 1];
+			for (int r = 1; r <= size; ++r) {
+				firstChunk[r] = (int) ((long) balanceChunks * (r - 1) / (size - 1));
+			}
+			throughput = new double[size];
+			offset = getChunkStart(firstChunk[rank]);
+			len = getChunkStart(firstChunk[rank + 1]) - offset;
+		}
+		if (!options.get("precision", "double").equals("double")) {
+			this.precision = options.get("precision", null);
+			this.precisionTolerance = options.getDouble("precision-check", -1);
+		}
+		if (options.has("shards")) {
+			if (options.has("dedup")) {  // a label per weighted point is not one per record
+				throw new IllegalArgumentException("--shards does not support --dedup");
+			}
+			this.shardFormat = ShardedOutput.getFormat(options.get("shards", null));
+		}
+		if (options.has("summary")) {
+			String summary = options.get("summary", null);
+			this.summaryFileName = summary.equals("true") ? "" : summary;
+		}
+		this.restartNum = options.getInt("restarts", 1);
+		this.restartIter = options.getInt("restart-iter", maxIter);
+		if (options.has("evaluate")) {
+			String samples = options.get("evaluate", null);
+			this.evaluateSamples = samples.equals("true") ? 1000 : Integer.parseInt(samples);
+			this.evaluateLevel = options.getDouble("confidence", 0.95);
+			this.evaluationFileName = options.get("evaluate-out", null);
+		}
+		if (rank == 0) {   // master initialize centroid points
+			if (options.has("init-model")) {
+				initializeClusterFromModel(options.get("init-model", null));
+			} else {
+				initializeCluster();
+			}
+		} else {
+			pass = AssignmentPass.create(options, allDataPoints, labels, k, offset, getRangeEnd(), metrics);
+			if (!pass.usesPoints()) {
+				allDataPoints = null;
+			}
+		}
+		if (options.has("checkpoint-dir")) {
+			checkpointLabels = options.has("checkpoint-labels");
+			checkpointer = new Checkpointer(options.get("checkpoint-dir", null),
+					options.getInt("checkpoint-every", 10), checkpointLabels ? size - 1 : 0);
+			if (options.has("restart")) {
+				restart();
+			}
+		}
+	}
+
+	/**
+	 * Resume from the latest consistent checkpoint: the master takes its centroids,
+	 * each slave the labels of its points if they were saved
+	 */
+	private void restart() {
+		int[] latest = new int[1];
+		if (rank == 0) {
+			latest[0] = checkpointer.findLatest();
+			if (latest[0] > 0) {
+				try {
+					double[][] modelCentroids = checkpointer.loadModel(latest[0]).getPointCentroids();
+					for (int i = 0; i < k; ++i) {
+						centroids[i] = new Point2D(modelCentroids[i][0], modelCentroids[i][1]);
+					}
+					System.out.println("Restart from iteration " + latest[0]);
+				} catch (IOException e) {
+					System.out.println("Fail to load checkpoint, start from scratch");
+					e.printStackTrace();
+					latest[0] = 0;
+				}
+			}
+		}
+		comm.bcast(latest, 0, 1, 0);
+		startIter = latest[0];
+		if (rank == 0 || startIter == 0 || !checkpointLabels) {
+			return;
+		}
+		int[] savedLabels;
+		try {
+			savedLabels = checkpointer.loadLabels(startIter, rank);
+		} catch (IOException e) {
+			System.out.println("Fail to load checkpoint labels");
+			e.printStackTrace();
+			return;
+		}
+		if (savedLabels.length != getRangeEnd() - offset) {  // saved with another rank number
+			return;
+		}
+		System.arraycopy(savedLabels, 0, labels, offset, savedLabels.length);
+		pass.restoreLabels(offset, getRangeEnd());
+	}
+
+	/**
+	 * @return end of the range of data points the slave node should process
+	 */
+	private int getRangeEnd() {
+		// last processor may have more points to compute
+		return rank == size - 1 ? pointNum : offset + len;
+	}
+
+	/**
+	 * @return index of the first point of the chunk in load balancing mode
+	 */
+	private int getChunkStart(int chunk) {
+		return (int) ((long) pointNum * chunk / balanceChunks);
+	}
+
+	/**
+	 * Called by master in load balancing mode. Receive how long each slave took
+	 * for its points, and map the chunks to the slaves in proportion to their
+	 * smoothed throughput if that shortens the predicted iteration time by 5%.
+	 */
+	private void rebalance() {
+		double[] time = new double[2];
+		for (int slaveRank = 1; slaveRank < size; ++slaveRank) {
+			comm.recv(time, 0, 2, slaveRank, 11);
+			if (time[1] <= 0) {
+				continue;
+			}
+			double measured = time[0] / time[1];
+			throughput[slaveRank] = throughput[slaveRank] == 0 ? measured
+					: (throughput[slaveRank] + measured) / 2;
+		}
+		double total = 0;
+		for (int r = 1; r < size; ++r) {
+			if (throughput[r] == 0) {  // not measured yet
+				return;
+			}
+			total += throughput[r];
+		}
+		// cut the chunks where the cumulative throughput share is reached,
+		// leaving at least one chunk to every slave when there are enough
+		int[] newFirstChunk = new int[size + 1];
+		newFirstChunk[size] = balanceChunks;
+		double cumulative = 0;
+		for (int r = 1; r < size - 1; ++r) {
+			cumulative += throughput[r];
+			int cut = (int) Math.round(balanceChunks * cumulative / total);
+			int remaining = size - 1 - r;
+			cut = Math.max(cut, newFirstChunk[r] + (balanceChunks >= size - 1 ? 1 : 0));
+			cut = Math.min(cut, balanceChunks - (balanceChunks >= size - 1 ? remaining : 0));
+			newFirstChunk[r + 1] = cut;
+		}
+		double current = predictIterationTime(firstChunk);
+		double predicted = predictIterationTime(newFirstChunk);
+		if (predicted < 0.95 * current) {
+			System.out.println(String.format("Rebalance: predicted iteration time %.1f ms -> %.1f ms",
+					current * 1e3, predicted * 1e3));
+			firstChunk = newFirstChunk;
+		}
+	}
+
+	/**
+	 * @return time of the slowest slave with the mapping and the measured throughputs
+	 */
+	private double predictIterationTime(int[] mapping) {
+		double slowest = 0;
+		for (int r = 1; r < size; ++r) {
+			int points = getChunkStart(mapping[r + 1]) - getChunkStart(mapping[r]);
+			slowest = Math.max(slowest, points / throughput[r]);
+		}
+		return slowest;
+	}
+
+	/**
+	 * Called by slaves in load balancing mode to take the range of the chunks
+	 * the master mapped to them. Points taken over from another slave count as
+	 * moved, and the assignment pass starts again on the new range.
+	 */
+	private void receiveMapping() {
+		comm.recv(firstChunk, 0, size + 1, 0, 12);
+		int start = getChunkStart(firstChunk[rank]);
+		int end = getChunkStart(firstChunk[rank + 1]);
+		int oldStart = offset, oldEnd = getRangeEnd();
+		if (start == oldStart && end == oldEnd) {
+			return;
+		}
+		for (int index = start; index < end; ++index) {
+			if (index < oldStart || index >= oldEnd) {
+				labels[index] = -1;
+			}
+		}
+		offset = start;
+		len = end - start;
+		pass.setRange(start, end);
+	}
+
+	/**
+	 * load all data points from CSV file
+	 * @param fileName name of the CSV file to load
+	 * @param dedup true to load identical records as one weighted point
+	 */
+	private void loadData(String fileName, boolean dedup) {
+		//		System.out.println("load data");
+		CSVReader csvReader = new CSVReader(fileName);
+		String[] coordinates = null;
+		// collapse identical records into one weighted point
+		Map<String, Point2D> uniquePoints = dedup ? new HashMap<String, Point2D>() : null;
+		while ((coordinates = csvReader.readRecord()) != null) {
+			assert(coordinates.length == 2);
+			String key = null;
+			if (dedup) {
+				key = coordinates[0] + "," + coordinates[1];
+				Point2D same = uniquePoints.get(key);
+				if (same != null) {
+					same.increaseWeight();
+					continue;
+				}
+			}
+			Point2D point = new Point2D(
+					Double.parseDouble(coordinates[0]), 
+					Double.parseDouble(coordinates[1]));
+			allDataPoints.add(point);
+			if (dedup) {
+				uniquePoints.put(key, point);
+			}
+		}
+	}
+
+	/**
+	 * Map the points from a file shared by the ranks of the node. The first rank
+	 * there loads the CSV file and writes the shared file, the others only map it.
+	 * @param fileName name of the CSV file to load
+	 * @param dirName directory of the shared file, /dev/shm if not given
+	 * @param dedup true to load identical records as one weighted point
+	 * @param cleanup true to remove the shared file once every rank has mapped it
+	 */
+	private void loadSharedData(final String fileName, String dirName, final boolean dedup, boolean cleanup) {
+		if (dirName == null || dirName.equals("true")) {
+			dirName = SharedDataset.DEFAULT_DIR;
+		}
+		SharedDataset dataset = null;
+		try {
+			dataset = SharedDataset.open(fileName, dirName, dedup ? "points-dedup" : "points",
+					new Callable<SharedDataset.Records>() {
+						@Override
+						public SharedDataset.Records call() {
+							allDataPoints = new ArrayList<Point2D>();
+							loadData(fileName, dedup);
+							return MappedPointList.toRecords(allDataPoints);
+						}
+					});
+			allDataPoints = new MappedPointList(dataset);
+		} catch (IOException e) {
+			System.out.println("Fail to share dataset, load it in this rank");
+			e.printStackTrace();
+			allDataPoints = new ArrayList<Point2D>();
+			loadData(fileName, dedup);
+		}
+		if (cleanup) {
+			comm.barrier();
+			if (dataset != null) {
+				dataset.remove();
+			}
+		}
+	}
+
+	/**
+	 * Randomly choose k points to be the centroid point
+	 */
+	private void initializeCluster() {
+		//		System.out.println("call init");
+		assert(this.pointNum >= k);
+		// use hash set to avoid choosing the same point
+		Set<Integer> centerIndexes = new HashSet<Integer>();
+		Random random = new Random();
+		for (int i = 0; i < k;) {
+			int centerIndex = random.nextInt(pointNum);
+			if (centerIndexes.contains(centerIndex)) {
+				continue;
+			}
+			centroids[i++] = new Point2D(allDataPoints.get(centerIndex));
+			centerIndexes.add(centerIndex);
+		} 
+		// use for test
+		//		for (int i = 0; i < k; ++i) {
+		//			centroids[i] = new Point2D(allDataPoints.get(i));
+		//		}
+	}
+
+	/**
+	 * Warm start: the centroid points are those of the model of an earlier run
+	 * @param modelFileName name of the model file
+	 */
+	private void initializeClusterFromModel(String modelFileName) {
+		KMeansModel model;
+		try {
+			model = KMeansModel.read(modelFileName);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Fail to read model " + modelFileName, e);
+		}
+		if (model.getType() != KMeansModel.POINT || model.getK() != k) {
+			throw new IllegalArgumentException(modelFileName + " is not a model of " + k + " point clusters");
+		}
+		double[][] modelCentroids = model.getPointCentroids();
+		for (int i = 0; i < k; ++i) {
+			centroids[i] = new Point2D(modelCentroids[i][0], modelCentroids[i][1]);
+		}
+	}
+
+	/**
+	 * Do Clustering all all data points using K Means algorithm
+	 * Stop conditions: 
+	 * 		1. reach max iterations 
+	 *  	2. no change between 2 iterations, or fewer moved points than the threshold
+	 * With a tree reducer, moved counts and sums travel together in one reduction.
+	 * When it gives the total to every rank (recursive doubling), each rank takes the
+	 * same stop decision and computes the same centroids, so the master sends neither.
+	 */
+	public void doClustering() {
+		if (restartNum > 1 && startIter == 0) {
+			long begin = tracer.begin();
+			runRestarts();
+			tracer.end("restarts", 0, begin);
+		}
+		if (pipelineChunks > 0) {
+			doClusteringPipelined();
+		} else if (rank == 0) { // master do not compute
+			boolean allReduce = reducer != null && reducer.isAllReduce();
+			for (int iter = startIter + 1; ; ++iter) {
+				// tell slaves the new chunk mapping and centroid points
+				if (balanceChunks > 0) {
+					for (int slaveRank = 1; slaveRank < size; ++slaveRank) {
+						comm.send(firstChunk, 0, size + 1, slaveRank, 12);
+					}
+				}
+				long begin = tracer.begin();
+				if (!allReduce || iter == startIter + 1) {
+					broadcastNewCentroids();
+					tracer.end("broadcastNewCentroids", iter, begin);
+				}
+
+				// ask each slaves to know if the algorithm can stop,
+				// converge or reach maximum iterations
+				double[] total = null;
+				boolean stop;
+				begin = tracer.begin();
+				if (reducer == null) {
+					stop = canStop() || iter >= maxIter;
+				} else {
+					total = reducer.reduce(new double[3 * k + 1]);
+					stop = canStop(total) || iter >= maxIter;
+				}
+				tracer.end("canStop", iter, begin);
+				if (balanceChunks > 0) {
+					begin = tracer.begin();
+					rebalance();
+					tracer.end("rebalance", iter, begin);
+				}
+				// tell the slave stop info
+				if (!allReduce) {
+					begin = tracer.begin();
+					tellStop(stop);
+					tracer.end("tellStop", iter, begin);
+				}
+				if (stop) {  // done!
+					iterationNum = iter;
+					metrics.finishIteration(iter);
+					break;
+				}
+				// now can easily recalculate centroids by infomation fetched from slaves
+				begin = tracer.begin();
+				if (reducer == null) {
+					updateCentroid();
+				} else {
+					updateCentroid(total);
+				}
+				tracer.end("updateCentroid", iter, begin);
+				if (checkpointer != null && checkpointer.isDue(iter)) {
+					checkpointer.saveModel(iter, getCentroidModel());
+				}
+				metrics.finishIteration(iter);
+			}
+			// aggregate all clusters info from slaves to get final result
+			long begin = tracer.begin();
+			aggregateClustersInfo();
+			tracer.end("aggregateClustersInfo", iterationNum, begin);
+		} else {  // slaves 
+			boolean allReduce = reducer != null && reducer.isAllReduce();
+			int iter = startIter + 1;
+			while (true) {
+				if (rank == 1) {
+					System.out.println("Iteration " + iter + "...");
+				}
+//				System.out.println("Rank " + rank + " Iteration " + iter + "...");
+				// first receive new centroid points from master
+				if (balanceChunks > 0) {
+					receiveMapping();
+				}
+				long begin = tracer.begin();
+				if (!allReduce || iter == startIter + 1) {
+					receiveNewCentroids();
+					tracer.end("receiveNewCentroids", iter, begin);
+				}
+
+				// assign each point to its nearest centroid point
+				int[] moved = new int[1];
+				long start = System.nanoTime();
+				begin = tracer.begin();
+				PointCluster[] tmpClusters = pass.startIteration();
+				moved[0] = pass.assign(tmpClusters, offset, getRangeEnd(), null);
+				tracer.end("computing", iter, begin);
+				if (balanceChunks > 0) {
+					// tell master how long the points took
+					double[] time = {getRangeEnd() - offset, (System.nanoTime() - start) / 1e9};
+					comm.send(time, 0, 2, 0, 11);
+				}
+
+				boolean[] stop = new boolean[1];
+				begin = tracer.begin();
+				if (reducer == null) {
+					// tell master how many points changed cluster between 2 iterations
+					comm.send(moved, 0, 1, 0, 2);
+				} else {
+					double[] total = reducer.reduce(packSum(tmpClusters, moved[0]));
+					if (allReduce) {  // same decision and centroids as every other rank
+						stop[0] = canStop(total) || iter >= maxIter;
+						if (!stop[0]) {
+							updateCentroid(total);
+							pass.setCentroids(centroids);
+						}
+					}
+				}
+
+				// receive from master if slave should stop computing
+				if (!allReduce) {
+					comm.recv(stop, 0, 1, 0, 3);
+				}
+				tracer.end("canStop", iter, begin);
+				//				System.out.println("rank " + rank + " received stop info from master " + stop[0]);
+				if (stop[0]) {  // done! 
+					// send cluster info to master
+					begin = tracer.begin();
+					sendClusters(tmpClusters);
+					tracer.end("sendClusters", iter, begin);
+					System.out.println("rank " + rank + " finish computing!");
+					metrics.finishIteration(iter);
+					break;
+				}
+
+				// if not done, tell master sum information
+				if (reducer == null) {
+					begin = tracer.begin();
+					sendSum(tmpClusters);
+					tracer.end("sendSum", iter, begin);
+				}
+				if (checkpointLabels && checkpointer.isDue(iter)) {
+					checkpointer.saveLabels(iter, rank, getLabels());
+				}
+				metrics.finishIteration(iter);
+				++iter;
+			}
+		}
+		if (summaryFileName != null) {
+			long begin = tracer.begin();
+			summarize();
+			tracer.end("summarize", iterationNum, begin);
+		}
+		if (evaluateSamples > 0) {
+			long begin = tracer.begin();
+			evaluate();
+			tracer.end("evaluate", iterationNum, begin);
+		}
+		if (checkpointer != null) {
+			checkpointer.close();
+		}
+		metrics.collect(comm, 14);
+		if (rank == 0) {
+			metrics.printSummary();
+			if (metricsFileName != null) {
+				metrics.writeCsv(metricsFileName);
+			}
+		}
+		writeTrace();
+	}
+
+	/**
+	 * Restarts mode, called by every rank before the main loop: run restartNum
+	 * initializations at once, each slave assigns its points to the centroids of
+	 * every restart in a single pass. Messages are packed doubles:
+	 * 		centroids (bcast): x and y of each centroid of each restart, a flag per
+	 * 			restart that is 0 once its centroids stopped moving, then the stop flag
+	 * 		partial (reduce): sumX, sumY and weight of each cluster of each restart,
+	 * 			then the SSE of each restart
+	 * Restarts that stopped moving are not assigned again and keep their SSE.
+	 * The master then takes the centroids of the restart of lowest SSE.
+	 */
+	private void runRestarts() {
+		int setLength = 2 * k;
+		double[] message = new double[restartNum * setLength + restartNum + 1];
+		double[] sse = new double[restartNum];
+		if (rank == 0) {
+			// the first set is the one drawn or loaded by the constructor
+			for (int r = 0; r < restartNum; ++r) {
+				if (r > 0) {
+					initializeCluster();
+				}
+				packCentroids(message, r * setLength);
+				message[restartNum * setLength + r] = 1;
+			}
+		}
+		int partialLength = 3 * restartNum * k + restartNum;
+		for (int iter = 1; ; ++iter) {
+			comm.bcast(message, 0, message.length, 0);
+			if (message[message.length - 1] != 0) {
+				break;
+			}
+			double[] partial = rank == 0 ? new double[partialLength] : computingRestarts(message);
+			double[] total = new double[partialLength];
+			comm.reduce(partial, total, partialLength, Communicator.SUM, 0);
+			if (rank != 0) {
+				continue;
+			}
+			int movingNum = 0;
+			for (int r = 0; r < restartNum; ++r) {
+				if (message[restartNum * setLength + r] == 0) {
+					continue;
+				}
+				sse[r] = total[3 * restartNum * k + r];
+				boolean moved = false;
+				for (int i = 0; i < k; ++i) {
+					int cluster = r * k + i;
+					double weight = total[3 * cluster + 2];
+					if (weight == 0) {  // empty cluster keeps its centroid
+						continue;
+					}
+					double x = total[3 * cluster] / weight;
+					double y = total[3 * cluster + 1] / weight;
+					moved |= x != message[2 * cluster] || y != message[2 * cluster + 1];
+					message[2 * cluster] = x;
+					message[2 * cluster + 1] = y;
+				}
+				if (moved) {
+					++movingNum;
+				} else {
+					message[restartNum * setLength + r] = 0;
+				}
+			}
+			System.out.println("Restart iteration " + iter + ": " + movingNum + " of "
+					+ restartNum + " restarts still moving");
+			message[message.length - 1] = movingNum == 0 || iter >= restartIter ? 1 : 0;
+		}
+		if (rank != 0) {
+			return;
+		}
+		int best = 0;
+		for (int r = 0; r < restartNum; ++r) {
+			System.out.println("Restart " + r + ": SSE " + sse[r]);
+			if (sse[r] < sse[best]) {
+				best = r;
+			}
+		}
+		System.out.println("Start from restart " + best);
+		for (int i = 0; i < k; ++i) {
+			centroids[i] = new Point2D(message[best * setLength + 2 * i], message[best * setLength + 2 * i + 1]);
+		}
+	}
+
+	/**
+	 * Called by slaves in restarts mode: assign each point of the range to the
+	 * nearest centroid of every moving restart
+	 * @param message centroids and flags of the restarts, see runRestarts()
+	 * @return sums, weights and SSE of the restarts, see runRestarts()
+	 */
+	private double[] computingRestarts(double[] message) {
+		long begin = metrics.begin();
+		double[] partial = new double[3 * restartNum * k + restartNum];
+		int flags = restartNum * 2 * k;
+		for (int index = offset; index < getRangeEnd(); ++index) {
+			Point2D point = allDataPoints.get(index);
+			double x = point.getX();
+			double y = point.getY();
+			int weight = point.getWeight();
+			for (int r = 0; r < restartNum; ++r) {
+				if (message[flags + r] == 0) {
+					continue;
+				}
+				int nearest = 0;
+				double minDistance = Double.MAX_VALUE;
+				for (int i = 0; i < k; ++i) {
+					double dx = x - message[2 * (r * k + i)];
+					double dy = y - message[2 * (r * k + i) + 1];
+					double distance = dx * dx + dy * dy;
+					if (distance < minDistance) {
+						minDistance = distance;
+						nearest = i;
+					}
+				}
+				int cluster = r * k + nearest;
+				partial[3 * cluster] += x * weight;
+				partial[3 * cluster + 1] += y * weight;
+				partial[3 * cluster + 2] += weight;
+				partial[3 * restartNum * k + r] += weight * minDistance;
+			}
+		}
+		metrics.end(Metrics.ASSIGN, begin);
+		return partial;
+	}
+
+	/**
+	 * Called by every rank to write its trace, then master merges the trace files
+	 * if it can see them all, i.e. the ranks share a file system
+	 */
+	private void writeTrace() {
+		if (!tracer.isEnabled()) {
+			return;
+		}
+		tracer.write();
+		comm.barrier();
+		if (rank == 0) {
+			try {
+				if (!Tracer.merge(traceFileName, size)) {
+					System.out.println("Trace files of some ranks are on other nodes, merge them with util.Tracer");
+				}
+			} catch (IOException e) {
+				System.out.println("Fail to merge trace files");
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Pipelined K Means: each slave splits its range into chunks and posts a
+	 * non-blocking send of the partial sums of a chunk as soon as it is computed,
+	 * while it goes on with the next chunk. The master adds up the partials in
+	 * whatever order they arrive. Messages are packed doubles:
+	 * 		centroids (tag 8): x and y of each centroid, then the stop flag
+	 * 		partial (tag 9): sumX, sumY and weight of each cluster, then the moved count
+	 * The stop flag travels with the centroids, so there is one message each way
+	 * per chunk and iteration instead of separate moved, stop and sum messages.
+	 */
+	private void doClusteringPipelined() {
+		double[] message = new double[2 * k + 1];
+		if (rank == 0) {
+			for (int iter = startIter + 1; ; ++iter) {
+				// tell slaves the new centroid points, they start right away
+				long begin = tracer.begin();
+				packCentroids(message, false);
+				Request[] requests = new Request[size - 1];
+				for (int slaveRank = 1; slaveRank < size; ++slaveRank) {
+					requests[slaveRank - 1] = comm.isend(message, 0, message.length, slaveRank, 8);
+				}
+				tracer.end("broadcastNewCentroids", iter, begin);
+				// add up the partials of all chunks of all slaves in arrival order
+				begin = tracer.begin();
+				double[] total = new double[3 * k + 1];
+				double[] partial = new double[3 * k + 1];
+				for (int i = 0; i < (size - 1) * pipelineChunks; ++i) {
+					comm.recv(partial, 0, partial.length, Communicator.ANY_SOURCE, 9);
+					for (int j = 0; j < partial.length; ++j) {
+						total[j] += partial[j];
+					}
+				}
+				for (Request request: requests) {
+					request.waitFor();
+				}
+				tracer.end("receivePartials", iter, begin);
+				if (canStop(total) || iter >= maxIter) {
+					iterationNum = iter;
+					metrics.finishIteration(iter);
+					break;
+				}
+				begin = tracer.begin();
+				updateCentroid(total);
+				tracer.end("updateCentroid", iter, begin);
+				if (checkpointer != null && checkpointer.isDue(iter)) {
+					checkpointer.saveModel(iter, getCentroidModel());
+				}
+				metrics.finishIteration(iter);
+			}
+			// converge or reach maximum iterations, stop the algorithm!
+			packCentroids(message, true);
+			for (int slaveRank = 1; slaveRank < size; ++slaveRank) {
+				comm.send(message, 0, message.length, slaveRank, 8);
+			}
+			long begin = tracer.begin();
+			aggregateClustersInfo();
+			tracer.end("aggregateClustersInfo", iterationNum, begin);
+		} else {
+			PointCluster[] tmpClusters = null;
+			int start = offset, end = getRangeEnd();
+			for (int iter = startIter + 1; ; ++iter) {
+				long begin = tracer.begin();
+				comm.recv(message, 0, message.length, 0, 8);
+				tracer.end("receiveNewCentroids", iter, begin);
+				if (message[2 * k] != 0) {  // done! send cluster info to master
+					begin = tracer.begin();
+					sendClusters(tmpClusters);
+					tracer.end("sendClusters", iter - 1, begin);
+					System.out.println("rank " + rank + " finish computing!");
+					break;
+				}
+				if (rank == 1) {
+					System.out.println("Iteration " + iter + "...");
+				}
+				for (int i = 0; i < k; ++i) {
+					centroids[i] = new Point2D(message[2 * i], message[2 * i + 1]);
+				}
+				pass.setCentroids(centroids);
+				tmpClusters = pass.startIteration();
+				// send each chunk's partial while computing the next one
+				Request[] requests = new Request[pipelineChunks];
+				for (int c = 0; c < pipelineChunks; ++c) {
+					int from = start + (int) ((long) (end - start) * c / pipelineChunks);
+					int to = start + (int) ((long) (end - start) * (c + 1) / pipelineChunks);
+					double[] partial = new double[3 * k + 1];
+					begin = tracer.begin();
+					partial[3 * k] = pass.assign(tmpClusters, from, to, partial);
+					tracer.end("computing", iter, begin);
+					requests[c] = comm.isend(partial, 0, partial.length, 0, 9);
+				}
+				begin = tracer.begin();
+				for (Request request: requests) {
+					request.waitFor();
+				}
+				tracer.end("sendSum", iter, begin);
+				if (checkpointLabels && checkpointer.isDue(iter)) {
+					checkpointer.saveLabels(iter, rank, getLabels());
+				}
+				metrics.finishIteration(iter);
+			}
+		}
+	}
+
+	/**
+	 * Called by master to pack the centroids and the stop flag into one message
+	 */
+	private void packCentroids(double[] message, boolean stop) {
+		packCentroids(message, 0);
+		message[2 * k] = stop ? 1 : 0;
+	}
+
+	/**
+	 * Called by master to pack x and y of each centroid from message[start]
+	 */
+	private void packCentroids(double[] message, int start) {
+		for (int i = 0; i < k; ++i) {
+			message[start + 2 * i] = centroids[i].getX();
+			message[start + 2 * i + 1] = centroids[i].getY();
+		}
+	}
+
+	/**
+	 * Called by master
+	 * @return current centroids, counts and inertia are unknown in the middle of a run
+	 */
+	private KMeansModel getCentroidModel() {
+		double[][] modelCentroids = new double[k][];
+		for (int i = 0; i < k; ++i) {
+			modelCentroids[i] = new double[] {centroids[i].getX(), centroids[i].getY()};
+		}
+		return new KMeansModel(modelCentroids, new long[k], Double.NaN);
+	}
+
+	/**
+	 * Called by slaves
+	 * @return cluster index of each point in this slave's range
+	 */
+	private int[] getLabels() {
+		return Arrays.copyOfRange(labels, offset, getRangeEnd());
+	}
+
+	/**
+	 * Called by slave to send cluster sum info to master
+	 * @param tmpClusters the clusters info on a specific slave node
+	 */
+	private void sendSum(PointCluster[] tmpClusters) {
+		double[] sumX = new double[k];
+		double[] sumY = new double[k];
+		for (int i = 0; i < k; ++i) {
+			sumX[i] += tmpClusters[i].getSumX();
+			sumY[i] += tmpClusters[i].getSumY();
+//			System.out.println("rank 1's sum" + sumX[i] + ", " + sumY[i]);
+		}
+		comm.send(sumX, 0, k, 0, 4);
+		comm.send(sumY, 0, k, 0, 5);
+		int[] pointNum = new int[k];
+		for (int i = 0; i < k; ++i) {
+			pointNum[i] = tmpClusters[i].getWeight();
+		}
+		comm.send(pointNum, 0, k, 0, 7);
+	}
+
+	/**
+	 * Called by master.
+	 * If all slaves' points do not change cluster during two consecutive iterations, 
+	 * or no more than movedThreshold of the points did, the algorithm can stop.
+	 * @return true if the algorithm can stop, false otherwise.
+	 */
+	private boolean canStop() {
+		long movedNum = 0;
+		// receive from all slaves how many of their points have changed clusters between 2 iterations
+		for (int slaveRank = 1; slaveRank < size; ++slaveRank ) {
+			int[] slaveMoved = new int[1];
+			comm.recv(slaveMoved, 0, 1, slaveRank, 2);
+			movedNum += slaveMoved[0];
+		}
+		return movedNum <= (long) (movedThreshold * pointNum);
+	}
+
+	/**
+	 * Same stop condition as canStop(), on the total of the packed partials
+	 * @param total sumX, sumY and weight of each cluster, then the moved count
+	 */
+	private boolean canStop(double[] total) {
+		long movedNum = (long) total[3 * k];
+		return movedNum <= (long) (movedThreshold * pointNum);
+	}
+
+	/**
+	 * Called by slaves to pack the cluster sums and the moved count for a reduction
+	 */
+	private double[] packSum(PointCluster[] tmpClusters, int moved) {
+		double[] partial = new double[3 * k + 1];
+		for (int i = 0; i < k; ++i) {
+			partial[i] = tmpClusters[i].getSumX();
+			partial[k + i] = tmpClusters[i].getSumY();
+			partial[2 * k + i] = tmpClusters[i].getWeight();
+		}
+		partial[3 * k] = moved;
+		return partial;
+	}
+
+	/**
+	 * Called by master to tell all slaves if they should stop computing
+	 * @param stopFlag true to stop, false to continue
+	 */
+	private void tellStop(boolean stopFlag) {
+		// tell all slaves if the algorithm can stop
+		boolean[] stop = new boolean[1];
+		stop[0] = stopFlag;
+		for (int slaveRank = 1; slaveRank < size; ++slaveRank ) {
+			comm.send(stop, 0, 1, slaveRank, 3);
+		}
+	}
+
+	/**
+	 * Called by master to tell all slaves the new centroids
+	 */
+	private void broadcastNewCentroids() {
+		for (int slaveRank = 1; slaveRank < size; ++slaveRank) {
+			//			System.out.println("sending to rank " + slaveRank + " new centoird point");
+			comm.send(centroids, 0, k, slaveRank, 1);
+		}
+	}
+
+	/**
+	 * Called by slaves to receive new centroids from master
+	 */
+	private void receiveNewCentroids() {
+		comm.recv(centroids, 0, k, 0, 1);
+		pass.setCentroids(centroids);
+//		for (int i = 0; i < k; ++i) {
+//			System.out.println("rank " + rank + " receive centroid point " + i 
+//					+ ": " + centroids[i]);
+//		}
+	}
+
+	/**
+	 * Called by slaves at the end to send their clusters to master, or in reduced
+	 * precision mode their range and the labels of its points (tag 13), or in
+	 * sharded output and summary modes only a summary of their clusters
+	 */
+	private void sendClusters(PointCluster[] tmpClusters) {
+		if (!isGathering()) {
+			sendSummary(tmpClusters);
+			return;
+		}
+		if (pass.usesPoints()) {
+			comm.send(tmpClusters, 0, k, 0, 6);
+			return;
+		}
+		int[] range = {offset, getRangeEnd()};
+		comm.send(range, 0, 2, 0, 6);
+		comm.send(labels, range[0], range[1] - range[0], 0, 13);
+	}
+
+	/**
+	 * @return true if the master gets the points or labels at the end, for the listing
+	 */
+	private boolean isGathering() {
+		return shardFormat == null && !"".equals(summaryFileName);
+	}
+
+	/**
+	 * Called by slaves at the end in sharded output mode: sumX, sumY, weight and SSE
+	 * around the last centroids of each cluster, then the range of the slave.
+	 * The SSE is left out in summary mode, where summarize() measures it exactly.
+	 */
+	private void sendSummary(PointCluster[] tmpClusters) {
+		double[] summary = new double[4 * k + 2];
+		for (int i = 0; i < k; ++i) {
+			summary[i] = tmpClusters[i].getSumX();
+			summary[k + i] = tmpClusters[i].getSumY();
+			summary[2 * k + i] = tmpClusters[i].getWeight();
+		}
+		for (int index = offset; summaryFileName == null && index < getRangeEnd(); ++index) {
+			int clusterIndex = labels[index];
+			summary[3 * k + clusterIndex] += pass.getWeight(index) * pass.distanceTo(index, clusterIndex);
+		}
+		summary[4 * k] = offset;
+		summary[4 * k + 1] = getRangeEnd();
+		comm.send(summary, 0, summary.length, 0, 6);
+	}
+
+	/**
+	 * Summary mode, called by every rank at the end: the master broadcasts the mean
+	 * of each cluster, and the slaves reduce the SSE and the largest distance of
+	 * their points around it, so no point leaves its slave
+	 */
+	private void summarize() {
+		double[] means = new double[2 * k];
+		if (rank == 0) {
+			for (int i = 0; i < k; ++i) {
+				PointCluster pc = pointClusters[i];
+				Point2D mean = pc.isEmpty() ? centroids[i] : pc.updateCentroid();
+				means[2 * i] = mean.getX();
+				means[2 * i + 1] = mean.getY();
+			}
+		}
+		comm.bcast(means, 0, 2 * k, 0);
+		Point2D[] meanPoints = new Point2D[k];
+		for (int i = 0; i < k; ++i) {
+			meanPoints[i] = new Point2D(means[2 * i], means[2 * i + 1]);
+		}
+		// square distances
+		double[] sse = new double[k];
+		double[] radius = new double[k];
+		if (rank != 0) {
+			pass.setCentroids(meanPoints);
+			for (int index = offset; index < getRangeEnd(); ++index) {
+				int clusterIndex = labels[index];
+				double distance = pass.distanceTo(index, clusterIndex);
+				sse[clusterIndex] += pass.getWeight(index) * distance;
+				radius[clusterIndex] = Math.max(radius[clusterIndex], distance);
+			}
+		}
+		double[] totalSSE = new double[k];
+		double[] maxRadius = new double[k];
+		comm.reduce(sse, totalSSE, k, Communicator.SUM, 0);
+		comm.reduce(radius, maxRadius, k, Communicator.MAX, 0);
+		if (rank == 0) {
+			clusterSSE = totalSSE;
+			clusterRadius = new double[k];
+			for (int i = 0; i < k; ++i) {
+				clusterRadius[i] = Math.sqrt(maxRadius[i]);
+			}
+		}
+	}
+
+	/**
+	 * Evaluation, called by every rank at the end: the master broadcasts the mean
+	 * of each cluster and a sample of points, every slave adds its points with
+	 * their distance to each sample and to their mean, and the sums are reduced
+	 * on the master, which only gets O(k + samples) numbers from each slave
+	 */
+	private void evaluate() {
+		// with --dedup the points are weighted, the sample is drawn among the records
+		int[] weights = new int[pointNum];
+		for (int index = 0; index < pointNum; ++index) {
+			weights[index] = allDataPoints.get(index).getWeight();
+		}
+		int sampleNum = (int) Math.min(evaluateSamples, ClusterEvaluation.getRecordNum(weights));
+		// x and y of each mean, then index, x and y of each sample
+		double[] message = new double[2 * k + 3 * sampleNum];
+		int samples = 2 * k;
+		if (rank == 0) {
+			for (int i = 0; i < k; ++i) {
+				PointCluster pc = pointClusters[i];
+				Point2D mean = pc.isEmpty() ? centroids[i] : pc.updateCentroid();
+				message[2 * i] = mean.getX();
+				message[2 * i + 1] = mean.getY();
+			}
+			int[] sampleIndexes = ClusterEvaluation.sample(weights, sampleNum, new Random());
+			for (int s = 0; s < sampleNum; ++s) {
+				int index = sampleIndexes[s];
+				message[samples + 3 * s] = index;
+				message[samples + 3 * s + 1] = allDataPoints.get(index).getX();
+				message[samples + 3 * s + 2] = allDataPoints.get(index).getY();
+			}
+		}
+		comm.bcast(message, 0, message.length, 0);
+		ClusterEvaluation evaluation = new ClusterEvaluation(k, sampleNum);
+		if (rank != 0) {
+			for (int s = 0; s < sampleNum; ++s) {
+				int index = (int) message[samples + 3 * s];
+				if (index >= offset && index < getRangeEnd()) {
+					evaluation.setSampleLabel(s, labels[index]);
+				}
+			}
+			double[] distances = new double[sampleNum];
+			for (int index = offset; index < getRangeEnd(); ++index) {
+				Point2D point = allDataPoints.get(index);
+				double x = point.getX();
+				double y = point.getY();
+				for (int s = 0; s < sampleNum; ++s) {
+					double dx = x - message[samples + 3 * s + 1];
+					double dy = y - message[samples + 3 * s + 2];
+					distances[s] = Math.sqrt(dx * dx + dy * dy);
+				}
+				int clusterIndex = labels[index];
+				double dx = x - message[2 * clusterIndex];
+				double dy = y - message[2 * clusterIndex + 1];
+				double distance = dx * dx + dy * dy;
+				evaluation.add(distances, clusterIndex, Math.sqrt(distance), distance, point.getWeight());
+			}
+		}
+		double[] partial = evaluation.pack();
+		double[] total = new double[partial.length];
+		comm.reduce(partial, total, partial.length, Communicator.SUM, 0);
+		if (rank != 0) {
+			return;
+		}
+		double[][] centroidDistances = new double[k][k];
+		for (int i = 0; i < k; ++i) {
+			for (int j = 0; j < k; ++j) {
+				double dx = message[2 * i] - message[2 * j];
+				double dy = message[2 * i + 1] - message[2 * j + 1];
+				centroidDistances[i][j] = Math.sqrt(dx * dx + dy * dy);
+			}
+		}
+		evaluation.evaluate(total, centroidDistances, evaluateLevel);
+		evaluation.print();
+		if (evaluationFileName != null) {
+			evaluation.write(evaluationFileName);
+		}
+	}
+
+	/**
+	 * Called by master in sharded output mode instead of aggregateClustersInfo():
+	 * the clusters only get the sums. The SSE of a cluster around the centroid the
+	 * slaves used becomes the one around its mean by the parallel axis theorem.
+	 */
+	private void aggregateSummaries() {
+		pointClusters = new PointCluster[k];
+		for (int i = 0; i < k; ++i) {
+			pointClusters[i] = new PointCluster();
+		}
+		shardRanges = new int[2 * (size - 1)];
+		clusterSSE = new double[k];
+		double[] summary = new double[4 * k + 2];
+		for (int slaveRank = 1; slaveRank < size; ++slaveRank) {
+			comm.recv(summary, 0, summary.length, slaveRank, 6);
+			for (int i = 0; i < k; ++i) {
+				pointClusters[i].addSummary(summary[i], summary[k + i], (int) summary[2 * k + i]);
+				clusterSSE[i] += summary[3 * k + i];
+			}
+			shardRanges[2 * (slaveRank - 1)] = (int) summary[4 * k];
+			shardRanges[2 * (slaveRank - 1) + 1] = (int) summary[4 * k + 1];
+		}
+		for (int i = 0; i < k; ++i) {
+			if (!pointClusters[i].isEmpty()) {
+				Point2D mean = pointClusters[i].updateCentroid();
+				clusterSSE[i] = Math.max(0, clusterSSE[i]
+						- pointClusters[i].getWeight() * mean.distanceTo(centroids[i]));
+			}
+		}
+	}
+
+	/**
+	 * Called by master 
+	 * Each slave is assigned a number of points and compute to which cluster
+	 * these points belong.
+	 * Master then aggregate all this information.
+	 */
+	private void aggregateClustersInfo() {
+		if (!isGathering()) {
+			aggregateSummaries();
+			return;
+		}
+		// each time we get latest info from slaves
+		pointClusters = new PointCluster[k];
+		for (int i = 0; i < k; ++i) {
+			pointClusters[i] = new PointCluster();
+		}
+		for (int slaveRank = 1; slaveRank < size; ++slaveRank) {
+			if (precision != null) {
+				// the master keeps the points in double, so the output has the input values
+				int[] range = new int[2];
+				comm.recv(range, 0, 2, slaveRank, 6);
+				comm.recv(labels, range[0], range[1] - range[0], slaveRank, 13);
+				for (int index = range[0]; index < range[1]; ++index) {
+					pointClusters[labels[index]].addPointAndIncreaseSum(allDataPoints.get(index));
+				}
+				continue;
+			}
+			PointCluster[] tmpClusters = new PointCluster[k];
+			comm.recv(tmpClusters, 0, k, slaveRank, 6);
+			//			System.out.println("Reveive clusters info from slave rank " + slaveRank);
+			for (int i = 0; i < k; ++i) {
+				pointClusters[i].addAll(tmpClusters[i]);  
+				// add clusters sum ALREADY computed by slave ranks
+				//				pointClusters[i].increaseSum(tmpClusters[i].getSumX(), tmpClusters[i].getSumY());
+				//						pointClusters[i].printCluster(rank);
+				//						System.out.println("sumX: " + pointClusters[i].getSumX() + " sumY:" + pointClusters[i].getSumY());
+			}
+		}
+		if (precision != null && precisionTolerance >= 0) {
+			checkPrecision();
+		}
+	}
+
+	/**
+	 * Called by master in reduced precision mode. Assign every point in double
+	 * precision to the last centroids the slaves used, and compare with their labels.
+	 * Points close to the border of two clusters may go either way, so a small
+	 * fraction of differences is expected.
+	 */
+	private void checkPrecision() {
+		long differentNum = 0;
+		for (int index = 0; index < pointNum; ++index) {
+			Point2D point = allDataPoints.get(index);
+			double minDistance = Double.MAX_VALUE;
+			int nearest = 0;
+			for (int i = 0; i < k; ++i) {
+				double distance = point.distanceTo(centroids[i]);
+				if (distance < minDistance) {
+					minDistance = distance;
+					nearest = i;
+				}
+			}
+			if (nearest != labels[index]) {
+				differentNum += point.getWeight();
+			}
+		}
+		long weight = 0;
+		for (PointCluster pc: pointClusters) {
+			weight += pc.getWeight();
+		}
+		double fraction = weight == 0 ? 0 : (double) differentNum / weight;
+		System.out.println(String.format("Precision check (%s): %d of %d points assigned differently "
+				+ "from double (%.6f), %s tolerance %s", precision, differentNum, weight, fraction,
+				fraction <= precisionTolerance ? "within" : "ABOVE", precisionTolerance));
+	}
+
+	/**
+	 * update all clusters' centroid point
+	 */
+	private void updateCentroid() {
+		// first receive sum from slaves
+		double [] sumX = new double[k];
+		double[] sumY = new double[k];
+		int[] clusterPointNum = new int[k];
+		for (int rank = 1; rank < size; ++rank) {
+			double[] tmpSumX = new double[k];
+			double[] tmpSumY = new double[k];
+			int[] tmpPointNum = new int[k];
+//			System.out.println("receive sum from rank " + rank);
+			comm.recv(tmpSumX, 0, k, rank, 4);
+			comm.recv(tmpSumY, 0, k, rank, 5);
+			comm.recv(tmpPointNum, 0, k, rank, 7);
+			for (int i = 0; i < k; ++i) {
+//				System.out.println("sum: " + tmpSumX[i] + "," + tmpSumY[i]);
+				sumX[i] += tmpSumX[i];
+				sumY[i] += tmpSumY[i];
+				clusterPointNum[i] += tmpPointNum[i];
+//				System.out.println("cluster" + i + "'s point num: " + tmpPointNum[i]);
+			}
+		}
+//		System.out.println("receive sum from all ranks");
+		for (int i = 0; i < k; ++i) {
+			centroids[i] = new Point2D(sumX[i] / clusterPointNum[i], sumY[i] / clusterPointNum[i]);
+		}
+	}
+	
+
+	/**
+	 * update all clusters' centroid point from the total of the packed partials
+	 */
+	private void updateCentroid(double[] total) {
+		for (int i = 0; i < k; ++i) {
+			centroids[i] = new Point2D(total[i] / total[2 * k + i], total[k + i] / total[2 * k + i]);
+		}
+	}
+
+	/**
+	 * Called by master
+	 * @return iteration the run stopped at, including those before a restart
+	 */
+	public int getIterationNum() {
+		return iterationNum;
+	}
+
+	/**
+	 * Write result to file
+	 * @param outputFileName name of the output file
+	 */
+	public void outputResult(String outputFileName) {
+		if (summaryFileName != null && rank == 0) {
+			writeSummary(summaryFileName.length() > 0 ? summaryFileName
+					: shardFormat != null ? outputFileName + ".summary" : outputFileName);
+		}
+		if (shardFormat != null) {
+			writeShards(outputFileName);
+			return;
+		}
+		if (rank != 0 || "".equals(summaryFileName)) {  // the summary is the output
+			return;
+		}
+		FileWriter fw  = null;
+		BufferedWriter bw = null;
+		try {
+			fw = new FileWriter(outputFileName);
+			bw = new BufferedWriter(fw);
+			for (int i = 0; i < k; ++i) {
+				PointCluster pc = pointClusters[i];
+				//				System.out.println("Cluster " + i);
+				bw.write("Cluster " + i + ":\n");
+				for (Point2D point: pc.getPoints()) {
+					//					System.out.println("\t" + point);
+					// expand weighted points back to the original records
+					for (int j = 0; j < point.getWeight(); ++j) {
+						bw.write("\t" + point + "\n");
+					}
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			try {
+				bw.close();
+				fw.close();
+			} catch (IOException e) {
+				System.out.println("Fail to close output file");
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Called by master in summary mode to write a CSV line per cluster
+	 * @param fileName name of the summary file
+	 */
+	private void writeSummary(String fileName) {
+		BufferedWriter bw = null;
+		try {
+			bw = new BufferedWriter(new FileWriter(fileName));
+			bw.write("cluster,count,x,y,sse,max_radius\n");
+			for (int i = 0; i < k; ++i) {
+				PointCluster pc = pointClusters[i];
+				Point2D mean = pc.isEmpty() ? centroids[i] : pc.updateCentroid();
+				bw.write(i + "," + pc.getWeight() + "," + mean.getX() + "," + mean.getY() + ","
+						+ clusterSSE[i] + "," + clusterRadius[i] + "\n");
+			}
+		} catch (IOException e) {
+			System.out.println("Fail to write summary file");
+			e.printStackTrace();
+		} finally {
+			try {
+				if (bw != null) {
+					bw.close();
+				}
+			} catch (IOException e) {
+				System.out.println("Fail to close summary file");
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Sharded output: every slave writes the labels of its range, the master writes
+	 * the centroids and the manifest, see ShardedOutput
+	 */
+	private void writeShards(String outputFileName) {
+		try {
+			if (rank != 0) {
+				ShardedOutput.writeShard(ShardedOutput.getShardFileName(outputFileName, rank),
+						shardFormat, labels, offset, getRangeEnd());
+				return;
+			}
+			String[] centroidLines = new String[k];
+			for (int i = 0; i < k; ++i) {
+				PointCluster pc = pointClusters[i];
+				Point2D centroid = pc.isEmpty() ? centroids[i] : pc.updateCentroid();
+				centroidLines[i] = centroid.getX() + "," + centroid.getY();
+			}
+			ShardedOutput.writeManifest(outputFileName, shardFormat, shardRanges, centroidLines);
+		} catch (IOException e) {
+			System.out.println("Fail to write output shards");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Called by master to write the model file used to warm-start later runs.
+	 * The centroids are the means of the final clusters.
+	 * @param modelFileName name of the model file
+	 */
+	public void saveModel(String modelFileName) {
+		if (rank != 0) {
+			return;
+		}
+		double[][] modelCentroids = new double[k][];
+		long[] counts = new long[k];
+		double inertia = 0;
+		for (int i = 0; i < k; ++i) {
+			PointCluster pc = pointClusters[i];
+			Point2D centroid = pc.isEmpty() ? centroids[i] : pc.updateCentroid();
+			modelCentroids[i] = new double[] {centroid.getX(), centroid.getY()};
+			counts[i] = pc.getWeight();
+			if (clusterSSE != null) {  // sharded output or summary, the points stayed on the slaves
+				inertia += clusterSSE[i];
+				continue;
+			}
+			for (Point2D point: pc.getPoints()) {
+				inertia += point.getWeight() * point.distanceTo(centroid);
+			}
+		}
+		try {
+			new KMeansModel(modelCentroids, counts, inertia).write(modelFileName);
+		} catch (IOException e) {
+			System.out.println("Fail to write model file");
+			e.printStackTrace();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		// user arguments start from index 3
+		final int k = Integer.parseInt(args[3]);
+		final int maxIter = Integer.parseInt(args[4]);
+		final String inputFileName = args[5];
+		final String outputFileName = args[6];
+		// optional arguments, e.g. --assign yinyang, --active-set, --moved-threshold 0.001, --dedup,
+		// --init-model modelFile, --model-out modelFile (default: outputFile.model),
+		// --checkpoint-dir dir [--checkpoint-every 10] [--checkpoint-labels] [--restart],
+		// --pipeline chunks, --reduce linear|binomial|doubling, --balance chunks,
+		// --local ranks (run the ranks as threads of this JVM, without MPJ),
+		// --shared-dataset [dir] (map the points from a file shared by the ranks of a node,
+		// left there for later runs unless --shared-dataset-cleanup),
+		// --precision double|float|int16|int32 [--precision-check tolerance],
+		// --metrics [csvFile] (per-rank, per-iteration spans, bytes, moved points and inertia),
+		// --trace prefix (Chrome trace of each rank to prefix.rank-R.json, merged into prefix.json),
+		// --shards [binary|text] (each slave writes the labels of its points, outputFile is a manifest),
+		// --summary [file] (count, mean, SSE and radius per cluster, in outputFile instead of the listing),
+		// --restarts R [--restart-iter n] (start from the best of R initializations, run in one pass),
+		// --evaluate [samples] [--confidence 0.95] [--evaluate-out csvFile] (SSE, Davies-Bouldin
+		// index and sampled silhouette of the result)
+		final Options options = new Options(args, 7);
+		if (options.has("local")) {
+			LocalCommunicator.run(options.getInt("local", 2), new LocalCommunicator.Task() {
+				@Override
+				public void run(Communicator comm) {
+					runRank(comm, inputFileName, k, maxIter, outputFileName, options);
+				}
+			});
+			return;
+		}
+		MPI.Init(args);
+		runRank(new MPJCommunicator(), inputFileName, k, maxIter, outputFileName, options);
+		MPI.Finalize();
+	}
+
+	private static void runRank(Communicator comm, String inputFileName, int k, int maxIter,
+			String outputFileName, Options options) {
+		ParallelKMeansOnPoint kmp = new ParallelKMeansOnPoint(comm, inputFileName, k, maxIter, options);
+		kmp.doClustering();
+		kmp.outputResult(outputFileName);
+		kmp.saveModel(options.get("model-out", outputFileName + ".model"));
+	}
+}
@@ -0,0 +1,498 @@
+package point;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import comm.Communicator;
+import comm.LocalCommunicator;
+import comm.MPJCommunicator;
+import mpi.MPI;
+import util.Options;
+import util.Silhouette;
+
+/**
+ * Parallel K means on 2D points for several k at once, to choose k. The data is
+ * loaded once, and every pass over the range of a slave assigns its points to
+ * the centroids of every running k. The smallest k starts from random points;
+ * each larger k starts from the centroids of the previous one, splitting its
+ * clusters of largest SSE along their main axis, as soon as the SSE of the
+ * previous one improves by less than spawnTolerance in an iteration. So the
+ * runs of successive k overlap and share their passes. A k is done once its
+ * centroids stop moving or its SSE improves by less than tolerance; the default
+ * of 1e-4 ends most k after a few iterations, 0 runs them until the centroids
+ * stop moving or maxIter.
+ *
+ * A last pass measures the silhouette of every k on the same sample of points:
+ * the distance of a point to each sample is computed once for all k. The same
+ * pass measures the SSE of every k against its final centroids, which is the
+ * inertia reported.
+ *
+ * Messages are packed doubles:
+ * 		centroids (bcast): x and y of each centroid of each k, a flag per k that
+ * 			is 1 while it runs, then the stop flag
+ * 		partial (reduce): sumX, sumY, weight, sum of x^2, y^2 and xy, and SSE of
+ * 			each cluster of each k
+ * The output file gets a line per k: iterations, inertia (SSE) and the sampled
+ * silhouette with the half width of its 95% confidence interval.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class ParallelKSweepOnPoint {
+	private static final int NOT_STARTED = 0;
+	private static final int RUNNING = 1;
+	private static final int DONE = 2;
+	// fields of a cluster in a partial
+	private static final int FIELDS = 7;
+
+	private List<Point2D> allDataPoints;
+	private int pointNum;
+	// k values in increasing order
+	private int[] ks;
+	// index of the first centroid of each k
+	private int[] first;
+	private int maxIter;
+	private double spawnTolerance;
+	// a k is done once its SSE improves by at most this fraction in an iteration
+	private double tolerance;
+	private int sampleNum;
+	private Random random;
+
+	private Communicator comm;
+	private int rank;
+	private int size;
+	private int offset;
+	private int len;
+
+	// master: state, iterations and SSE of each k
+	private int[] state;
+	private int[] iterations;
+	private double[] sse;
+	// master: sampled silhouette of each k and its confidence
+	private double[] silhouette;
+	private double[] confidence;
+	private int passNum;
+	// square distance to the centroid found by the last findNearest()
+	private double nearestDistance;
+
+	public ParallelKSweepOnPoint(Communicator comm, String fileName, int[] ks, int maxIter, Options options) {
+		this.comm = comm;
+		this.rank = comm.rank();
+		this.size = comm.size();
+		this.ks = ks.clone();
+		Arrays.sort(this.ks);
+		this.first = new int[ks.length + 1];
+		for (int j = 0; j < ks.length; ++j) {
+			first[j + 1] = first[j] + this.ks[j];
+		}
+		this.maxIter = maxIter;
+		this.spawnTolerance = options.getDouble("spawn-tolerance", 0.01);
+		this.tolerance = options.getDouble("tolerance", 1e-4);
+		this.sampleNum = options.getInt("sample", 500);
+		this.random = options.has("seed") ? new Random(options.getInt("seed", 0)) : new Random();
+		this.allDataPoints = new ArrayList<Point2D>();
+		loadData(fileName);
+		this.pointNum = allDataPoints.size();
+		this.sampleNum = Math.min(sampleNum, pointNum);
+		this.len = pointNum / (size - 1);
+		this.offset = len * (rank - 1);
+	}
+
+	/**
+	 * load all data points from CSV file
+	 * @param fileName name of the CSV file to load
+	 */
+	private void loadData(String fileName) {
+		CSVReader csvReader = new CSVReader(fileName);
+		String[] coordinates = null;
+		while ((coordinates = csvReader.readRecord()) != null) {
+			allDataPoints.add(new Point2D(Double.parseDouble(coordinates[0]),
+					Double.parseDouble(coordinates[1])));
+		}
+	}
+
+	/**
+	 * @return end of the range of data points the slave node should process
+	 */
+	private int getRangeEnd() {
+		// last processor may have more points to compute
+		return rank == size - 1 ? pointNum : offset + len;
+	}
+
+	/**
+	 * Cluster every k, then measure their silhouettes
+	 */
+	public void doSweep() {
+		int centroidLength = 2 * first[ks.length];
+		double[] message = new double[centroidLength + ks.length + 1];
+		int partialLength = FIELDS * first[ks.length];
+		if (rank == 0) {
+			state = new int[ks.length];
+			iterations = new int[ks.length];
+			sse = new double[ks.length];
+			initializeCentroids(message);
+			state[0] = RUNNING;
+			message[centroidLength] = 1;
+		}
+		while (true) {
+			comm.bcast(message, 0, message.length, 0);
+			if (message[message.length - 1] != 0) {
+				break;
+			}
+			double[] partial = rank == 0 ? new double[partialLength] : computing(message);
+			double[] total = new double[partialLength];
+			comm.reduce(partial, total, partialLength, Communicator.SUM, 0);
+			++passNum;
+			if (rank == 0) {
+				updateCentroids(message, total);
+			}
+		}
+		measureSilhouettes(message);
+	}
+
+	/**
+	 * Called by master: random distinct points are the centroids of the smallest k
+	 */
+	private void initializeCentroids(double[] message) {
+		Set<Integer> centerIndexes = new HashSet<Integer>();
+		for (int i = 0; i < ks[0];) {
+			int centerIndex = random.nextInt(pointNum);
+			if (!centerIndexes.add(centerIndex)) {
+				continue;
+			}
+			message[2 * i] = allDataPoints.get(centerIndex).getX();
+			message[2 * i + 1] = allDataPoints.get(centerIndex).getY();
+			++i;
+		}
+	}
+
+	/**
+	 * Called by slaves: assign each point of the range to its nearest centroid of
+	 * every running k
+	 */
+	private double[] computing(double[] message) {
+		double[] partial = new double[FIELDS * first[ks.length]];
+		int flags = 2 * first[ks.length];
+		for (int index = offset; index < getRangeEnd(); ++index) {
+			Point2D point = allDataPoints.get(index);
+			double x = point.getX();
+			double y = point.getY();
+			int weight = point.getWeight();
+			for (int j = 0; j < ks.length; ++j) {
+				if (message[flags + j] == 0) {
+					continue;
+				}
+				int cluster = FIELDS * (first[j] + findNearest(message, j, x, y));
+				partial[cluster] += weight * x;
+				partial[cluster + 1] += weight * y;
+				partial[cluster + 2] += weight;
+				partial[cluster + 3] += weight * x * x;
+				partial[cluster + 4] += weight * y * y;
+				partial[cluster + 5] += weight * x * y;
+				partial[cluster + 6] += weight * nearestDistance;
+			}
+		}
+		return partial;
+	}
+
+	/**
+	 * @return index of the nearest centroid of the j-th k, its square distance
+	 * is left in nearestDistance
+	 */
+	private int findNearest(double[] message, int j, double x, double y) {
+		int nearest = 0;
+		double minDistance = Double.MAX_VALUE;
+		for (int i = first[j]; i < first[j + 1]; ++i) {
+			double dx = x - message[2 * i];
+			double dy = y - message[2 * i + 1];
+			double distance = dx * dx + dy * dy;
+			if (distance < minDistance) {
+				minDistance = distance;
+				nearest = i - first[j];
+			}
+		}
+		nearestDistance = minDistance;
+		return nearest;
+	}
+
+	/**
+	 * Called by master after a pass: move the centroids of each running k to the
+	 * means of their clusters, finish the k whose centroids stopped moving, and
+	 * start the next k once the previous one improves slowly enough
+	 */
+	private void updateCentroids(double[] message, double[] total) {
+		int flags = 2 * first[ks.length];
+		// the next k starts after this pass, it has no sums in it
+		int spawn = -1;
+		for (int j = 0; j < ks.length; ++j) {
+			if (state[j] != RUNNING) {
+				continue;
+			}
+			++iterations[j];
+			double previous = sse[j];
+			sse[j] = 0;
+			boolean moved = false;
+			for (int i = first[j]; i < first[j + 1]; ++i) {
+				double weight = total[FIELDS * i + 2];
+				sse[j] += total[FIELDS * i + 6];
+				if (weight == 0) {  // empty cluster keeps its centroid
+					continue;
+				}
+				double x = total[FIELDS * i] / weight;
+				double y = total[FIELDS * i + 1] / weight;
+				moved |= x != message[2 * i] || y != message[2 * i + 1];
+				message[2 * i] = x;
+				message[2 * i + 1] = y;
+			}
+			// Lloyd iterations may crawl for long on points without clear clusters
+			boolean converged = iterations[j] > 1 && previous - sse[j] <= tolerance * previous;
+			if (!moved || converged || iterations[j] >= maxIter) {
+				state[j] = DONE;
+				message[flags + j] = 0;
+				System.out.println("k = " + ks[j] + " done after " + iterations[j] + " iterations, SSE " + sse[j]);
+			}
+			boolean slow = iterations[j] > 1 && previous - sse[j] <= spawnTolerance * previous;
+			if (j + 1 < ks.length && state[j + 1] == NOT_STARTED && (state[j] == DONE || slow)) {
+				spawn = j;
+			}
+		}
+		if (spawn >= 0) {
+			split(message, total, spawn);
+			state[spawn + 1] = RUNNING;
+			message[flags + spawn + 1] = 1;
+		}
+		boolean running = false;
+		for (int j = 0; j < ks.length; ++j) {
+			running |= state[j] == RUNNING;
+		}
+		message[message.length - 1] = running ? 0 : 1;
+	}
+
+	/**
+	 * Called by master: the centroids of the (j + 1)-th k are those of the j-th,
+	 * with the clusters of largest SSE split in two along their main axis, one
+	 * standard deviation from the mean on each side. A half can be split again
+	 * if k grows by more than the number of clusters.
+	 */
+	private void split(double[] message, double[] total, int j) {
+		List<double[]> centers = new ArrayList<double[]>();
+		for (int i = first[j]; i < first[j + 1]; ++i) {
+			double weight = total[FIELDS * i + 2];
+			double[] axis = {0, 0};
+			if (weight > 0) {
+				double meanX = total[FIELDS * i] / weight;
+				double meanY = total[FIELDS * i + 1] / weight;
+				double varX = total[FIELDS * i + 3] / weight - meanX * meanX;
+				double varY = total[FIELDS * i + 4] / weight - meanY * meanY;
+				double cov = total[FIELDS * i + 5] / weight - meanX * meanY;
+				axis = getMainAxis(varX, varY, cov);
+			}
+			// x, y, SSE and the offset of the halves of a split
+			centers.add(new double[] {message[2 * i], message[2 * i + 1], total[FIELDS * i + 6], axis[0], axis[1]});
+		}
+		while (centers.size() < ks[j + 1]) {
+			double[] largest = centers.get(0);
+			for (double[] center: centers) {
+				if (center[2] > largest[2]) {
+					largest = center;
+				}
+			}
+			centers.remove(largest);
+			for (int side = -1; side <= 1; side += 2) {
+				centers.add(new double[] {largest[0] + side * largest[3], largest[1] + side * largest[4],
+						largest[2] / 2, largest[3] / 2, largest[4] / 2});
+			}
+		}
+		for (int i = 0; i < ks[j + 1]; ++i) {
+			message[2 * (first[j + 1] + i)] = centers.get(i)[0];
+			message[2 * (first[j + 1] + i) + 1] = centers.get(i)[1];
+		}
+	}
+
+	/**
+	 * @return largest eigenvector of the covariance matrix, as long as the
+	 * standard deviation along it
+	 */
+	private static double[] getMainAxis(double varX, double varY, double cov) {
+		double half = (varX - varY) / 2;
+		double lambda = (varX + varY) / 2 + Math.sqrt(half * half + cov * cov);
+		double vx = cov;
+		double vy = lambda - varX;
+		if (vx == 0 && vy == 0) {  // axis-aligned
+			vx = varX >= varY ? 1 : 0;
+			vy = varX >= varY ? 0 : 1;
+		}
+		double scale = Math.sqrt(Math.max(lambda, 0)) / Math.sqrt(vx * vx + vy * vy);
+		return new double[] {vx * scale, vy * scale};
+	}
+
+	/**
+	 * Called by every rank: the master broadcasts a sample of points, every slave
+	 * adds its points with their distance to each sample and their cluster for
+	 * every k, and the sums are reduced on the master with the SSE of every k
+	 */
+	private void measureSilhouettes(double[] message) {
+		double[] samples = new double[2 * sampleNum];
+		if (rank == 0) {
+			Set<Integer> sampleIndexes = new HashSet<Integer>();
+			for (int s = 0; s < sampleNum;) {
+				int index = random.nextInt(pointNum);
+				if (!sampleIndexes.add(index)) {
+					continue;
+				}
+				samples[2 * s] = allDataPoints.get(index).getX();
+				samples[2 * s + 1] = allDataPoints.get(index).getY();
+				++s;
+			}
+		}
+		comm.bcast(samples, 0, samples.length, 0);
+		Silhouette sampled = new Silhouette(sampleNum, ks);
+		double[] finalSSE = new double[ks.length];
+		if (rank != 0) {
+			double[] distances = new double[sampleNum];
+			int[] labels = new int[ks.length];
+			for (int index = offset; index < getRangeEnd(); ++index) {
+				Point2D point = allDataPoints.get(index);
+				double x = point.getX();
+				double y = point.getY();
+				for (int s = 0; s < sampleNum; ++s) {
+					double dx = x - samples[2 * s];
+					double dy = y - samples[2 * s + 1];
+					distances[s] = Math.sqrt(dx * dx + dy * dy);
+				}
+				for (int j = 0; j < ks.length; ++j) {
+					labels[j] = findNearest(message, j, x, y);
+					finalSSE[j] += point.getWeight() * nearestDistance;
+				}
+				sampled.add(distances, labels, point.getWeight());
+			}
+		}
+		// silhouette sums, then the SSE of each k
+		double[] sums = sampled.getSums();
+		double[] partial = new double[sums.length + ks.length];
+		System.arraycopy(sums, 0, partial, 0, sums.length);
+		System.arraycopy(finalSSE, 0, partial, sums.length, ks.length);
+		double[] total = new double[partial.length];
+		comm.reduce(partial, total, total.length, Communicator.SUM, 0);
+		++passNum;
+		if (rank != 0) {
+			return;
+		}
+		sampled.setSums(Arrays.copyOf(total, sums.length));
+		System.arraycopy(total, sums.length, sse, 0, ks.length);
+		silhouette = new double[ks.length];
+		confidence = new double[ks.length];
+		for (int j = 0; j < ks.length; ++j) {
+			int[] sampleLabels = new int[sampleNum];
+			for (int s = 0; s < sampleNum; ++s) {
+				sampleLabels[s] = findNearest(message, j, samples[2 * s], samples[2 * s + 1]);
+			}
+			double[] values = sampled.getValues(j, sampleLabels);
+			silhouette[j] = Silhouette.mean(values);
+			confidence[j] = Silhouette.getConfidence(values);
+		}
+	}
+
+	/**
+	 * Called by master to print the table of k and write it to a CSV file
+	 * @param outputFileName name of the output file
+	 */
+	public void outputResult(String outputFileName) {
+		if (rank != 0) {
+			return;
+		}
+		int iterationSum = 0;
+		System.out.println(String.format("%6s%12s%20s%14s%10s", "k", "iterations", "inertia", "silhouette", "+/-"));
+		for (int j = 0; j < ks.length; ++j) {
+			iterationSum += iterations[j];
+			System.out.println(String.format("%6d%12d%20.6g%14.4f%10.4f",
+					ks[j], iterations[j], sse[j], silhouette[j], confidence[j]));
+		}
+		System.out.println(passNum + " passes over the data for " + iterationSum + " iterations");
+		BufferedWriter bw = null;
+		try {
+			bw = new BufferedWriter(new FileWriter(outputFileName));
+			bw.write("k,iterations,inertia,silhouette,silhouette_ci\n");
+			for (int j = 0; j < ks.length; ++j) {
+				bw.write(ks[j] + "," + iterations[j] + "," + sse[j] + "," + silhouette[j] + ","
+						+ confidence[j] + "\n");
+			}
+		} catch (IOException e) {
+			System.out.println("Fail to write sweep file");
+			e.printStackTrace();
+		} finally {
+			try {
+				if (bw != null) {
+					bw.close();
+				}
+			} catch (IOException e) {
+				System.out.println("Fail to close sweep file");
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * @param list comma separated values or ranges, e.g. 2..10,15,20
+	 */
+	public static int[] parseKs(String list) {
+		Set<Integer> ks = new HashSet<Integer>();
+		for (String item: list.split(",")) {
+			int range = item.indexOf("..");
+			if (range < 0) {
+				ks.add(Integer.parseInt(item));
+				continue;
+			}
+			int to = Integer.parseInt(item.substring(range + 2));
+			for (int k = Integer.parseInt(item.substring(0, range)); k <= to; ++k) {
+				ks.add(k);
+			}
+		}
+		int[] result = new int[ks.size()];
+		int j = 0;
+		for (int k: ks) {
+			result[j++] = k;
+		}
+		return result;
+	}
+
+	public static void main(String[] args) throws Exception {
+		// user arguments start from index 3
+		final int[] ks = parseKs(args[3]);
+		final int maxIter = Integer.parseInt(args[4]);
+		final String inputFileName = args[5];
+		final String outputFileName = args[6];
+		// optional arguments: --spawn-tolerance 0.01 (relative SSE improvement
+		// below which the next k starts), --tolerance 1e-4 (relative SSE improvement
+		// below which a k is done; this default ends most k after 2-3 iterations,
+		// 0 runs them until no centroid moves), --sample 500 (points of the silhouette),
+		// --seed seed, --local ranks (run the ranks as threads of this JVM, without MPJ)
+		final Options options = new Options(args, 7);
+		if (options.has("local")) {
+			LocalCommunicator.run(options.getInt("local", 2), new LocalCommunicator.Task() {
+				@Override
+				public void run(Communicator comm) {
+					runRank(comm, inputFileName, ks, maxIter, outputFileName, options);
+				}
+			});
+			return;
+		}
+		MPI.Init(args);
+		runRank(new MPJCommunicator(), inputFileName, ks, maxIter, outputFileName, options);
+		MPI.Finalize();
+	}
+
+	private static void runRank(Communicator comm, String inputFileName, int[] ks, int maxIter,
+			String outputFileName, Options options) {
+		ParallelKSweepOnPoint sweep = new ParallelKSweepOnPoint(comm, inputFileName, ks, maxIter, options);
+		sweep.doSweep();
+		sweep.outputResult(outputFileName);
+	}
+}
@@ -1,3 +1,5 @@
+package point;
+
 import java.io.Serializable;
 
 /**
@@ -14,11 +16,14 @@ public class Point2D implements Serializable {
 	// coordinates of the point
 	private double x;
 	private double y;
+	// number of identical records this point stands for
+	private int weight;
 	
 	public Point2D(double x, double y) {
 		this.x = x;
 		this.y = y;
 		this.cluster = -1;
+		this.weight = 1;
 	}
 	
 	public Point2D(double x, double y, int cluster) {
@@ -56,6 +61,18 @@ public class Point2D implements Serializable {
 		return this.cluster;
 	}
 
+	public int getWeight() {
+		return weight;
+	}
+
+	public void setWeight(int weight) {
+		this.weight = weight;
+	}
+	
+	public void increaseWeight() {
+		++weight;
+	}
+
 	@Override
 	public String toString() {
 		return "(" + this.x + ", " + this.y + ")";
@@ -0,0 +1,42 @@
+package point;
+
+/**
+ * Strategy used by the point drivers to assign each point to its nearest
+ * centroid. A strategy is bound to a fixed range of points, index 0 being 
+ * the first point of the range, so it can keep per point state between iterations.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public abstract class PointAssignment {
+
+	/**
+	 * Called once per iteration, before any point is assigned
+	 * @param centroids centroid points of the current iteration
+	 */
+	public abstract void setCentroids(Point2D[] centroids);
+
+	/**
+	 * assign a point to its nearest centroid
+	 * @param index index of the point inside the range of this strategy
+	 * @param point the data point to be assigned
+	 * @return index of the nearest centroid
+	 */
+	public abstract int assign(int index, Point2D point);
+
+	/**
+	 * @param name "lloyd" or "yinyang"
+	 * @param k cluster number
+	 * @param pointNum number of points in the range
+	 * @return the assignment strategy with the given name
+	 */
+	public static PointAssignment create(String name, int k, int pointNum) {
+		if (name.equals("lloyd")) {
+			return new LloydAssignment(k);
+		}
+		if (name.equals("yinyang")) {
+			return new YinyangAssignment(k, pointNum);
+		}
+		throw new IllegalArgumentException("Unknown assignment strategy: " + name);
+	}
+}
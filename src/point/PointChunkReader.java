@@ -0,0 +1,120 @@
+package point;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.StringTokenizer;
+
+import generator.DataGenerator;
+import util.ChunkPrefetcher;
+
+/**
+ * Stream the points of a file chunk by chunk, prefetching the next chunk on a
+ * background thread. Two formats are supported:
+ * 		1. CSV, one "x,y" record per line
+ * 		2. binary (file name ending with ".bin"), x and y of each point as 
+ * 		   big endian doubles, e.g. written by DataOutputStream.writeDouble,
+ * 		   optionally after the header of generator.DataGenerator
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class PointChunkReader extends ChunkPrefetcher<PointChunkReader.Chunk> {
+
+	/**
+	 * coordinates of up to chunkSize consecutive points
+	 */
+	public static class Chunk {
+		public final double[] x;
+		public final double[] y;
+		public int size;
+
+		Chunk(int capacity) {
+			x = new double[capacity];
+			y = new double[capacity];
+		}
+	}
+
+	private int chunkSize;
+	private BufferedReader br;
+	private FileChannel channel;
+	private ByteBuffer buffer;
+
+	public PointChunkReader(String fileName, int chunkSize) throws IOException {
+		this.chunkSize = chunkSize;
+		if (isBinary(fileName)) {
+			channel = new FileInputStream(fileName).getChannel();
+			buffer = ByteBuffer.allocateDirect(chunkSize * 16);
+			skipHeader(fileName);
+		} else {
+			br = new BufferedReader(new FileReader(fileName));
+		}
+		start();
+	}
+
+	public static boolean isBinary(String fileName) {
+		return fileName.endsWith(".bin");
+	}
+
+	/**
+	 * Start after the header if the file has one, it must be of 2D points
+	 */
+	private void skipHeader(String fileName) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(DataGenerator.HEADER_SIZE);
+		while (header.hasRemaining() && channel.read(header) != -1) {
+			// keep filling the header
+		}
+		header.flip();
+		if (header.remaining() < DataGenerator.HEADER_SIZE || header.getInt() != DataGenerator.MAGIC) {
+			channel.position(0);
+			return;
+		}
+		int type = header.getInt();
+		header.getLong();  // record number
+		int width = header.getInt();
+		if (type != DataGenerator.TYPE_POINT || width != 2) {
+			throw new IOException(fileName + " does not hold 2D points");
+		}
+	}
+
+	@Override
+	protected Chunk readChunk() throws IOException {
+		Chunk chunk = new Chunk(chunkSize);
+		if (channel != null) {
+			buffer.clear();
+			while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+				// keep filling the buffer
+			}
+			buffer.flip();
+			while (buffer.remaining() >= 16) {
+				chunk.x[chunk.size] = buffer.getDouble();
+				chunk.y[chunk.size] = buffer.getDouble();
+				++chunk.size;
+			}
+		} else {
+			String line;
+			while (chunk.size < chunkSize && (line = br.readLine()) != null) {
+				if (CSVReader.isBlank(line)) {
+					continue;
+				}
+				StringTokenizer tokens = new StringTokenizer(line, ",");
+				chunk.x[chunk.size] = Double.parseDouble(tokens.nextToken());
+				chunk.y[chunk.size] = Double.parseDouble(tokens.nextToken());
+				++chunk.size;
+			}
+		}
+		return chunk.size == 0 ? null : chunk;
+	}
+
+	@Override
+	protected void closeFile() throws IOException {
+		if (channel != null) {
+			channel.close();
+		} else {
+			br.close();
+		}
+	}
+}
@@ -1,3 +1,5 @@
+package point;
+
 import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
@@ -9,6 +11,8 @@ public class PointCluster implements Serializable {
 	private Point2D centroid;
 	private double sumX;
 	private double sumY;
+	// total weight of the points, i.e. number of records they stand for
+	private int weight;
 	//	private Point2D farthestPoint;
 	//	private double farestDistance;
 
@@ -28,13 +32,12 @@ public class PointCluster implements Serializable {
 		if (isEmpty()) {
 			centroid = new Point2D(0, 0);
 		} else {
-			int pointsNum = points.size();
 //			double sumX = 0, sumY = 0;
 //			for (Point2D point: points) {
 //				sumX += point.getX();
 //				sumY += point.getY();
 //			}
-			centroid = new Point2D(sumX / pointsNum, sumY / pointsNum);
+			centroid = new Point2D(sumX / weight, sumY / weight);
 		}
 		return centroid;
 	}
@@ -58,27 +61,57 @@ public class PointCluster implements Serializable {
 	
 	public void addPointAndIncreaseSum(Point2D point) {
 		addPoint(point);
-		increaseSum(point.getX(), point.getY());
+		increaseSum(point.getX() * point.getWeight(), point.getY() * point.getWeight());
+		weight += point.getWeight();
+	}
+	
+	/**
+	 * add points that are not kept in the cluster
+	 * @param sumX sum of their X coordinates
+	 * @param sumY sum of their Y coordinates
+	 * @param weight number of points
+	 */
+	public void addSummary(double sumX, double sumY, int weight) {
+		increaseSum(sumX, sumY);
+		this.weight += weight;
+	}
+
+	/**
+	 * add the point to the sums without keeping it in the cluster
+	 */
+	public void countPoint(Point2D point) {
+		increaseSum(point.getX() * point.getWeight(), point.getY() * point.getWeight());
+		weight += point.getWeight();
 	}
 	
 	public void addAll(PointCluster cluster) {
 		for (Point2D point: cluster.getPoints()) {
 			points.add(point);
 		}
+		increaseSum(cluster.getSumX(), cluster.getSumY());
+		weight += cluster.getWeight();
 	}
 
 	public void removePointAndDecreaseSum(Point2D point) {
 		points.remove(point);
-		sumX -= point.getX();
-		sumY -= point.getY();
+		sumX -= point.getX() * point.getWeight();
+		sumY -= point.getY() * point.getWeight();
+		weight -= point.getWeight();
 	}
 	
 	public int getPointNum() {
 		return points.size();
 	}
 
+	/**
+	 * @return total weight of the points added with addPointAndIncreaseSum
+	 */
+	public int getWeight() {
+		return weight;
+	}
+
 	public boolean isEmpty() {
-		return points.size() == 0;
+		return weight == 0;
 	}
 
 	public Iterable<Point2D> getPoints() {
@@ -0,0 +1,538 @@
+package point;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import util.ClusterFileWriter;
+import util.KMeansModel;
+import util.LabelFile;
+import util.Options;
+
+/**
+ * Do K Means on 2D points 
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class SequentialKMeansOnPoint {
+
+	// all data points
+	private List<Point2D> points;
+	// total data point Number
+	private int pointNum;
+	// cluster number
+	private int k;
+	// maximum iterations to run k means
+	private int maxIter;
+	// iterations the last run took
+	private int iterationNum;
+	// list of k clusters
+	private List<PointCluster> pointClusters;
+	// strategy to find the nearest centroid of each point
+	private PointAssignment assignment;
+	// coreset mode: cluster a weighted coreset, then label the input file in one streaming pass
+	private boolean coreset;
+	private String inputFileName;
+	// out-of-core mode: stream the input file in every iteration instead of loading it
+	private boolean outOfCore;
+	private int chunkSize;
+	// optional on-disk label of each record in out-of-core mode
+	private String labelFileName;
+	// incremental mode: only the records appended since the last run are loaded,
+	// the earlier ones are summarized by the saved state
+	private String stateFileName;
+	private IncrementalState state;
+	// position in the input file up to which records are loaded
+	private long inputOffset;
+	// optional model file of an earlier run to initialize the centroids from
+	private String initModelFileName;
+	// final point number of each cluster and inertia, set by the streaming output
+	private long[] counts;
+	private double inertia;
+
+	public SequentialKMeansOnPoint(String fileName, int k, int maxIter) {
+		this(fileName, k, maxIter, new Options());
+	}
+
+	public SequentialKMeansOnPoint(String fileName, int k, int maxIter, Options options) {
+		this.k = k;
+		this.maxIter = maxIter;
+		this.pointClusters = new ArrayList<PointCluster>();
+		this.inputFileName = fileName;
+		this.coreset = options.has("coreset");
+		this.outOfCore = options.has("out-of-core");
+		this.chunkSize = options.getInt("chunk", 1 << 16);
+		this.labelFileName = options.get("labels", null);
+		this.stateFileName = options.get("state", null);
+		this.initModelFileName = options.get("init-model", null);
+		if (outOfCore) {
+			if (initModelFileName != null) {
+				initializeClusterFromModel();
+			} else {
+				initializeClusterFromStream();
+			}
+			return;
+		}
+		if (coreset) {
+			String size = options.get("coreset", null);
+			int coresetSize = size.matches("\\d+") ? Integer.parseInt(size) : 0;
+			if (coresetSize < k) {
+				throw new IllegalArgumentException("--coreset needs a size of at least k, got " + size);
+			}
+			CoresetBuilder builder = new CoresetBuilder(k, coresetSize);
+			this.points = builder.build(fileName);
+			System.out.println("Coreset of " + points.size() + " points from " 
+					+ builder.getRecordNum() + " records");
+		} else if (stateFileName != null) {
+			this.points = new ArrayList<Point2D>();
+			loadTail(fileName);
+		} else {
+			this.points = new ArrayList<Point2D>();
+			loadData(fileName, options.has("dedup"));
+		}
+		this.pointNum = points.size();
+		this.assignment = PointAssignment.create(options.get("assign", "lloyd"), k, pointNum);
+		if (state != null) {
+			// warm start from the saved clusters
+			for (int i = 0; i < k; ++i) {
+				pointClusters.add(state.getCluster(i));
+			}
+		} else if (initModelFileName != null) {
+			initializeClusterFromModel();
+		} else {
+			initializeCluster();
+		}
+	}
+
+	/**
+	 * Incremental mode: load the records appended to the CSV file since the last run
+	 * @param fileName name of the CSV file to load
+	 */
+	private void loadTail(String fileName) {
+		try {
+			state = IncrementalState.load(stateFileName);
+		} catch (IOException e) {
+			System.out.println("Fail to load state, start from scratch");
+			e.printStackTrace();
+		}
+		if (state != null && state.getK() != k) {
+			throw new IllegalArgumentException("State was saved with k = " + state.getK());
+		}
+		CSVReader csvReader = new CSVReader(fileName, state == null ? 0 : state.getOffset());
+		String[] coordinates = null;
+		while ((coordinates = csvReader.readRecord()) != null) {
+			points.add(new Point2D(
+					Double.parseDouble(coordinates[0]), 
+					Double.parseDouble(coordinates[1])));
+		}
+		// a last line without line end is left for the next run
+		inputOffset = csvReader.getPosition();
+		System.out.println("Loaded " + points.size() + " new records after " 
+				+ (state == null ? 0 : state.getRecordNum()));
+	}
+
+	/**
+	 * load all data points from CSV file
+	 * @param fileName name of the CSV file to load
+	 * @param dedup true to load identical records as one weighted point
+	 */
+	private void loadData(String fileName, boolean dedup) {
+		CSVReader csvReader = new CSVReader(fileName);
+		String[] coordinates = null;
+		// collapse identical records into one weighted point
+		Map<String, Point2D> uniquePoints = dedup ? new HashMap<String, Point2D>() : null;
+		while ((coordinates = csvReader.readRecord()) != null) {
+			assert(coordinates.length == 2);
+			String key = null;
+			if (dedup) {
+				key = coordinates[0] + "," + coordinates[1];
+				Point2D same = uniquePoints.get(key);
+				if (same != null) {
+					same.increaseWeight();
+					continue;
+				}
+			}
+			Point2D point = new Point2D(
+					Double.parseDouble(coordinates[0]), 
+					Double.parseDouble(coordinates[1]));
+			points.add(point);
+			if (dedup) {
+				uniquePoints.put(key, point);
+			}
+		}
+	}
+
+	/**
+	 * Randomly choose k points to be the centroid point
+	 */
+	private void initializeCluster() {
+		assert(this.pointNum >= k);
+		
+		// use hash set to avoid choosing the same point
+		Set<Integer> centerIndexes = new HashSet<Integer>();
+		Random random = new Random();
+		for (int i = 0; i < k;) {
+			int centerIndex = random.nextInt(pointNum);
+			if (centerIndexes.contains(centerIndex)) {
+				continue;
+			}
+			PointCluster pc = new PointCluster();
+			pc.setCentroid(new Point2D(points.get(centerIndex)));
+			pointClusters.add(pc);
+			centerIndexes.add(centerIndex);
+			++i;
+		}
+	}
+
+	/**
+	 * Warm start: the centroid points are those of the model of an earlier run
+	 */
+	private void initializeClusterFromModel() {
+		KMeansModel model;
+		try {
+			model = KMeansModel.read(initModelFileName);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Fail to read model " + initModelFileName, e);
+		}
+		if (model.getType() != KMeansModel.POINT || model.getK() != k) {
+			throw new IllegalArgumentException(initModelFileName + " is not a model of " + k + " point clusters");
+		}
+		for (double[] centroid: model.getPointCentroids()) {
+			PointCluster pc = new PointCluster();
+			pc.setCentroid(new Point2D(centroid[0], centroid[1]));
+			pointClusters.add(pc);
+		}
+	}
+
+	/**
+	 * Out-of-core mode: randomly choose k records of the input file to be the 
+	 * centroid points, with a reservoir sample, and count the records
+	 */
+	private void initializeClusterFromStream() {
+		Point2D[] centers = new Point2D[k];
+		Random random = new Random();
+		pointNum = 0;
+		try {
+			PointChunkReader reader = new PointChunkReader(inputFileName, chunkSize);
+			PointChunkReader.Chunk chunk;
+			while ((chunk = reader.next()) != null) {
+				for (int j = 0; j < chunk.size; ++j) {
+					++pointNum;
+					int slot = pointNum <= k ? pointNum - 1 : random.nextInt(pointNum);
+					if (slot < k) {
+						centers[slot] = new Point2D(chunk.x[j], chunk.y[j]);
+					}
+				}
+			}
+		} catch (IOException e) {
+			System.out.println("Fail to read input file");
+			e.printStackTrace();
+		}
+		assert(this.pointNum >= k);
+		for (int i = 0; i < k; ++i) {
+			PointCluster pc = new PointCluster();
+			pc.setCentroid(centers[i]);
+			pointClusters.add(pc);
+		}
+	}
+
+	/**
+	 * Do Clustering all all data points using K Means algorithm
+	 * Stop conditions: 
+	 * 		1. reach max iterations 
+	 *  	2. no change between 2 iterations
+	 */
+	public void doClustering() {
+		if (outOfCore) {
+			try {
+				doClusteringOutOfCore();
+			} catch (IOException e) {
+				System.out.println("Fail to stream input file");
+				e.printStackTrace();
+			}
+			return;
+		}
+		boolean changed = true;
+		for (int i = 0; i < maxIter; ++i) {
+			System.out.println("Iteration " + (i + 1) + "...");
+			iterationNum = i + 1;
+			assignment.setCentroids(getCentroids());
+			for (int index = 0; index < pointNum; ++index) {
+				Point2D point = points.get(index);
+				int clusterIndex = assignment.assign(index, point);
+				PointCluster pc = pointClusters.get(clusterIndex);
+				int originalClusterIndex = point.getCluster();
+				// first iteration
+				if (originalClusterIndex == -1) {
+					pc.addPointAndIncreaseSum(point);
+					point.setCluster(clusterIndex);
+					continue;
+				}
+				// remove from the original cluster
+				if (clusterIndex != originalClusterIndex) {
+					pointClusters.get(originalClusterIndex).removePointAndDecreaseSum(point);
+					changed = true;  // some point change to another cluster
+					// add to new cluster
+					pc.addPointAndIncreaseSum(point);
+					point.setCluster(clusterIndex);
+				}
+			}
+			// no change between 2 iterations, already converge!
+			if (!changed) {
+				break;
+			}
+			// update cluster centroid
+			updateCentroid();
+			changed = false;
+		}
+		if (stateFileName != null) {
+			saveState();
+		}
+	}
+
+	/**
+	 * Incremental mode: save the clusters and the consumed offset, and append
+	 * the labels of the new records
+	 */
+	private void saveState() {
+		long recordNum = (state == null ? 0 : state.getRecordNum()) + pointNum;
+		try {
+			IncrementalState.appendLabels(stateFileName, state == null ? 0 : state.getRecordNum(), points);
+			IncrementalState.save(stateFileName, inputOffset, recordNum, getModel(), getClusterInertias());
+		} catch (IOException e) {
+			System.out.println("Fail to save state");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Out-of-core K Means: every iteration streams the input file chunk by chunk,
+	 * only the centroids and the per cluster sums are kept in memory.
+	 * Stop conditions: 
+	 * 		1. reach max iterations 
+	 *  	2. centroids do not change between 2 iterations
+	 */
+	private void doClusteringOutOfCore() throws IOException {
+		LloydAssignment nearest = new LloydAssignment(k);
+		LabelFile labels = labelFileName == null ? null : new LabelFile(labelFileName);
+		for (int i = 0; i < maxIter; ++i) {
+			System.out.println("Iteration " + (i + 1) + "...");
+			iterationNum = i + 1;
+			Point2D[] centroids = getCentroids();
+			nearest.setCentroids(centroids);
+			double[] sumX = new double[k];
+			double[] sumY = new double[k];
+			long[] count = new long[k];
+			long moved = 0;
+			if (labels != null) {
+				labels.startIteration();
+			}
+			PointChunkReader reader = new PointChunkReader(inputFileName, chunkSize);
+			PointChunkReader.Chunk chunk;
+			while ((chunk = reader.next()) != null) {
+				for (int j = 0; j < chunk.size; ++j) {
+					int clusterIndex = nearest.assign(0, new Point2D(chunk.x[j], chunk.y[j]));
+					sumX[clusterIndex] += chunk.x[j];
+					sumY[clusterIndex] += chunk.y[j];
+					++count[clusterIndex];
+					if (labels != null && labels.update(clusterIndex) != clusterIndex) {
+						++moved;
+					}
+				}
+			}
+			if (labels != null) {
+				labels.finishIteration();
+				System.out.println(moved + " points moved");
+			}
+			// update cluster centroid, an empty cluster keeps its centroid
+			boolean changed = false;
+			for (int c = 0; c < k; ++c) {
+				if (count[c] == 0) {
+					continue;
+				}
+				Point2D centroid = new Point2D(sumX[c] / count[c], sumY[c] / count[c]);
+				if (centroid.distanceTo(centroids[c]) != 0) {
+					changed = true;
+				}
+				pointClusters.get(c).setCentroid(centroid);
+			}
+			// same centroids give the same assignment, already converge!
+			if (!changed) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * update all clusters' centroid point
+	 */
+	private void updateCentroid() {
+		for (PointCluster pc: pointClusters) {
+			pc.updateCentroid();
+		}
+	}
+
+	/**
+	 * @return current centroid point of all clusters
+	 */
+	private Point2D[] getCentroids() {
+		Point2D[] centroids = new Point2D[k];
+		for (int i = 0; i < k; ++i) {
+			centroids[i] = pointClusters.get(i).getCentroid();
+		}
+		return centroids;
+	}
+
+	/**
+	 * @return iterations the clustering took
+	 */
+	public int getIterationNum() {
+		return iterationNum;
+	}
+
+	/**
+	 * Write result to file
+	 * @param outputFileName name of the output file
+	 */
+	public void outputResult(String outputFileName) {
+		if (coreset || outOfCore) {
+			outputLabeledInput(outputFileName);
+			return;
+		}
+		FileWriter fw  = null;
+		BufferedWriter bw = null;
+		try {
+			fw = new FileWriter(outputFileName);
+			bw = new BufferedWriter(fw);
+			for (int i = 0; i < k; ++i) {
+				PointCluster pc = pointClusters.get(i);
+				bw.write("Cluster " + i + ":\n");
+				for (Point2D point: pc.getPoints()) {
+					// expand weighted points back to the original records
+					for (int j = 0; j < point.getWeight(); ++j) {
+						bw.write("\t" + point + "\n");
+					}
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			try {
+				bw.close();
+				fw.close();
+			} catch (IOException e) {
+				System.out.println("Fail to close output file");
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Coreset and out-of-core modes: stream the input file once, assign each record 
+	 * to the nearest final centroid and write it to the cluster listing
+	 * @param outputFileName name of the output file
+	 */
+	private void outputLabeledInput(String outputFileName) {
+		Point2D[] centroids = getCentroids();
+		LloydAssignment nearest = new LloydAssignment(k);
+		nearest.setCentroids(centroids);
+		counts = new long[k];
+		inertia = 0;
+		try {
+			ClusterFileWriter writer = new ClusterFileWriter(outputFileName, k);
+			PointChunkReader reader = new PointChunkReader(inputFileName, chunkSize);
+			PointChunkReader.Chunk chunk;
+			while ((chunk = reader.next()) != null) {
+				for (int j = 0; j < chunk.size; ++j) {
+					Point2D point = new Point2D(chunk.x[j], chunk.y[j]);
+					int clusterIndex = nearest.assign(0, point);
+					writer.write(clusterIndex, point.toString());
+					++counts[clusterIndex];
+					inertia += point.distanceTo(centroids[clusterIndex]);
+				}
+			}
+			writer.close();
+		} catch (IOException e) {
+			System.out.println("Fail to write output file");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return centroids, point number of each cluster and inertia of the current clustering
+	 */
+	private KMeansModel getModel() {
+		double[][] centroids = new double[k][];
+		for (int i = 0; i < k; ++i) {
+			Point2D centroid = pointClusters.get(i).getCentroid();
+			centroids[i] = new double[] {centroid.getX(), centroid.getY()};
+		}
+		if (counts != null) {  // already known from the streaming output
+			return new KMeansModel(centroids, counts, inertia);
+		}
+		long[] clusterCounts = new long[k];
+		double totalInertia = 0;
+		for (int i = 0; i < k; ++i) {
+			clusterCounts[i] = pointClusters.get(i).getWeight();
+		}
+		for (double clusterInertia: getClusterInertias()) {
+			totalInertia += clusterInertia;
+		}
+		return new KMeansModel(centroids, clusterCounts, totalInertia);
+	}
+
+	/**
+	 * @return squared distance sum of the records of each cluster to its centroid,
+	 * including those of earlier runs in incremental mode
+	 */
+	private double[] getClusterInertias() {
+		double[] inertias = new double[k];
+		for (int i = 0; i < k; ++i) {
+			PointCluster pc = pointClusters.get(i);
+			for (Point2D point: pc.getPoints()) {
+				inertias[i] += point.getWeight() * point.distanceTo(pc.getCentroid());
+			}
+			if (state != null) {
+				inertias[i] += state.getInertia(i, pc.getCentroid());
+			}
+		}
+		return inertias;
+	}
+
+	/**
+	 * Write the model file used to warm-start later runs
+	 * @param modelFileName name of the model file
+	 */
+	public void saveModel(String modelFileName) {
+		try {
+			getModel().write(modelFileName);
+		} catch (IOException e) {
+			System.out.println("Fail to write model file");
+			e.printStackTrace();
+		}
+	}
+
+	public static void main(String[] args) {
+		int k = Integer.parseInt(args[0]);
+		int maxIter = Integer.parseInt(args[1]);
+		String inputFileName = args[2];
+		String outputFileName = args[3];
+		// optional arguments, e.g. --assign yinyang, --dedup, --coreset 100000,
+		// --out-of-core [--chunk 65536] [--labels labelFile], --state statePrefix,
+		// --init-model modelFile, --model-out modelFile (default: outputFile.model)
+		Options options = new Options(args, 4);
+		SequentialKMeansOnPoint kmp = new SequentialKMeansOnPoint(inputFileName, k, maxIter, options);
+		kmp.doClustering();
+		kmp.outputResult(outputFileName);
+		kmp.saveModel(options.get("model-out", outputFileName + ".model"));
+	}
+}
+
@@ -0,0 +1,261 @@
+package point;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.StringTokenizer;
+
+import util.LatencyHistogram;
+import util.Options;
+
+/**
+ * Online K Means on a stream of 2D points.
+ * Records ("x,y" lines) are read from stdin or from clients of a local socket.
+ * Each record is answered right away with "x,y,cluster" and then used to
+ * update the centroids, either
+ * 		1. sequentially (MacQueen): the centroid is the running mean of its points
+ * 		2. by decayed mini-batch: at the end of each batch, a centroid moves towards
+ * 		   the mean of its batch points, older points weighing less and less
+ * A snapshot of the centroids is published periodically, and throughput
+ * and latency of the assignments are reported on stderr. The latency of a
+ * record runs from its reading, so it includes the wait for other clients.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class StreamingKMeansOnPoint {
+
+	// cluster number
+	private int k;
+	// number of centroids initialized so far, from the first records
+	private int centroidNum;
+	private Point2D[] centroids;
+	private LloydAssignment assignment;
+
+	// true for decayed mini-batch updates, false for MacQueen
+	private boolean miniBatch;
+	private int batchSize;
+	private double decay;
+	// MacQueen: running sums of each cluster
+	private PointCluster[] clusters;
+	// mini-batch: points of the current batch, and decayed count of each cluster
+	private PointCluster[] batchClusters;
+	private int batchNum;
+	private double[] decayedCount;
+
+	// snapshot publication
+	private String snapshotFileName;
+	private long snapshotInterval;
+	private long lastSnapshot;
+	// throughput and latency report
+	private long reportInterval;
+	private long lastReport;
+	private LatencyHistogram latencies;
+	private long totalRecords;
+
+	public StreamingKMeansOnPoint(int k, Options options) {
+		this.k = k;
+		this.centroids = new Point2D[k];
+		this.assignment = new LloydAssignment(k);
+		this.miniBatch = options.get("update", "macqueen").equals("minibatch");
+		this.batchSize = options.getInt("batch", 1000);
+		this.decay = options.getDouble("decay", 0.9);
+		this.clusters = newClusters();
+		this.batchClusters = newClusters();
+		this.decayedCount = new double[k];
+		this.snapshotFileName = options.get("snapshot", null);
+		this.snapshotInterval = options.getInt("snapshot-every", 10000) * 1000000L;
+		this.reportInterval = options.getInt("report-every", 10000) * 1000000L;
+		this.latencies = new LatencyHistogram();
+		this.lastSnapshot = this.lastReport = System.nanoTime();
+	}
+
+	private PointCluster[] newClusters() {
+		PointCluster[] newClusters = new PointCluster[k];
+		for (int i = 0; i < k; ++i) {
+			newClusters[i] = new PointCluster();
+		}
+		return newClusters;
+	}
+
+	/**
+	 * Assign a record to its nearest centroid, then update the model
+	 * @param point the record
+	 * @return index of the cluster
+	 */
+	public int process(Point2D point) {
+		return process(point, System.nanoTime());
+	}
+
+	/**
+	 * @param start System.nanoTime() when the record was read, so the latency
+	 * includes the wait for the other clients
+	 */
+	public synchronized int process(Point2D point, long start) {
+		int clusterIndex;
+		if (centroidNum < k) {  // the first k records are the initial centroids
+			clusterIndex = centroidNum;
+			centroids[centroidNum++] = new Point2D(point);
+			if (centroidNum == k) {
+				assignment.setCentroids(centroids);
+			}
+		} else {
+			clusterIndex = assignment.assign(0, point);
+		}
+		long end = System.nanoTime();
+		latencies.record(end - start);
+		++totalRecords;
+
+		update(clusterIndex, point);
+		if (snapshotFileName != null && end - lastSnapshot >= snapshotInterval) {
+			publishSnapshot();
+			lastSnapshot = end;
+		}
+		if (end - lastReport >= reportInterval) {
+			report(end - lastReport);
+			lastReport = end;
+		}
+		return clusterIndex;
+	}
+
+	private void update(int clusterIndex, Point2D point) {
+		if (!miniBatch) {
+			clusters[clusterIndex].countPoint(point);
+			centroids[clusterIndex] = clusters[clusterIndex].updateCentroid();
+			return;
+		}
+		batchClusters[clusterIndex].countPoint(point);
+		if (++batchNum < batchSize) {
+			return;
+		}
+		// end of the batch: move centroids towards the mean of their batch points
+		for (int i = 0; i < k; ++i) {
+			decayedCount[i] *= decay;
+			PointCluster batch = batchClusters[i];
+			if (batch.isEmpty() || i >= centroidNum) {
+				continue;
+			}
+			decayedCount[i] += batch.getWeight();
+			double rate = batch.getWeight() / decayedCount[i];
+			Point2D mean = batch.updateCentroid();
+			centroids[i] = new Point2D(
+					centroids[i].getX() + rate * (mean.getX() - centroids[i].getX()),
+					centroids[i].getY() + rate * (mean.getY() - centroids[i].getY()));
+		}
+		batchClusters = newClusters();
+		batchNum = 0;
+	}
+
+	/**
+	 * Write the centroids to the snapshot file. The file is replaced atomically,
+	 * so readers never see a partial snapshot.
+	 */
+	private void publishSnapshot() {
+		File snapshot = new File(snapshotFileName);
+		File tmp = new File(snapshotFileName + ".tmp");
+		BufferedWriter bw = null;
+		try {
+			bw = new BufferedWriter(new FileWriter(tmp));
+			for (int i = 0; i < centroidNum; ++i) {
+				bw.write("Cluster " + i + ": " + centroids[i] + "\n");
+			}
+			bw.close();
+			if (!tmp.renameTo(snapshot)) {
+				snapshot.delete();
+				tmp.renameTo(snapshot);
+			}
+		} catch (IOException e) {
+			System.err.println("Fail to write snapshot");
+			e.printStackTrace();
+		}
+	}
+
+	private void report(long elapsed) {
+		double seconds = elapsed / 1e9;
+		System.err.println(String.format(
+				"%d records, %.0f events/sec, assignment latency p50 %.1f us, p99 %.1f us",
+				totalRecords, latencies.getCount() / seconds,
+				latencies.getPercentile(50) / 1e3, latencies.getPercentile(99) / 1e3));
+		latencies.reset();
+	}
+
+	/**
+	 * Answer every "x,y" line of the input with "x,y,cluster"
+	 */
+	public void serve(BufferedReader br, Writer out) throws IOException {
+		String line;
+		StringBuilder answer = new StringBuilder();
+		while ((line = br.readLine()) != null) {
+			long start = System.nanoTime();
+			StringTokenizer tokens = new StringTokenizer(line, ",");
+			if (tokens.countTokens() < 2) {
+				continue;
+			}
+			Point2D point = new Point2D(Double.parseDouble(tokens.nextToken()),
+					Double.parseDouble(tokens.nextToken()));
+			int clusterIndex = process(point, start);
+			answer.setLength(0);
+			answer.append(line).append(',').append(clusterIndex).append('\n');
+			out.write(answer.toString());
+			// answer right away unless more records are already waiting
+			if (!br.ready()) {
+				out.flush();
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * Accept clients on a local socket, one thread per client
+	 */
+	public void serve(int port) throws IOException {
+		ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		System.err.println("Listening on port " + server.getLocalPort());
+		while (true) {
+			final Socket socket = server.accept();
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						serve(new BufferedReader(new InputStreamReader(socket.getInputStream())),
+								new BufferedWriter(new OutputStreamWriter(socket.getOutputStream())));
+					} catch (IOException e) {
+						e.printStackTrace();
+					} finally {
+						try {
+							socket.close();
+						} catch (IOException e) {
+							e.printStackTrace();
+						}
+					}
+				}
+			}).start();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int k = Integer.parseInt(args[0]);
+		// optional arguments: --port 9000, --update macqueen|minibatch, --batch 1000,
+		// --decay 0.9, --snapshot file, --snapshot-every ms, --report-every ms
+		Options options = new Options(args, 1);
+		StreamingKMeansOnPoint skm = new StreamingKMeansOnPoint(k, options);
+		if (options.has("port")) {
+			skm.serve(options.getInt("port", 0));
+		} else {
+			skm.serve(new BufferedReader(new InputStreamReader(System.in)),
+					new BufferedWriter(new OutputStreamWriter(System.out)));
+			skm.report(System.nanoTime() - skm.lastReport);
+			if (skm.snapshotFileName != null) {
+				skm.publishSnapshot();
+			}
+		}
+	}
+}
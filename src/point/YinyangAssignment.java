@@ -0,0 +1,221 @@
+package point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Yinyang assignment. Centroids are grouped once, and each point keeps
+ * an upper bound on the distance to its centroid plus one lower bound per group
+ * on the distance to the other centroids of that group. A point is only compared
+ * with the centroids of the groups whose lower bound is below its upper bound.
+ *
+ * Memory is k / 10 bounds per point, between Hamerly (1) and Elkan (k).
+ * Bounds are kept on the real (not square) distance so that the triangle
+ * inequality holds.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class YinyangAssignment extends PointAssignment {
+	// number of iterations used to group the centroids
+	private static final int GROUPING_ITER = 5;
+
+	// cluster number
+	private int k;
+	// number of centroid groups
+	private int groupNum;
+	// group of each centroid, and centroids of each group
+	private int[] groupOf;
+	private int[][] members;
+
+	private Point2D[] centroids;
+	private Point2D[] previousCentroids;
+	// how far each centroid and each group moved in the last update
+	private double[] drift;
+	private double[] groupDrift;
+
+	// per point state: assigned centroid, upper bound and group lower bounds
+	private int[] assigned;
+	private double[] upper;
+	private double[] lower;
+
+	public YinyangAssignment(int k, int pointNum) {
+		this.k = k;
+		this.groupNum = Math.max(1, k / 10);
+		this.drift = new double[k];
+		this.groupDrift = new double[groupNum];
+		this.assigned = new int[pointNum];
+		this.upper = new double[pointNum];
+		this.lower = new double[pointNum * groupNum];
+		Arrays.fill(assigned, -1);
+	}
+
+	/**
+	 * Drifts are computed here once per iteration and shared by all points.
+	 */
+	@Override
+	public void setCentroids(Point2D[] centroids) {
+		if (groupOf == null) {
+			groupCentroids(centroids);
+		}
+		if (previousCentroids != null) {
+			Arrays.fill(groupDrift, 0);
+			for (int i = 0; i < k; ++i) {
+				drift[i] = Math.sqrt(centroids[i].distanceTo(previousCentroids[i]));
+				groupDrift[groupOf[i]] = Math.max(groupDrift[groupOf[i]], drift[i]);
+			}
+		}
+		this.centroids = centroids;
+		this.previousCentroids = centroids.clone();
+	}
+
+	/**
+	 * Group the initial centroids by running a few K Means iterations on them
+	 */
+	private void groupCentroids(Point2D[] centroids) {
+		groupOf = new int[k];
+		Point2D[] groupCenters = new Point2D[groupNum];
+		for (int g = 0; g < groupNum; ++g) {
+			groupCenters[g] = centroids[g * k / groupNum];
+		}
+		for (int iter = 0; iter < GROUPING_ITER; ++iter) {
+			double[] sumX = new double[groupNum];
+			double[] sumY = new double[groupNum];
+			int[] count = new int[groupNum];
+			for (int i = 0; i < k; ++i) {
+				double minDistance = Double.MAX_VALUE;
+				for (int g = 0; g < groupNum; ++g) {
+					double distance = centroids[i].distanceTo(groupCenters[g]);
+					if (distance < minDistance) {
+						minDistance = distance;
+						groupOf[i] = g;
+					}
+				}
+				sumX[groupOf[i]] += centroids[i].getX();
+				sumY[groupOf[i]] += centroids[i].getY();
+				++count[groupOf[i]];
+			}
+			for (int g = 0; g < groupNum; ++g) {
+				if (count[g] != 0) {
+					groupCenters[g] = new Point2D(sumX[g] / count[g], sumY[g] / count[g]);
+				}
+			}
+		}
+		// drop empty groups
+		List<List<Integer>> groups = new ArrayList<List<Integer>>();
+		int[] newIndex = new int[groupNum];
+		for (int g = 0; g < groupNum; ++g) {
+			List<Integer> group = new ArrayList<Integer>();
+			for (int i = 0; i < k; ++i) {
+				if (groupOf[i] == g) {
+					group.add(i);
+				}
+			}
+			newIndex[g] = groups.size();
+			if (!group.isEmpty()) {
+				groups.add(group);
+			}
+		}
+		members = new int[groups.size()][];
+		for (int g = 0; g < groups.size(); ++g) {
+			members[g] = new int[groups.get(g).size()];
+			for (int j = 0; j < members[g].length; ++j) {
+				members[g][j] = groups.get(g).get(j);
+			}
+		}
+		for (int i = 0; i < k; ++i) {
+			groupOf[i] = newIndex[groupOf[i]];
+		}
+		groupNum = members.length;
+	}
+
+	@Override
+	public int assign(int index, Point2D point) {
+		int base = index * groupNum;
+		int a = assigned[index];
+		if (a == -1) {  // first iteration, no bound yet
+			return assignFully(index, point);
+		}
+		// global filter
+		double u = upper[index] + drift[a];
+		double globalLower = Double.MAX_VALUE;
+		for (int g = 0; g < groupNum; ++g) {
+			lower[base + g] -= groupDrift[g];
+			globalLower = Math.min(globalLower, lower[base + g]);
+		}
+		if (u <= globalLower) {
+			upper[index] = u;
+			return a;
+		}
+		u = Math.sqrt(point.distanceTo(centroids[a]));
+		if (u <= globalLower) {
+			upper[index] = u;
+			return a;
+		}
+		// group filter
+		int best = a;
+		double bestDistance = u;
+		for (int g = 0; g < groupNum; ++g) {
+			if (lower[base + g] >= bestDistance) {
+				continue;
+			}
+			double first = Double.MAX_VALUE, second = Double.MAX_VALUE;
+			int firstIndex = -1;
+			for (int i: members[g]) {
+				double distance = (i == a) ? u : Math.sqrt(point.distanceTo(centroids[i]));
+				if (distance < first) {
+					second = first;
+					first = distance;
+					firstIndex = i;
+				} else if (distance < second) {
+					second = distance;
+				}
+			}
+			if (first < bestDistance) {
+				// the previous best becomes a lower bound of its own group
+				if (groupOf[best] != g) {
+					int bestGroup = base + groupOf[best];
+					lower[bestGroup] = Math.min(lower[bestGroup], bestDistance);
+				}
+				best = firstIndex;
+				bestDistance = first;
+				lower[base + g] = second;
+			} else {
+				lower[base + g] = (firstIndex == best) ? second : first;
+			}
+		}
+		assigned[index] = best;
+		upper[index] = bestDistance;
+		return best;
+	}
+
+	/**
+	 * compare the point with all centroids and initialize its bounds
+	 */
+	private int assignFully(int index, Point2D point) {
+		int base = index * groupNum;
+		double[] distances = new double[k];
+		double minDistance = Double.MAX_VALUE;
+		int best = 0;
+		for (int i = 0; i < k; ++i) {
+			distances[i] = Math.sqrt(point.distanceTo(centroids[i]));
+			if (distances[i] < minDistance) {
+				minDistance = distances[i];
+				best = i;
+			}
+		}
+		for (int g = 0; g < groupNum; ++g) {
+			lower[base + g] = Double.MAX_VALUE;
+		}
+		for (int i = 0; i < k; ++i) {
+			if (i != best) {
+				int g = base + groupOf[i];
+				lower[g] = Math.min(lower[g], distances[i]);
+			}
+		}
+		assigned[index] = best;
+		upper[index] = distances[best];
+		return best;
+	}
+}
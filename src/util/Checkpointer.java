@@ -0,0 +1,239 @@
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic checkpoints of a parallel K Means run, written in the background
+ * so that the iteration loop never waits for the disk.
+ *
+ * Files in the checkpoint directory:
+ * 		iter-N.model: centroids after iteration N, written by the master
+ * 		iter-N.rank-R.labels: labels of the records of rank R at iteration N (optional)
+ * A checkpoint is consistent once all of its files exist; files are renamed
+ * into place only when complete. A new checkpoint of a rank is only started once
+ * its previous one is written, and a rank only deletes its files of a checkpoint
+ * once a later checkpoint is complete, so the latest complete checkpoint is never
+ * deleted, whatever the ranks' writes still pending.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class Checkpointer {
+	private File dir;
+	// checkpoint every interval iterations
+	private int interval;
+	// label files of ranks 1 to slaveNum make a checkpoint complete, 0 for none
+	private int slaveNum;
+	private ExecutorService writer;
+	// write of the previous checkpoint of this rank
+	private Future<?> pending;
+
+	/**
+	 * @param slaveNum label files of ranks 1 to slaveNum are part of a checkpoint, 0 for none
+	 */
+	public Checkpointer(String dirName, int interval, int slaveNum) {
+		this.dir = new File(dirName);
+		this.interval = interval;
+		this.slaveNum = slaveNum;
+		dir.mkdirs();
+		this.writer = Executors.newSingleThreadExecutor();
+	}
+
+	/**
+	 * @return true if a checkpoint should be taken after the iteration
+	 */
+	public boolean isDue(int iter) {
+		return interval > 0 && iter % interval == 0;
+	}
+
+	/**
+	 * Write the centroids of the iteration in the background
+	 */
+	public void saveModel(final int iter, final KMeansModel model) {
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					model.write(modelFile(iter).getPath());
+					deleteBefore(findLatest(), 0);
+				} catch (IOException e) {
+					System.out.println("Fail to write checkpoint of iteration " + iter);
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Write the labels of the rank's records in the background
+	 * @param labels cluster index of each record, copied before returning
+	 */
+	public void saveLabels(final int iter, final int rank, int[] labels) {
+		final int[] copy = labels.clone();
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					writeLabels(labelFile(iter, rank), copy);
+					deleteBefore(findLatest(), rank);
+				} catch (IOException e) {
+					System.out.println("Fail to write checkpoint labels of iteration " + iter);
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	private void submit(Runnable task) {
+		waitPending();
+		pending = writer.submit(task);
+	}
+
+	private void waitPending() {
+		if (pending == null) {
+			return;
+		}
+		try {
+			pending.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			System.out.println("Fail to write checkpoint");
+			e.printStackTrace();
+		}
+		pending = null;
+	}
+
+	/**
+	 * Wait for the last checkpoint to be written
+	 */
+	public void close() {
+		waitPending();
+		writer.shutdown();
+		try {
+			writer.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return iteration of the latest consistent checkpoint, 0 if there is none
+	 */
+	public int findLatest() {
+		int latest = 0;
+		String[] names = dir.list();
+		if (names == null) {
+			return latest;
+		}
+		for (String name: names) {
+			if (!name.endsWith(".model")) {
+				continue;
+			}
+			int iter = getIteration(name);
+			if (iter <= latest) {
+				continue;
+			}
+			boolean complete = true;
+			for (int rank = 1; rank <= slaveNum && complete; ++rank) {
+				complete = labelFile(iter, rank).exists();
+			}
+			if (complete) {
+				latest = iter;
+			}
+		}
+		return latest;
+	}
+
+	/**
+	 * Delete the files of the rank, the model for the master, of the
+	 * checkpoints before iteration latest
+	 */
+	private void deleteBefore(int latest, int rank) {
+		String[] names = dir.list();
+		if (names == null) {
+			return;
+		}
+		String suffix = rank == 0 ? ".model" : ".rank-" + rank + ".labels";
+		for (String name: names) {
+			if (name.endsWith(suffix)) {
+				int iter = getIteration(name);
+				if (iter > 0 && iter < latest) {
+					new File(dir, name).delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return N of a file named iter-N.*, 0 for other files
+	 */
+	private static int getIteration(String name) {
+		if (!name.startsWith("iter-")) {
+			return 0;
+		}
+		int end = name.indexOf('.');
+		try {
+			return Integer.parseInt(name.substring(5, end < 0 ? name.length() : end));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	public KMeansModel loadModel(int iter) throws IOException {
+		return KMeansModel.read(modelFile(iter).getPath());
+	}
+
+	public int[] loadLabels(int iter, int rank) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(labelFile(iter, rank))));
+		try {
+			int[] labels = new int[in.readInt()];
+			for (int i = 0; i < labels.length; ++i) {
+				labels[i] = in.readInt();
+			}
+			return labels;
+		} finally {
+			in.close();
+		}
+	}
+
+	private File modelFile(int iter) {
+		return new File(dir, "iter-" + iter + ".model");
+	}
+
+	private File labelFile(int iter, int rank) {
+		return new File(dir, "iter-" + iter + ".rank-" + rank + ".labels");
+	}
+
+	private static void writeLabels(File file, int[] labels) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(labels.length);
+			for (int label: labels) {
+				out.writeInt(label);
+			}
+		} finally {
+			out.close();
+		}
+		if (!tmp.renameTo(file)) {
+			file.delete();
+			if (!tmp.renameTo(file)) {
+				throw new IOException("Fail to replace " + file);
+			}
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package util;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Read a file chunk by chunk on a background thread, one chunk ahead of the
+ * consumer (double buffering), so that I/O overlaps with computation.
+ * Subclasses only implement readChunk().
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public abstract class ChunkPrefetcher<T> {
+	// marks the end of the file in the queue
+	private static final Object END = new Object();
+
+	private BlockingQueue<Object> queue;
+	private Thread reader;
+	// failure of the background thread, rethrown by next()
+	private volatile Throwable error;
+	private boolean finished;
+
+	public ChunkPrefetcher() {
+		// one chunk waiting in the queue while the consumer works on another
+		this.queue = new ArrayBlockingQueue<Object>(1);
+	}
+
+	/**
+	 * start reading in the background, must be called once before next()
+	 */
+	public void start() {
+		reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					T chunk;
+					while ((chunk = readChunk()) != null) {
+						queue.put(chunk);
+					}
+				} catch (InterruptedException e) {
+					// consumer gave up, keep the flag so that END is not waited for either
+					Thread.currentThread().interrupt();
+				} catch (Throwable e) {
+					// e.g. a malformed line, the consumer must not wait forever for it
+					error = e;
+				} finally {
+					try {
+						closeFile();
+					} catch (Throwable e) {
+						if (error == null) {
+							error = e;
+						}
+					}
+					try {
+						queue.put(END);
+					} catch (InterruptedException e) {
+						// consumer gave up
+					}
+				}
+			}
+		}, "chunk-reader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * @return next chunk of the file, null at the end of the file
+	 * @throws IOException if the background thread failed to read the file,
+	 * runtime exceptions and errors of the background thread are rethrown as they are
+	 */
+	@SuppressWarnings("unchecked")
+	public T next() throws IOException {
+		if (finished) {
+			return null;
+		}
+		Object chunk;
+		try {
+			chunk = queue.take();
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while waiting for a chunk");
+		}
+		if (chunk == END) {
+			finished = true;
+			if (error instanceof IOException) {
+				throw (IOException) error;
+			} else if (error instanceof RuntimeException) {
+				throw (RuntimeException) error;
+			} else if (error instanceof Error) {
+				throw (Error) error;
+			}
+			return null;
+		}
+		return (T) chunk;
+	}
+
+	/**
+	 * stop the background thread before the end of the file
+	 */
+	public void cancel() {
+		finished = true;
+		reader.interrupt();
+	}
+
+	/**
+	 * Called on the background thread
+	 * @return next chunk, null at the end of the file
+	 */
+	protected abstract T readChunk() throws IOException;
+
+	/**
+	 * Called on the background thread once reading is done
+	 */
+	protected abstract void closeFile() throws IOException;
+}
@@ -0,0 +1,222 @@
+package util;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Quality of a clustering, measured where the records are: every rank adds its
+ * records, the sums are reduced, and the master computes
+ * 		SSE: sum of the errors of the records to their centroids
+ * 		Davies-Bouldin index: mean over the clusters of the largest
+ * 			(S_i + S_j) / d(c_i, c_j), S_i the mean distance of cluster i to its
+ * 			centroid c_i; lower is better
+ * 		sampled silhouette: mean over a sample of records, with its confidence
+ * 			interval, see Silhouette
+ * The error of a record is its square distance for points, the distance itself
+ * for DNA, as in the inertia of KMeansModel. A weighted point stands for weight
+ * records, e.g. after --dedup: it counts weight times in the sums, and the
+ * sample is drawn among the records, see sample().
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class ClusterEvaluation {
+	private int k;
+	private int sampleNum;
+	private Silhouette silhouette;
+	// distance and error of the records of each cluster to its centroid, weight of
+	// each cluster, then the cluster of each sample plus 1, set by its owner only
+	private double[] sums;
+	// cluster of the record being added
+	private int[] label = new int[1];
+
+	// results on the master
+	private double sse;
+	private double daviesBouldin;
+	private double meanSilhouette;
+	private double confidence;
+	private double level;
+
+	public ClusterEvaluation(int k, int sampleNum) {
+		this.k = k;
+		this.sampleNum = sampleNum;
+		this.silhouette = new Silhouette(sampleNum, new int[] {k});
+		this.sums = new double[3 * k + sampleNum];
+	}
+
+	/**
+	 * Draw records uniformly without replacement, a point standing for as many
+	 * records as its weight, so that the silhouette and its confidence interval
+	 * describe the records rather than the distinct points. A point of weight w
+	 * is w times as likely to be drawn as one of weight 1, and may be drawn for
+	 * several of its records.
+	 * @param weights weight of each point, at least 1
+	 * @param sampleNum number of records to draw, at most the total weight
+	 * @return index of the point of each record drawn
+	 */
+	public static int[] sample(int[] weights, int sampleNum, Random random) {
+		// ends[i]: number of records of the points up to i
+		long[] ends = new long[weights.length];
+		long total = 0;
+		for (int i = 0; i < weights.length; ++i) {
+			total += weights[i];
+			ends[i] = total;
+		}
+		Set<Long> records = new HashSet<Long>();
+		int[] indexes = new int[sampleNum];
+		for (int s = 0; s < sampleNum;) {
+			long record = (long) (random.nextDouble() * total);
+			if (!records.add(record)) {
+				continue;
+			}
+			// first point whose records end after this one
+			int index = Arrays.binarySearch(ends, record + 1);
+			indexes[s++] = index >= 0 ? index : -index - 1;
+		}
+		return indexes;
+	}
+
+	/**
+	 * @return number of records the points stand for
+	 */
+	public static long getRecordNum(int[] weights) {
+		long total = 0;
+		for (int weight: weights) {
+			total += weight;
+		}
+		return total;
+	}
+
+	/**
+	 * Called by the rank that has the sample record
+	 */
+	public void setSampleLabel(int sample, int label) {
+		sums[3 * k + sample] = label + 1;
+	}
+
+	/**
+	 * Add a record
+	 * @param sampleDistances distance of the record to each sample
+	 * @param distance distance of the record to its centroid
+	 * @param error error of the record, e.g. the square of distance
+	 */
+	public void add(double[] sampleDistances, int label, double distance, double error, int weight) {
+		this.label[0] = label;
+		silhouette.add(sampleDistances, this.label, weight);
+		sums[label] += weight * distance;
+		sums[k + label] += weight * error;
+		sums[2 * k + label] += weight;
+	}
+
+	/**
+	 * @return the sums of this rank in one array, to reduce with those of the others
+	 */
+	public double[] pack() {
+		double[] silhouetteSums = silhouette.getSums();
+		double[] packed = new double[silhouetteSums.length + sums.length];
+		System.arraycopy(silhouetteSums, 0, packed, 0, silhouetteSums.length);
+		System.arraycopy(sums, 0, packed, silhouetteSums.length, sums.length);
+		return packed;
+	}
+
+	/**
+	 * Called by the master with the sums of all ranks
+	 * @param centroidDistances distance between the centroids of each two clusters
+	 * @param level confidence level of the interval of the silhouette, e.g. 0.95
+	 */
+	public void evaluate(double[] total, double[][] centroidDistances, double level) {
+		int silhouetteLength = total.length - sums.length;
+		double[] silhouetteSums = new double[silhouetteLength];
+		System.arraycopy(total, 0, silhouetteSums, 0, silhouetteLength);
+		System.arraycopy(total, silhouetteLength, sums, 0, sums.length);
+		silhouette.setSums(silhouetteSums);
+		this.level = level;
+
+		sse = 0;
+		for (int i = 0; i < k; ++i) {
+			sse += sums[k + i];
+		}
+		double ratioSum = 0;
+		int clusterNum = 0;
+		for (int i = 0; i < k; ++i) {
+			if (sums[2 * k + i] == 0) {
+				continue;
+			}
+			double largest = 0;
+			for (int j = 0; j < k; ++j) {
+				if (j == i || sums[2 * k + j] == 0 || centroidDistances[i][j] == 0) {
+					continue;
+				}
+				double ratio = (sums[i] / sums[2 * k + i] + sums[j] / sums[2 * k + j]) / centroidDistances[i][j];
+				largest = Math.max(largest, ratio);
+			}
+			ratioSum += largest;
+			++clusterNum;
+		}
+		daviesBouldin = clusterNum == 0 ? 0 : ratioSum / clusterNum;
+
+		int[] labels = new int[sampleNum];
+		for (int sample = 0; sample < sampleNum; ++sample) {
+			labels[sample] = (int) sums[3 * k + sample] - 1;
+		}
+		double[] values = silhouette.getValues(0, labels);
+		meanSilhouette = Silhouette.mean(values);
+		confidence = Silhouette.getConfidence(values, level);
+	}
+
+	public double getSSE() {
+		return sse;
+	}
+
+	public double getDaviesBouldin() {
+		return daviesBouldin;
+	}
+
+	public double getSilhouette() {
+		return meanSilhouette;
+	}
+
+	/**
+	 * @return half width of the confidence interval of the silhouette
+	 */
+	public double getConfidence() {
+		return confidence;
+	}
+
+	public void print() {
+		System.out.println("SSE: " + sse);
+		System.out.println("Davies-Bouldin index: " + daviesBouldin);
+		System.out.println(String.format("Silhouette of %d samples: %.4f +/- %.4f (%.0f%% confidence)",
+				sampleNum, meanSilhouette, confidence, level * 100));
+	}
+
+	/**
+	 * Write the results as a CSV line with a header
+	 */
+	public void write(String fileName) {
+		BufferedWriter bw = null;
+		try {
+			bw = new BufferedWriter(new FileWriter(fileName));
+			bw.write("k,sse,davies_bouldin,silhouette,silhouette_ci,confidence,samples\n");
+			bw.write(k + "," + sse + "," + daviesBouldin + "," + meanSilhouette + "," + confidence + ","
+					+ level + "," + sampleNum + "\n");
+		} catch (IOException e) {
+			System.out.println("Fail to write evaluation file");
+			e.printStackTrace();
+		} finally {
+			try {
+				if (bw != null) {
+					bw.close();
+				}
+			} catch (IOException e) {
+				System.out.println("Fail to close evaluation file");
+				e.printStackTrace();
+			}
+		}
+	}
+}
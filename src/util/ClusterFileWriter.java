@@ -0,0 +1,70 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Write the "Cluster i:" listing of the drivers without holding the records
+ * in memory. Records are spooled into one temporary file per cluster, 
+ * which are concatenated into the output file on close.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class ClusterFileWriter {
+	private String outputFileName;
+	private File[] spoolFiles;
+	private BufferedWriter[] spoolWriters;
+
+	public ClusterFileWriter(String outputFileName, int k) throws IOException {
+		this.outputFileName = outputFileName;
+		this.spoolFiles = new File[k];
+		this.spoolWriters = new BufferedWriter[k];
+		File dir = new File(outputFileName).getAbsoluteFile().getParentFile();
+		for (int i = 0; i < k; ++i) {
+			spoolFiles[i] = File.createTempFile("cluster" + i + "-", ".tmp", dir);
+			spoolWriters[i] = new BufferedWriter(new FileWriter(spoolFiles[i]));
+		}
+	}
+
+	/**
+	 * @param cluster index of the cluster the record belongs to
+	 * @param record text of the record
+	 */
+	public void write(int cluster, String record) throws IOException {
+		BufferedWriter bw = spoolWriters[cluster];
+		bw.write('\t');
+		bw.write(record);
+		bw.write('\n');
+	}
+
+	/**
+	 * concatenate all clusters into the output file and delete the temporary files
+	 */
+	public void close() throws IOException {
+		BufferedWriter bw = new BufferedWriter(new FileWriter(outputFileName));
+		try {
+			char[] buffer = new char[1 << 16];
+			for (int i = 0; i < spoolFiles.length; ++i) {
+				spoolWriters[i].close();
+				bw.write("Cluster " + i + ":\n");
+				BufferedReader br = new BufferedReader(new FileReader(spoolFiles[i]));
+				try {
+					int n;
+					while ((n = br.read(buffer)) != -1) {
+						bw.write(buffer, 0, n);
+					}
+				} finally {
+					br.close();
+				}
+				spoolFiles[i].delete();
+			}
+		} finally {
+			bw.close();
+		}
+	}
+}
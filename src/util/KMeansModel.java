@@ -0,0 +1,157 @@
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Result of a K Means run in a compact binary file, used to warm-start later runs.
+ *
+ * Format (big endian):
+ * 		int magic, int type (POINT or DNA), int k, int dimension (2 or DNA length)
+ * 		centroids: k * dimension doubles for points, k * dimension bytes for DNA
+ * 		long count of each cluster
+ * 		double inertia (sum of distances to the centroids, square ones for points)
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class KMeansModel {
+	public static final int POINT = 0;
+	public static final int DNA = 1;
+	private static final int MAGIC = 0x4b4d444c;
+	// stands for the missing centroid of an empty DNA cluster
+	private static final char NO_BASE = 'N';
+
+	private int type;
+	private int k;
+	private int dimension;
+	private double[][] pointCentroids;
+	private String[] dnaCentroids;
+	private long[] counts;
+	private double inertia;
+
+	public KMeansModel(double[][] centroids, long[] counts, double inertia) {
+		this.type = POINT;
+		this.k = centroids.length;
+		this.dimension = k == 0 ? 0 : centroids[0].length;
+		this.pointCentroids = centroids;
+		this.counts = counts;
+		this.inertia = inertia;
+	}
+
+	public KMeansModel(String[] centroids, long[] counts, double inertia) {
+		this.type = DNA;
+		this.k = centroids.length;
+		for (String centroid: centroids) {
+			dimension = Math.max(dimension, centroid.length());
+		}
+		this.dnaCentroids = centroids;
+		this.counts = counts;
+		this.inertia = inertia;
+	}
+
+	public void write(String fileName) throws IOException {
+		File file = new File(fileName);
+		File tmp = new File(fileName + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(type);
+			out.writeInt(k);
+			out.writeInt(dimension);
+			for (int i = 0; i < k; ++i) {
+				for (int d = 0; d < dimension; ++d) {
+					if (type == POINT) {
+						out.writeDouble(pointCentroids[i][d]);
+					} else {
+						String centroid = dnaCentroids[i];
+						out.writeByte(d < centroid.length() ? centroid.charAt(d) : NO_BASE);
+					}
+				}
+			}
+			for (int i = 0; i < k; ++i) {
+				out.writeLong(counts[i]);
+			}
+			out.writeDouble(inertia);
+		} finally {
+			out.close();
+		}
+		// replace atomically so that a reader never sees a partial model
+		if (!tmp.renameTo(file)) {
+			file.delete();
+			if (!tmp.renameTo(file)) {
+				throw new IOException("Fail to replace " + fileName);
+			}
+		}
+	}
+
+	public static KMeansModel read(String fileName) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(fileName + " is not a model file");
+			}
+			int type = in.readInt();
+			int k = in.readInt();
+			int dimension = in.readInt();
+			double[][] pointCentroids = new double[k][dimension];
+			String[] dnaCentroids = new String[k];
+			byte[] bases = new byte[dimension];
+			for (int i = 0; i < k; ++i) {
+				if (type == POINT) {
+					for (int d = 0; d < dimension; ++d) {
+						pointCentroids[i][d] = in.readDouble();
+					}
+				} else {
+					in.readFully(bases);
+					dnaCentroids[i] = new String(bases, "US-ASCII");
+				}
+			}
+			long[] counts = new long[k];
+			for (int i = 0; i < k; ++i) {
+				counts[i] = in.readLong();
+			}
+			double inertia = in.readDouble();
+			KMeansModel model = type == POINT ? new KMeansModel(pointCentroids, counts, inertia)
+					: new KMeansModel(dnaCentroids, counts, inertia);
+			model.dimension = dimension;
+			return model;
+		} finally {
+			in.close();
+		}
+	}
+
+	public int getType() {
+		return type;
+	}
+
+	public int getK() {
+		return k;
+	}
+
+	public int getDimension() {
+		return dimension;
+	}
+
+	public double[][] getPointCentroids() {
+		return pointCentroids;
+	}
+
+	public String[] getDNACentroids() {
+		return dnaCentroids;
+	}
+
+	public long[] getCounts() {
+		return counts;
+	}
+
+	public double getInertia() {
+		return inertia;
+	}
+}
@@ -0,0 +1,71 @@
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * On-disk label of each record, one int per record, so that streaming
+ * iterations can tell how many records changed cluster without keeping
+ * the labels in memory. Each iteration reads the labels of the previous
+ * iteration while writing the new ones to a temporary file.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class LabelFile {
+	private File previous;
+	private File current;
+	private DataInputStream in;
+	private DataOutputStream out;
+
+	public LabelFile(String fileName) {
+		this.previous = new File(fileName);
+		this.current = new File(fileName + ".tmp");
+		// labels of an earlier run are not related to this one
+		previous.delete();
+	}
+
+	public void startIteration() throws IOException {
+		in = previous.exists() ? new DataInputStream(new BufferedInputStream(
+				new FileInputStream(previous), 1 << 16)) : null;
+		out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(current), 1 << 16));
+	}
+
+	/**
+	 * write the label of the next record
+	 * @param label cluster of the record in this iteration
+	 * @return cluster of the record in the previous iteration, -1 if unknown
+	 */
+	public int update(int label) throws IOException {
+		out.writeInt(label);
+		if (in == null) {
+			return -1;
+		}
+		try {
+			return in.readInt();
+		} catch (EOFException e) {
+			in.close();
+			in = null;
+			return -1;
+		}
+	}
+
+	public void finishIteration() throws IOException {
+		if (in != null) {
+			in.close();
+		}
+		out.close();
+		previous.delete();
+		if (!current.renameTo(previous)) {
+			throw new IOException("Fail to rename " + current + " to " + previous);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package util;
+
+/**
+ * Histogram of latencies in nanoseconds with bounded relative error.
+ * Each power of two is split into SUB_BUCKETS buckets, so a percentile is
+ * reported within about 1 / SUB_BUCKETS of its real value, and recording
+ * is a few integer operations with no allocation.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class LatencyHistogram {
+	private static final int SUB_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	private long[] counts;
+	private long total;
+
+	public LatencyHistogram() {
+		counts = new long[(64 - SUB_BITS + 1) * SUB_BUCKETS];
+	}
+
+	public void record(long nanos) {
+		++counts[bucketOf(Math.max(0, nanos))];
+		++total;
+	}
+
+	private static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		// keep the SUB_BITS bits after the highest one
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	/**
+	 * @return upper bound of the values in the bucket
+	 */
+	private static long upperBoundOf(int bucket) {
+		if (bucket < 2 * SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long top = bucket % SUB_BUCKETS + SUB_BUCKETS;
+		return ((top + 1) << shift) - 1;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return latency in nanoseconds under which the given percentage of records fall
+	 */
+	public long getPercentile(double percentile) {
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(percentile / 100 * total);
+		long seen = 0;
+		for (int i = 0; i < counts.length; ++i) {
+			seen += counts[i];
+			if (seen >= rank && counts[i] != 0) {
+				return upperBoundOf(i);
+			}
+		}
+		return upperBoundOf(counts.length - 1);
+	}
+
+	public long getCount() {
+		return total;
+	}
+
+	public void reset() {
+		for (int i = 0; i < counts.length; ++i) {
+			counts[i] = 0;
+		}
+		total = 0;
+	}
+}
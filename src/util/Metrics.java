@@ -0,0 +1,203 @@
+package util;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import comm.Communicator;
+
+/**
+ * Per-iteration metrics of a rank: time spent in each span, bytes sent, points
+ * moved and inertia. A rank adds to the current iteration and closes it with
+ * finishIteration(); at the end rank 0 collects the iterations of all ranks.
+ *
+ * A disabled instance records nothing, begin() does not even read the clock,
+ * so the drivers call it unconditionally.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class Metrics {
+	// spans
+	public static final int ASSIGN = 0;
+	public static final int ACCUMULATE = 1;
+	public static final int SEND = 2;
+	public static final int RECV = 3;
+	// blocked until a message arrives
+	public static final int WAIT = 4;
+	private static final String[] SPAN_NAMES = {"assign", "accumulate", "send", "recv", "wait"};
+	// columns of a row: rank, iteration, spans in ms, bytes sent, moved, inertia
+	private static final int COLUMNS = SPAN_NAMES.length + 5;
+
+	private boolean enabled;
+	private int rank;
+	private long[] nanos;
+	private long bytes;
+	private long moved;
+	private double inertia;
+	// finished iterations of this rank, or of all ranks on rank 0 after collect()
+	private List<double[]> rows;
+
+	public Metrics(boolean enabled, int rank) {
+		this.enabled = enabled;
+		this.rank = rank;
+		this.nanos = new long[SPAN_NAMES.length];
+		this.rows = new ArrayList<double[]>();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return start of a span, to pass to end()
+	 */
+	public long begin() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	public void end(int span, long begin) {
+		if (enabled) {
+			nanos[span] += System.nanoTime() - begin;
+		}
+	}
+
+	public void addBytes(long sent) {
+		bytes += sent;
+	}
+
+	public void addMoved(long pointNum) {
+		moved += pointNum;
+	}
+
+	public void addInertia(double distance) {
+		inertia += distance;
+	}
+
+	/**
+	 * Close the current iteration and start the next one
+	 */
+	public void finishIteration(int iteration) {
+		if (!enabled) {
+			return;
+		}
+		double[] row = new double[COLUMNS];
+		row[0] = rank;
+		row[1] = iteration;
+		for (int span = 0; span < SPAN_NAMES.length; ++span) {
+			row[2 + span] = nanos[span] / 1e6;
+			nanos[span] = 0;
+		}
+		row[COLUMNS - 3] = bytes;
+		row[COLUMNS - 2] = moved;
+		row[COLUMNS - 1] = inertia;
+		rows.add(row);
+		bytes = moved = 0;
+		inertia = 0;
+	}
+
+	/**
+	 * Called by every rank to gather the iterations of all ranks on rank 0.
+	 * On a metered communicator this counts in an iteration that is never finished.
+	 */
+	public void collect(Communicator comm, int tag) {
+		if (!enabled) {
+			return;
+		}
+		if (comm.rank() != 0) {
+			double[] message = new double[rows.size() * COLUMNS];
+			for (int i = 0; i < rows.size(); ++i) {
+				System.arraycopy(rows.get(i), 0, message, i * COLUMNS, COLUMNS);
+			}
+			comm.send(new int[] {rows.size()}, 0, 1, 0, tag);
+			comm.send(message, 0, message.length, 0, tag);
+			return;
+		}
+		for (int source = 1; source < comm.size(); ++source) {
+			int[] rowNum = new int[1];
+			comm.recv(rowNum, 0, 1, source, tag);
+			double[] message = new double[rowNum[0] * COLUMNS];
+			comm.recv(message, 0, message.length, source, tag);
+			for (int i = 0; i < rowNum[0]; ++i) {
+				double[] row = new double[COLUMNS];
+				System.arraycopy(message, i * COLUMNS, row, 0, COLUMNS);
+				rows.add(row);
+			}
+		}
+	}
+
+	/**
+	 * Called by rank 0 after collect(): print the total of each span per rank
+	 */
+	public void printSummary() {
+		if (!enabled) {
+			return;
+		}
+		StringBuilder header = new StringBuilder("rank");
+		for (String name: SPAN_NAMES) {
+			header.append(String.format("%14s", name + "_ms"));
+		}
+		System.out.println(header.append(String.format("%14s", "bytes_sent")));
+		int rankNum = 0;
+		for (double[] row: rows) {
+			rankNum = Math.max(rankNum, (int) row[0] + 1);
+		}
+		for (int r = 0; r < rankNum; ++r) {
+			double[] total = new double[COLUMNS];
+			for (double[] row: rows) {
+				if ((int) row[0] == r) {
+					for (int c = 2; c < COLUMNS; ++c) {
+						total[c] += row[c];
+					}
+				}
+			}
+			StringBuilder line = new StringBuilder(String.format("%4d", r));
+			for (int span = 0; span < SPAN_NAMES.length; ++span) {
+				line.append(String.format("%14.1f", total[2 + span]));
+			}
+			System.out.println(line.append(String.format("%14.0f", total[COLUMNS - 3])));
+		}
+	}
+
+	/**
+	 * Called by rank 0 after collect(): write a CSV line per rank and iteration
+	 */
+	public void writeCsv(String fileName) {
+		if (!enabled) {
+			return;
+		}
+		BufferedWriter bw = null;
+		try {
+			bw = new BufferedWriter(new FileWriter(fileName));
+			StringBuilder header = new StringBuilder("rank,iteration");
+			for (String name: SPAN_NAMES) {
+				header.append(',').append(name).append("_ms");
+			}
+			bw.write(header.append(",bytes_sent,moved,inertia\n").toString());
+			for (double[] row: rows) {
+				StringBuilder line = new StringBuilder();
+				line.append((int) row[0]).append(',').append((int) row[1]);
+				for (int span = 0; span < SPAN_NAMES.length; ++span) {
+					line.append(String.format(",%.3f", row[2 + span]));
+				}
+				line.append(',').append((long) row[COLUMNS - 3]).append(',').append((long) row[COLUMNS - 2])
+						.append(',').append(row[COLUMNS - 1]).append('\n');
+				bw.write(line.toString());
+			}
+		} catch (IOException e) {
+			System.out.println("Fail to write metrics file");
+			e.printStackTrace();
+		} finally {
+			try {
+				if (bw != null) {
+					bw.close();
+				}
+			} catch (IOException e) {
+				System.out.println("Fail to close metrics file");
+				e.printStackTrace();
+			}
+		}
+	}
+}
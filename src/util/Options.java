@@ -0,0 +1,61 @@
+package util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Optional command line arguments of the drivers. They follow the
+ * positional arguments, either as "--name value" pairs or as a bare "--flag".
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class Options {
+	private Map<String, String> values;
+
+	public Options() {
+		values = new HashMap<String, String>();
+	}
+
+	/**
+	 * @param args command line arguments
+	 * @param start index of the first optional argument
+	 */
+	public Options(String[] args, int start) {
+		this();
+		for (int i = start; i < args.length; ++i) {
+			if (!args[i].startsWith("--")) {
+				throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+			}
+			String name = args[i].substring(2);
+			if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+				values.put(name, args[++i]);
+			} else {  // bare flag
+				values.put(name, "true");
+			}
+		}
+	}
+
+	public boolean has(String name) {
+		return values.containsKey(name);
+	}
+
+	public void set(String name, String value) {
+		values.put(name, value);
+	}
+
+	public String get(String name, String defaultValue) {
+		String value = values.get(name);
+		return value == null ? defaultValue : value;
+	}
+
+	public int getInt(String name, int defaultValue) {
+		String value = values.get(name);
+		return value == null ? defaultValue : Integer.parseInt(value);
+	}
+
+	public double getDouble(String name, double defaultValue) {
+		String value = values.get(name);
+		return value == null ? defaultValue : Double.parseDouble(value);
+	}
+}
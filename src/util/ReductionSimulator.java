@@ -0,0 +1,157 @@
+package util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import comm.TreeReducer;
+
+/**
+ * Simulate the reduction of the per-iteration partials at rank counts that do
+ * not fit on one machine. Each slave finishes its computing after a random time
+ * (rank 1 may be a straggler), a message costs latency + bytes / bandwidth and
+ * merging a partial costs bytes / merge rate. The schedules are those of
+ * TreeReducer; the linear ones are the master receiving from every slave,
+ * in rank order as ParallelKMeansOnPoint does or in arrival order.
+ *
+ * Prints for each rank number the mean time from the last slave finishing its
+ * computing to the total being available (on rank 0, or on every rank for
+ * recursive doubling), in microseconds.
+ *
+ * Usage: ReductionSimulator [--ranks 16,256,4096,65536] [--k 100] [--trials 20]
+ * 		[--latency-us 2] [--bandwidth-gbs 10] [--merge-gbs 5]
+ * 		[--compute-ms 10] [--jitter 0.1] [--straggler 0.5]
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class ReductionSimulator {
+	private static final String[] SCHEDULES = {
+		"linear-ordered", "linear-any", "binomial-ordered", "binomial-any", "doubling"
+	};
+
+	private double messageTime;
+	private double mergeTime;
+	private double computeTime;
+	private double jitter;
+	// extra computing time of rank 1, as a fraction of the computing time
+	private double straggler;
+	private Random random;
+
+	public ReductionSimulator(int k, Options options) {
+		int bytes = (3 * k + 1) * 8;
+		this.messageTime = options.getDouble("latency-us", 2) * 1e-6
+				+ bytes / (options.getDouble("bandwidth-gbs", 10) * 1e9);
+		this.mergeTime = bytes / (options.getDouble("merge-gbs", 5) * 1e9);
+		this.computeTime = options.getDouble("compute-ms", 10) * 1e-3;
+		this.jitter = options.getDouble("jitter", 0.1);
+		this.straggler = options.getDouble("straggler", 0.5);
+		this.random = new Random(options.getInt("seed", 1));
+	}
+
+	/**
+	 * @return time each rank finishes computing, 0 for the master
+	 */
+	private double[] finishTimes(int size) {
+		double[] ready = new double[size];
+		for (int rank = 1; rank < size; ++rank) {
+			ready[rank] = computeTime * (1 + jitter * random.nextDouble());
+		}
+		if (size > 1) {
+			ready[1] += computeTime * straggler;
+		}
+		return ready;
+	}
+
+	/**
+	 * @return time the total is available
+	 */
+	private double simulate(String schedule, double[] ready) {
+		int size = ready.length;
+		if (schedule.startsWith("linear")) {
+			double[] arrivals = new double[size - 1];
+			for (int rank = 1; rank < size; ++rank) {
+				arrivals[rank - 1] = ready[rank] + messageTime;
+			}
+			return merge(0, arrivals, schedule.endsWith("any"));
+		}
+		if (schedule.startsWith("binomial")) {
+			// children have higher ranks, so they are done first
+			double[] done = new double[size];
+			for (int rank = size - 1; rank >= 0; --rank) {
+				int[] children = TreeReducer.getChildren(rank, size);
+				double[] arrivals = new double[children.length];
+				for (int i = 0; i < children.length; ++i) {
+					arrivals[i] = done[children[i]] + messageTime;
+				}
+				done[rank] = merge(ready[rank], arrivals, schedule.endsWith("any"));
+			}
+			return done[0];
+		}
+		// recursive doubling
+		int power = TreeReducer.highestPowerOfTwo(size);
+		double[] done = ready.clone();
+		for (int rank = power; rank < size; ++rank) {
+			done[rank - power] = Math.max(done[rank - power], done[rank] + messageTime) + mergeTime;
+		}
+		for (int mask = 1; mask < power; mask <<= 1) {
+			double[] next = new double[power];
+			for (int rank = 0; rank < power; ++rank) {
+				next[rank] = Math.max(done[rank], done[rank ^ mask]) + messageTime + mergeTime;
+			}
+			System.arraycopy(next, 0, done, 0, power);
+		}
+		double end = 0;
+		for (int rank = 0; rank < size; ++rank) {
+			double rankDone = rank < power ? done[rank] : done[rank - power] + messageTime;
+			end = Math.max(end, rankDone);
+		}
+		return end;
+	}
+
+	/**
+	 * A rank merges its partials one at a time, either in the given order or as they arrive
+	 * @return time the rank has merged all the partials
+	 */
+	private double merge(double start, double[] arrivals, boolean anyOrder) {
+		if (anyOrder) {
+			arrivals = arrivals.clone();
+			Arrays.sort(arrivals);
+		}
+		double time = start;
+		for (double arrival: arrivals) {
+			time = Math.max(time, arrival) + mergeTime;
+		}
+		return time;
+	}
+
+	public static void main(String[] args) {
+		Options options = new Options(args, 0);
+		int k = options.getInt("k", 100);
+		int trials = options.getInt("trials", 20);
+		ReductionSimulator simulator = new ReductionSimulator(k, options);
+		StringBuilder header = new StringBuilder("ranks");
+		for (String schedule: SCHEDULES) {
+			header.append(',').append(schedule);
+		}
+		System.out.println(header);
+		for (String ranks: options.get("ranks", "16,64,256,1024,4096,16384,65536").split(",")) {
+			int size = Integer.parseInt(ranks.trim());
+			double[] overhead = new double[SCHEDULES.length];
+			for (int trial = 0; trial < trials; ++trial) {
+				double[] ready = simulator.finishTimes(size);
+				double lastReady = 0;
+				for (double time: ready) {
+					lastReady = Math.max(lastReady, time);
+				}
+				for (int s = 0; s < SCHEDULES.length; ++s) {
+					overhead[s] += simulator.simulate(SCHEDULES[s], ready) - lastReady;
+				}
+			}
+			StringBuilder line = new StringBuilder(Integer.toString(size));
+			for (int s = 0; s < SCHEDULES.length; ++s) {
+				line.append(String.format(",%.1f", overhead[s] / trials * 1e6));
+			}
+			System.out.println(line);
+		}
+	}
+}
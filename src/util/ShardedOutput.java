@@ -0,0 +1,109 @@
+package util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Result of a run as label shards: each slave writes the labels of its range of
+ * records to outputFile.rank-R, in parallel, and the master writes the centroids
+ * to outputFile.centroids, one per line in the input format, and a manifest to
+ * outputFile:
+ * 		format binary|text
+ * 		records n
+ * 		k k
+ * 		centroids outputFile.centroids
+ * 		shard outputFile.rank-R first count    (one line per slave, in record order)
+ * File names in the manifest are relative to its directory.
+ *
+ * A binary shard has one int per record, as in LabelFile, so the shards put
+ * together in order are the label file of the whole input; a text shard has one
+ * label per line.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class ShardedOutput {
+	public static final String BINARY = "binary";
+	public static final String TEXT = "text";
+
+	/**
+	 * @param value value of the --shards option, binary if it is a bare flag
+	 */
+	public static String getFormat(String value) {
+		if (value.equals("true") || value.equals(BINARY)) {
+			return BINARY;
+		} else if (value.equals(TEXT)) {
+			return TEXT;
+		}
+		throw new IllegalArgumentException("Unknown shard format: " + value);
+	}
+
+	public static String getShardFileName(String outputFileName, int rank) {
+		return outputFileName + ".rank-" + rank;
+	}
+
+	/**
+	 * Called by a slave to write the labels of records from (inclusive) to to (exclusive)
+	 */
+	public static void writeShard(String fileName, String format, int[] labels, int from, int to)
+			throws IOException {
+		if (format.equals(BINARY)) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(fileName), 1 << 16));
+			try {
+				for (int index = from; index < to; ++index) {
+					out.writeInt(labels[index]);
+				}
+			} finally {
+				out.close();
+			}
+			return;
+		}
+		BufferedWriter bw = new BufferedWriter(new FileWriter(fileName), 1 << 16);
+		try {
+			for (int index = from; index < to; ++index) {
+				bw.write(Integer.toString(labels[index]));
+				bw.write('\n');
+			}
+		} finally {
+			bw.close();
+		}
+	}
+
+	/**
+	 * Called by the master to write the centroids and the manifest
+	 * @param ranges first and end record of each slave, in rank order
+	 * @param centroids each centroid in the input format
+	 */
+	public static void writeManifest(String outputFileName, String format, int[] ranges,
+			String[] centroids) throws IOException {
+		String centroidFileName = outputFileName + ".centroids";
+		BufferedWriter bw = new BufferedWriter(new FileWriter(centroidFileName));
+		try {
+			for (String centroid: centroids) {
+				bw.write(centroid + "\n");
+			}
+		} finally {
+			bw.close();
+		}
+		bw = new BufferedWriter(new FileWriter(outputFileName));
+		try {
+			bw.write("format " + format + "\n");
+			bw.write("records " + (ranges.length == 0 ? 0 : ranges[ranges.length - 1]) + "\n");
+			bw.write("k " + centroids.length + "\n");
+			bw.write("centroids " + new File(centroidFileName).getName() + "\n");
+			for (int slave = 0; slave < ranges.length / 2; ++slave) {
+				String shard = getShardFileName(outputFileName, slave + 1);
+				bw.write("shard " + new File(shard).getName() + " " + ranges[2 * slave] + " "
+						+ (ranges[2 * slave + 1] - ranges[2 * slave]) + "\n");
+			}
+		} finally {
+			bw.close();
+		}
+	}
+}
@@ -0,0 +1,267 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+/**
+ * Parsed dataset in a memory-mapped file of a node-local tmpfs (/dev/shm), so
+ * the ranks of a node share one copy of it instead of each loading its own.
+ *
+ * The first rank to take the file lock parses the input and writes the file,
+ * the others wait for the lock and then map the complete file read-only.
+ * The file is named after a SHA-256 digest of the input's path, and its header
+ * holds the input's path, size and modification time in full. A later run on
+ * the same input maps it right away; a changed input, or another input of the
+ * same digest prefix, does not match the header and the file is written again
+ * in place, so there is one file per input and kind. Files are left in the
+ * directory for later runs unless remove() is called, e.g. by the drivers'
+ * --shared-dataset-cleanup once every rank has mapped the file; the memory of a
+ * removed file is freed when the last rank unmaps it.
+ *
+ * Format: int magic, int record number, int record size, int key length, the
+ * key in UTF-8, then the fixed-size records.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class SharedDataset {
+	private static final int MAGIC = 0x4b4d5348;
+	private static final int HEADER_SIZE = 16;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	public static final String DEFAULT_DIR = "/dev/shm";
+
+	/**
+	 * Records to write, from the input parsed by the writing rank
+	 */
+	public interface Records {
+		int getRecordNum();
+
+		int getRecordSize();
+
+		/**
+		 * put the getRecordSize() bytes of the record at the buffer's position
+		 */
+		void put(int index, ByteBuffer buffer);
+	}
+
+	private File file;
+	private int recordNum;
+	private int recordSize;
+	// records of each mapping, a mapping is at most 2GB
+	private int segmentRecords;
+	private MappedByteBuffer[] segments;
+
+	private SharedDataset(File file, byte[] key) throws IOException {
+		this.file = file;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(channel, header, 0);
+			if (header.getInt() != MAGIC) {
+				throw new IOException(file + " is not a shared dataset");
+			}
+			recordNum = header.getInt();
+			recordSize = header.getInt();
+			int keyLength = header.getInt();
+			if (keyLength != key.length || !Arrays.equals(readKey(channel, keyLength), key)) {
+				throw new IOException(file + " is the shared dataset of another input");
+			}
+			long dataStart = HEADER_SIZE + keyLength;
+			segmentRecords = Integer.MAX_VALUE / recordSize;
+			int segmentNum = recordNum == 0 ? 0 : (recordNum - 1) / segmentRecords + 1;
+			segments = new MappedByteBuffer[segmentNum];
+			for (int s = 0; s < segmentNum; ++s) {
+				long start = dataStart + (long) s * segmentRecords * recordSize;
+				long records = Math.min(segmentRecords, recordNum - (long) s * segmentRecords);
+				segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, records * recordSize);
+			}
+		} finally {
+			// the mappings stay valid after the file is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Map the shared dataset of the input file, creating it if no rank did yet
+	 * @param inputFileName input file the dataset is parsed from
+	 * @param dirName directory of the shared file, e.g. /dev/shm
+	 * @param kind record format and loading options, part of the file name
+	 * @param parser parses the input, only called on the rank that writes the file
+	 */
+	public static SharedDataset open(String inputFileName, String dirName, String kind,
+			Callable<Records> parser) throws IOException {
+		File input = new File(inputFileName).getCanonicalFile();
+		byte[] key = (kind + ":" + input.getPath() + ":" + input.length() + ":"
+				+ input.lastModified()).getBytes(UTF8);
+		File file = new File(dirName, "kmeans-" + kind + "-" + digest(input.getPath()) + ".dat");
+		// a JVM may hold a file lock only once, so ranks that are threads take turns here
+		synchronized (SharedDataset.class) {
+			if (!matches(file, key)) {
+				RandomAccessFile lockFile = new RandomAccessFile(getLockFile(file), "rw");
+				FileLock lock = lockFile.getChannel().lock();
+				try {
+					if (!matches(file, key)) {  // no other rank wrote it while we waited
+						write(file, key, parser);
+					}
+				} finally {
+					lock.release();
+					lockFile.close();
+				}
+			}
+		}
+		return new SharedDataset(file, key);
+	}
+
+	/**
+	 * Remove the file and its lock file, the mappings stay valid. Called once
+	 * every rank of the node has mapped the file, by any number of them.
+	 */
+	public void remove() {
+		file.delete();
+		getLockFile(file).delete();
+	}
+
+	private static File getLockFile(File file) {
+		return new File(file.getPath() + ".lock");
+	}
+
+	/**
+	 * @return first 16 hex digits of the SHA-256 digest of the text
+	 */
+	private static String digest(String text) throws IOException {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(UTF8));
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 8; ++i) {
+				sb.append(String.format("%02x", hash[i]));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("No SHA-256 digest", e);
+		}
+	}
+
+	/**
+	 * @return true if the file is a complete shared dataset of the key
+	 */
+	private static boolean matches(File file, byte[] key) throws IOException {
+		if (!file.exists()) {
+			return false;
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() < HEADER_SIZE + key.length) {
+				return false;
+			}
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(channel, header, 0);
+			if (header.getInt() != MAGIC) {
+				return false;
+			}
+			long recordNum = header.getInt();
+			long recordSize = header.getInt();
+			int keyLength = header.getInt();
+			return keyLength == key.length && Arrays.equals(readKey(channel, keyLength), key)
+					&& channel.size() == HEADER_SIZE + keyLength + recordNum * recordSize;
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static byte[] readKey(FileChannel channel, int keyLength) throws IOException {
+		ByteBuffer key = ByteBuffer.allocate(keyLength);
+		readFully(channel, key, HEADER_SIZE);
+		return key.array();
+	}
+
+	/**
+	 * Fill the buffer from the position of the channel, and flip it
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of shared dataset");
+			}
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Parse the input and write the file, renamed into place once complete, over
+	 * the file of an older revision of the input if there is one
+	 */
+	private static void write(File file, byte[] key, Callable<Records> parser) throws IOException {
+		Records records;
+		try {
+			records = parser.call();
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Fail to parse input", e);
+		}
+		File tmp = new File(file.getPath() + ".tmp");
+		RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(Math.max(HEADER_SIZE + key.length,
+					records.getRecordSize() * 4096));
+			buffer.putInt(MAGIC).putInt(records.getRecordNum()).putInt(records.getRecordSize()).putInt(key.length);
+			buffer.put(key);
+			for (int i = 0; i < records.getRecordNum(); ++i) {
+				if (buffer.remaining() < records.getRecordSize()) {
+					buffer.flip();
+					while (buffer.hasRemaining()) {
+						channel.write(buffer);
+					}
+					buffer.clear();
+				}
+				int start = buffer.position();
+				records.put(i, buffer);
+				buffer.position(start + records.getRecordSize());
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} finally {
+			raf.close();
+		}
+		if (!tmp.renameTo(file)) {
+			throw new IOException("Fail to rename " + tmp);
+		}
+	}
+
+	public int getRecordNum() {
+		return recordNum;
+	}
+
+	public int getRecordSize() {
+		return recordSize;
+	}
+
+	/**
+	 * @return the mapping holding the record, read with absolute gets
+	 */
+	public ByteBuffer getSegment(int index) {
+		return segments[index / segmentRecords];
+	}
+
+	/**
+	 * @return position of the record in its mapping
+	 */
+	public int getPosition(int index) {
+		return (index % segmentRecords) * recordSize;
+	}
+}
@@ -0,0 +1,140 @@
+package util;
+
+/**
+ * Sampled silhouette of one or more clusterings of the same records. Each rank
+ * adds its records with their distance to every sample record and their cluster
+ * in every clustering, the sums are reduced, and the silhouette of each sample
+ * follows from its mean distance to each cluster:
+ * 		a = mean distance to the other records of its cluster
+ * 		b = smallest mean distance to the records of another cluster
+ * 		s = (b - a) / max(a, b), 0 for the only record of a cluster
+ * The distance to a sample is computed once per record for all clusterings.
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class Silhouette {
+	private int sampleNum;
+	private int[] ks;
+	// index of the first sum of each clustering
+	private int[] start;
+	// distance of the records of each cluster to each sample, then the weight of
+	// each cluster, for each clustering
+	private double[] sums;
+
+	/**
+	 * @param ks number of clusters of each clustering
+	 */
+	public Silhouette(int sampleNum, int[] ks) {
+		this.sampleNum = sampleNum;
+		this.ks = ks;
+		this.start = new int[ks.length + 1];
+		for (int set = 0; set < ks.length; ++set) {
+			start[set + 1] = start[set] + (sampleNum + 1) * ks[set];
+		}
+		this.sums = new double[start[ks.length]];
+	}
+
+	/**
+	 * Add a record
+	 * @param sampleDistances distance of the record to each sample
+	 * @param labels cluster of the record in each clustering
+	 */
+	public void add(double[] sampleDistances, int[] labels, int weight) {
+		for (int set = 0; set < ks.length; ++set) {
+			int k = ks[set];
+			int index = start[set] + labels[set];
+			for (int sample = 0; sample < sampleNum; ++sample, index += k) {
+				sums[index] += weight * sampleDistances[sample];
+			}
+			sums[index] += weight;
+		}
+	}
+
+	/**
+	 * @return the sums of this rank, to reduce with those of the others
+	 */
+	public double[] getSums() {
+		return sums;
+	}
+
+	/**
+	 * @param total the sums of all ranks
+	 */
+	public void setSums(double[] total) {
+		this.sums = total;
+	}
+
+	/**
+	 * @param labels cluster of each sample in the clustering
+	 * @return silhouette of each sample in the clustering
+	 */
+	public double[] getValues(int set, int[] labels) {
+		int k = ks[set];
+		int weights = start[set] + sampleNum * k;
+		double[] values = new double[sampleNum];
+		for (int sample = 0; sample < sampleNum; ++sample) {
+			int own = labels[sample];
+			int index = start[set] + sample * k;
+			// the sample itself is a record of its cluster, at distance 0
+			double ownWeight = sums[weights + own] - 1;
+			if (ownWeight <= 0) {
+				continue;
+			}
+			double a = sums[index + own] / ownWeight;
+			double b = Double.MAX_VALUE;
+			for (int cluster = 0; cluster < k; ++cluster) {
+				if (cluster != own && sums[weights + cluster] > 0) {
+					b = Math.min(b, sums[index + cluster] / sums[weights + cluster]);
+				}
+			}
+			if (b == Double.MAX_VALUE || Math.max(a, b) == 0) {  // a single cluster
+				continue;
+			}
+			values[sample] = (b - a) / Math.max(a, b);
+		}
+		return values;
+	}
+
+	public static double mean(double[] values) {
+		double sum = 0;
+		for (double value: values) {
+			sum += value;
+		}
+		return values.length == 0 ? 0 : sum / values.length;
+	}
+
+	/**
+	 * @return half width of the 95% confidence interval of the mean
+	 */
+	public static double getConfidence(double[] values) {
+		return getConfidence(values, 0.95);
+	}
+
+	/**
+	 * @param level confidence level, e.g. 0.95
+	 * @return half width of the confidence interval of the mean, from the normal
+	 * distribution of the mean of many samples
+	 */
+	public static double getConfidence(double[] values, double level) {
+		if (values.length < 2) {
+			return 0;
+		}
+		double mean = mean(values);
+		double squares = 0;
+		for (double value: values) {
+			squares += (value - mean) * (value - mean);
+		}
+		return getZ(level) * Math.sqrt(squares / (values.length - 1) / values.length);
+	}
+
+	/**
+	 * @return z such that the standard normal distribution is within -z and z with
+	 * probability level (Abramowitz and Stegun 26.2.23, error below 4.5e-4)
+	 */
+	private static double getZ(double level) {
+		double t = Math.sqrt(-2 * Math.log((1 - level) / 2));
+		return t - (2.515517 + 0.802853 * t + 0.010328 * t * t)
+				/ (1 + 1.432788 * t + 0.189269 * t * t + 0.001308 * t * t * t);
+	}
+}
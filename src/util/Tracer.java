@@ -0,0 +1,157 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import comm.Communicator;
+
+/**
+ * Timeline of a rank in the Chrome Trace Event format (chrome://tracing,
+ * Perfetto). Each span is a complete event with the rank as process and the
+ * iteration as argument; each rank writes prefix.rank-R.json, and merge() joins
+ * them into prefix.json.
+ *
+ * The clocks of the ranks are aligned by a barrier when the tracer is created,
+ * before the data is loaded: every rank counts its timestamps from the moment
+ * it leaves that barrier, so the ranks are apart by at most the latency of the
+ * barrier's release.
+ *
+ * A disabled tracer records nothing, begin() does not even read the clock.
+ *
+ * Usage: Tracer prefix ranks (merge the files of a run by hand, e.g. once they
+ * are copied from the nodes)
+ * @author Xiaoxiang Wu (xiaoxiaw)
+ * @author Ye Zhou (yezhou)
+ *
+ */
+public class Tracer {
+	private String prefix;
+	private int rank;
+	// nanoTime when this rank left the barrier
+	private long origin;
+	// one JSON event per element
+	private List<String> events;
+
+	/**
+	 * Called by every rank at the same point, as it takes a barrier if enabled
+	 * @param prefix prefix of the trace files, null to disable
+	 */
+	public Tracer(String prefix, Communicator comm) {
+		this.prefix = prefix;
+		this.rank = comm.rank();
+		this.events = new ArrayList<String>();
+		if (prefix == null) {
+			return;
+		}
+		comm.barrier();
+		origin = System.nanoTime();
+		events.add(String.format("{\"name\": \"process_name\", \"ph\": \"M\", \"pid\": %d, \"tid\": 0, "
+				+ "\"args\": {\"name\": \"rank %d\"}}", rank, rank));
+		events.add(String.format("{\"name\": \"process_sort_index\", \"ph\": \"M\", \"pid\": %d, \"tid\": 0, "
+				+ "\"args\": {\"sort_index\": %d}}", rank, rank));
+	}
+
+	public boolean isEnabled() {
+		return prefix != null;
+	}
+
+	/**
+	 * @return start of a span, to pass to end()
+	 */
+	public long begin() {
+		return prefix != null ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Record the span from begin to now
+	 * @param iteration iteration of the span, 0 before the first one
+	 */
+	public void end(String name, int iteration, long begin) {
+		if (prefix == null) {
+			return;
+		}
+		long now = System.nanoTime();
+		events.add(String.format(Locale.ROOT, "{\"name\": \"%s\", \"ph\": \"X\", \"pid\": %d, \"tid\": 0, "
+				+ "\"ts\": %.3f, \"dur\": %.3f, \"args\": {\"iteration\": %d}}",
+				name, rank, (begin - origin) / 1e3, (now - begin) / 1e3, iteration));
+	}
+
+	/**
+	 * Write the events of this rank to prefix.rank-R.json
+	 */
+	public void write() {
+		if (prefix == null) {
+			return;
+		}
+		try {
+			writeEvents(new File(prefix + ".rank-" + rank + ".json"), events);
+		} catch (IOException e) {
+			System.out.println("Fail to write trace file");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Join the files of ranks 0 to size - 1 into prefix.json
+	 * @return false if a file is missing, e.g. written on another node
+	 */
+	public static boolean merge(String prefix, int size) throws IOException {
+		List<String> events = new ArrayList<String>();
+		for (int r = 0; r < size; ++r) {
+			File file = new File(prefix + ".rank-" + r + ".json");
+			if (!file.exists()) {
+				return false;
+			}
+			events.addAll(readEvents(file));
+		}
+		writeEvents(new File(prefix + ".json"), events);
+		return true;
+	}
+
+	/**
+	 * One event per line between the first and the last line
+	 */
+	private static void writeEvents(File file, List<String> events) throws IOException {
+		BufferedWriter bw = new BufferedWriter(new FileWriter(file));
+		try {
+			bw.write("{\"displayTimeUnit\": \"ms\", \"traceEvents\": [\n");
+			for (int i = 0; i < events.size(); ++i) {
+				bw.write(events.get(i));
+				bw.write(i + 1 < events.size() ? ",\n" : "\n");
+			}
+			bw.write("]}\n");
+		} finally {
+			bw.close();
+		}
+	}
+
+	private static List<String> readEvents(File file) throws IOException {
+		List<String> events = new ArrayList<String>();
+		BufferedReader br = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				if (!line.startsWith("{\"name\"")) {  // first or last line
+					continue;
+				}
+				events.add(line.endsWith(",") ? line.substring(0, line.length() - 1) : line);
+			}
+		} finally {
+			br.close();
+		}
+		return events;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (!merge(args[0], Integer.parseInt(args[1]))) {
+			System.out.println("Missing trace file of a rank");
+		}
+	}
+}